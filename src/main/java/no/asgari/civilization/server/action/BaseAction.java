@@ -27,7 +27,11 @@ import no.asgari.civilization.server.model.Playerhand;
 import no.asgari.civilization.server.model.SocialPolicy;
 import no.asgari.civilization.server.model.Spreadsheet;
 import no.asgari.civilization.server.model.Tech;
-import org.mongojack.JacksonDBCollection;
+import no.asgari.civilization.server.mongodb.DeckRepository;
+import no.asgari.civilization.server.mongodb.PBFRepository;
+import no.asgari.civilization.server.mongodb.PbfSummaryRepository;
+import no.asgari.civilization.server.mongodb.Repositories;
+import no.asgari.civilization.server.mongodb.StatsRepository;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
@@ -36,10 +40,17 @@ import javax.ws.rs.core.Response;
 @Log4j
 public abstract class BaseAction {
     protected final GameLogAction logAction;
-    private final JacksonDBCollection<PBF, String> pbfCollection;
+    protected final PBFRepository pbfRepository;
+    protected final DeckRepository deckRepository;
+    protected final PbfSummaryRepository pbfSummaryRepository;
+    protected final StatsRepository statsRepository;
 
     protected BaseAction(DB db) {
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
+        Repositories repositories = Repositories.of(db);
+        this.pbfRepository = repositories.getPbfRepository();
+        this.deckRepository = repositories.getDeckRepository();
+        this.pbfSummaryRepository = repositories.getPbfSummaryRepository();
+        this.statsRepository = repositories.getStatsRepository();
         this.logAction = new GameLogAction(db);
     }
 
@@ -89,7 +100,7 @@ public abstract class BaseAction {
 
     public PBF findPBFById(String pbfId) {
         try {
-            return pbfCollection.findOneById(pbfId);
+            return pbfRepository.findById(pbfId);
         } catch (Exception ex) {
             log.error("Couldn't find pbf");
             Response badReq = Response.status(Response.Status.BAD_REQUEST)
@@ -108,16 +119,14 @@ public abstract class BaseAction {
      */
     //TODO Perhaps its best to have this in a filter, but its not always intended to be run
     void checkYourTurn(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         checkYourTurn(playerhand);
     }
 
     void checkYourTurn(Playerhand playerhand) {
         if (!playerhand.isYourTurn()) {
-            throw new WebApplicationException(Response.status(Response.Status.FORBIDDEN)
-                    .entity(Entity.json(new MessageDTO("Its not your turn!")))
-                    .build());
+            throw notYourTurn();
         }
     }
 
@@ -134,6 +143,12 @@ public abstract class BaseAction {
                 .build());
     }
 
+    static WebApplicationException notYourTurn() {
+        return new WebApplicationException(Response.status(Response.Status.FORBIDDEN)
+                .entity(Entity.json(new MessageDTO("Its not your turn!")))
+                .build());
+    }
+
     static WebApplicationException cannotFindPlayer() {
         throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND)
                 .entity(Entity.json(new MessageDTO("Could not find player")))
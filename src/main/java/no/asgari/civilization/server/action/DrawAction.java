@@ -21,21 +21,26 @@ import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.SheetName;
 import no.asgari.civilization.server.dto.MessageDTO;
 import no.asgari.civilization.server.exception.NoMoreItemsException;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Deck;
 import no.asgari.civilization.server.model.Draw;
+import no.asgari.civilization.server.model.GameEvent;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.Playerhand;
 import no.asgari.civilization.server.model.Tradable;
 import no.asgari.civilization.server.model.Unit;
+import no.asgari.civilization.server.mongodb.GameEventStream;
+import no.asgari.civilization.server.mongodb.Repositories;
 import org.mongojack.JacksonDBCollection;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -51,82 +56,69 @@ import static no.asgari.civilization.server.SheetName.*;
 public class DrawAction extends BaseAction {
     private final JacksonDBCollection<PBF, String> pbfCollection;
     private final GameLogAction gameLogAction;
+    private final DrawEngine drawEngine;
 
     private final StringBuilder sb = new StringBuilder();
     private final Consumer<Unit> revealUnitConsumer = unit -> sb.append(unit.revealAll()).append(", ");
 
     public DrawAction(DB db) {
         super(db);
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
         gameLogAction = new GameLogAction(db);
+        drawEngine = new DrawEngine(pbfCollection, pbfRepository, deckRepository, Repositories.of(db).getGameEventStream());
     }
 
     public Optional<GameLog> draw(String pbfId, String playerId, SheetName sheetName) {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(playerId);
         Preconditions.checkNotNull(sheetName);
-
-        checkYourTurn(pbfId, playerId);
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        GameEventStream.describe(pbfId, GameEvent.Type.DREW);
 
         if (SheetName.TECHS.contains(sheetName)) {
+            checkYourTurn(pbfId, playerId);
             log.warn("Drawing of techs is not possible. Techs are supposed to be chosen, not drawn.");
             return Optional.empty();
-        } else {
-            //Java 8 streamFromIterable doesn't support remove very well
-            Iterator<Item> iterator = pbf.getItems().iterator();
-            while (iterator.hasNext()) {
-                Item item = iterator.next();
-                if (item.getSheetName() == sheetName) {
-                    putItemToPlayer(item, pbf, playerId);
-                    iterator.remove();
-                    item.setOwnerId(playerId);
-                    pbfCollection.updateById(pbf.getId(), pbf);
-                    log.debug("Drew item " + item + " and updated pbf");
-                    Draw<Item> draw = createDraw(pbfId, playerId, item);
-                    GameLog gamelog = createLog(draw, GameLog.LogType.ITEM);
-                    return Optional.of(gamelog);
-                }
-            }
         }
 
-        log.warn("No more " + sheetName.getName() + " to draw. Possibly no more items left to draw in the deck. Will try to reshuffle");
+        Optional<Item> drawnItem = drawEngine.draw(pbfId, playerId, sheetName, DrawEngine.ITEMS, true);
+        if (!drawnItem.isPresent()) {
+            log.warn("No more " + sheetName.getName() + " to draw. Possibly no more items left to draw in the deck. Will try to reshuffle");
+            reshuffleItems(sheetName, pbfId);
+            drawnItem = drawEngine.draw(pbfId, playerId, sheetName, DrawEngine.ITEMS, true);
+        }
 
-        reshuffleItems(sheetName, pbf);
-        //Recursion call (should only be called once, because shuffle is made)
-        return draw(pbfId, playerId, sheetName);
+        Item item = drawnItem.orElseThrow(() -> new NoMoreItemsException(sheetName.getName()));
+        log.debug("Drew item " + item + " and updated pbf");
+        Draw<Item> draw = createDraw(pbfId, playerId, item);
+        GameLog gamelog = createLog(draw, GameLog.LogType.ITEM);
+        return Optional.of(gamelog);
     }
 
-    private void reshuffleItems(SheetName sheetName, PBF pbf) throws NoMoreItemsException {
+    private void reshuffleItems(SheetName sheetName, String pbfId) throws NoMoreItemsException {
         if (!SheetName.SHUFFLABLE_ITEMS.contains(sheetName)) {
             log.warn("Tried to reshuffle " + sheetName.getName() + " but not a shufflable type");
             throw new IllegalArgumentException();
         }
 
-        List<Item> itemsToPutBackInDeck = pbf.getDiscardedItems().stream()
-                .filter(s -> s.getSheetName() == sheetName)
-                .collect(toList());
-
+        Deck deck = deckRepository.find(pbfId, sheetName);
+        List<Item> itemsToPutBackInDeck = new ArrayList<>(deck.getDiscarded());
         if (itemsToPutBackInDeck.isEmpty()) {
             log.warn("All items are still in use, cannot make a shuffle. Nothing to draw!");
             throw new NoMoreItemsException(sheetName.getName());
         }
 
-        List<Item> itemsToKeep = pbf.getDiscardedItems().stream()
-                .filter(s -> s.getSheetName() != sheetName)
-                .collect(toList());
-
-        log.debug("Shuffling, and adding items back in the pbf");
+        log.debug("Shuffling, and adding items back in the deck");
         Collections.shuffle(itemsToPutBackInDeck);
-        pbf.getItems().addAll(itemsToPutBackInDeck);
-        pbf.setDiscardedItems(itemsToKeep);
+        deck.getItems().addAll(itemsToPutBackInDeck);
+        deck.getDiscarded().clear();
 
-        pbfCollection.updateById(pbf.getId(), pbf);
-        logShuffle(sheetName, pbf);
+        deckRepository.save(deck);
+        logShuffle(sheetName, pbfId);
     }
 
     public List<Unit> drawUnitsFromBattlehandForBattle(String pbfId, String playerId, int numberOfDraws) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        GameEventStream.describe(pbfId, GameEvent.Type.DREW);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         playerhand.getBattlehand().clear();
         List<Unit> unitsInHand = playerhand.getItems().stream()
@@ -141,7 +133,7 @@ public class DrawAction extends BaseAction {
         if (unitsInHand.size() <= numberOfDraws) {
             //username has drawn X units from his battlehand
             playerhand.setBattlehand(unitsInHand);
-            pbfCollection.updateById(pbfId, pbf);
+            pbfRepository.save(pbf);
             createCommonPublicLog("has drawn " + unitsInHand.size() + " units his battlehand", pbfId, playerId);
             return unitsInHand;
         }
@@ -150,7 +142,7 @@ public class DrawAction extends BaseAction {
         List<Unit> drawnUnitsList = unitsInHand.stream().limit(numberOfDraws).collect(toList());
 
         playerhand.setBattlehand(drawnUnitsList);
-        pbfCollection.updateById(pbfId, pbf);
+        pbfRepository.save(pbf);
         createCommonPublicLog("has drawn " + drawnUnitsList.size() + " units from his battlehand", pbfId, playerId);
         return drawnUnitsList;
     }
@@ -165,7 +157,8 @@ public class DrawAction extends BaseAction {
      * @return
      */
     public List<Unit> drawBarbarians(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        GameEventStream.describe(pbfId, GameEvent.Type.DREW);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         if (!playerhand.getBarbarians().isEmpty()) {
             log.warn("Cannot draw more barbarians until they are discarded");
@@ -173,133 +166,54 @@ public class DrawAction extends BaseAction {
                     .entity(Entity.json(new MessageDTO("Cannot draw more barbarians until they are discarded"))).build());
         }
 
-        drawBarbarianInfantry(pbf, playerhand);
-        drawBarbarianArtillery(pbf, playerhand);
-        drawBarbarianMounted(pbf, playerhand);
-
-        pbf = pbfCollection.findOneById(pbfId);
-        playerhand = getPlayerhandByPlayerId(playerId, pbf);
-        gameLogAction.createCommonPrivatePublicLog("has drawn " + playerhand.getBarbarians().size() + " barbarian units", pbfId, playerId);
-        return playerhand.getBarbarians();
-    }
-
-    private void drawBarbarianInfantry(PBF pbf, Playerhand playerhand) {
-        boolean anyInfantry = pbf.getItems().stream().anyMatch(p -> p.getSheetName() == INFANTRY);
-        if (!anyInfantry) {
-            try {
-                reshuffleItems(INFANTRY, pbf);
-                drawBarbarianInfantry(pbf, playerhand);
-            } catch (NoMoreItemsException e) {
-                StringBuilder stringBuilder = new StringBuilder();
-                if (tryToFindUnit(pbf, playerhand, stringBuilder, ARTILLERY, INFANTRY) || tryToFindUnit(pbf, playerhand, stringBuilder, MOUNTED, INFANTRY)) {
-                    gameLogAction.createCommonPrivatePublicLog(stringBuilder.toString(), pbf.getId(), playerhand.getPlayerId());
-                } else {
-                    throw new NoMoreItemsException("units");
-                }
+        List<Unit> barbarians = new ArrayList<>(3);
+        barbarians.add(drawBarbarian(pbfId, playerId, INFANTRY, ARTILLERY, MOUNTED));
+        barbarians.add(drawBarbarian(pbfId, playerId, ARTILLERY, MOUNTED, INFANTRY));
+        barbarians.add(drawBarbarian(pbfId, playerId, MOUNTED, ARTILLERY, INFANTRY));
 
-            }
-        } else {
-            Iterator<Item> iterator = pbf.getItems().iterator();
-            while (iterator.hasNext()) {
-                Item item = iterator.next();
-                if (item.getSheetName() == SheetName.INFANTRY) {
-                    addBarbarian(pbf, playerhand, iterator, item);
-                    return;
-                }
-            }
-        }
+        gameLogAction.createCommonPrivatePublicLog("has drawn " + barbarians.size() + " barbarian units", pbfId, playerId);
+        return barbarians;
     }
 
-    private void drawBarbarianMounted(PBF pbf, Playerhand playerhand) {
-        boolean any = pbf.getItems().stream().anyMatch(p -> p.getSheetName() == MOUNTED);
-
-        if (!any) {
-            try {
-                reshuffleItems(MOUNTED, pbf);
-                drawBarbarianMounted(pbf, playerhand);
-            } catch (NoMoreItemsException e) {
-                StringBuilder stringBuilder = new StringBuilder();
-                if (tryToFindUnit(pbf, playerhand, stringBuilder, ARTILLERY, MOUNTED) || tryToFindUnit(pbf, playerhand, stringBuilder, INFANTRY, MOUNTED)) {
-                    gameLogAction.createCommonPrivatePublicLog(stringBuilder.toString(), pbf.getId(), playerhand.getPlayerId());
-                } else {
-                    throw new NoMoreItemsException("units");
-                }
-            }
-        } else {
-            Iterator<Item> iterator = pbf.getItems().iterator();
-            while (iterator.hasNext()) {
-                Item item = iterator.next();
-                if (item.getSheetName() == SheetName.MOUNTED) {
-                    addBarbarian(pbf, playerhand, iterator, item);
-                    return;
-                }
-            }
-        }
-
-    }
-
-    private void drawBarbarianArtillery(PBF pbf, Playerhand playerhand) {
-        boolean any = pbf.getItems().stream().anyMatch(p -> p.getSheetName() == ARTILLERY);
-
-        if (!any) {
+    /**
+     * Draws a barbarian of the sheet, reshuffling if needed.
+     * If there are none left at all, the first of the other unit types that can be drawn is drawn instead
+     */
+    private Unit drawBarbarian(String pbfId, String playerId, SheetName sheetName, SheetName... otherUnits) {
+        Optional<Item> unit = drawEngine.draw(pbfId, playerId, sheetName, DrawEngine.BARBARIANS, false);
+        if (!unit.isPresent()) {
             try {
-                reshuffleItems(ARTILLERY, pbf);
-                drawBarbarianArtillery(pbf, playerhand);
+                reshuffleItems(sheetName, pbfId);
+                unit = drawEngine.draw(pbfId, playerId, sheetName, DrawEngine.BARBARIANS, false);
             } catch (NoMoreItemsException e) {
-                StringBuilder stringBuilder = new StringBuilder();
-                if (tryToFindUnit(pbf, playerhand, stringBuilder, MOUNTED, ARTILLERY) || tryToFindUnit(pbf, playerhand, stringBuilder, INFANTRY, ARTILLERY)) {
-                    gameLogAction.createCommonPrivatePublicLog(stringBuilder.toString(), pbf.getId(), playerhand.getPlayerId());
-                } else {
-                    throw new NoMoreItemsException("units");
-                }
-            }
-        } else {
-            Iterator<Item> iterator = pbf.getItems().iterator();
-            while (iterator.hasNext()) {
-                Item item = iterator.next();
-                if (item.getSheetName() == SheetName.ARTILLERY) {
-                    addBarbarian(pbf, playerhand, iterator, item);
-                    return;
+                for (SheetName otherUnit : otherUnits) {
+                    unit = drawEngine.draw(pbfId, playerId, otherUnit, DrawEngine.BARBARIANS, false);
+                    if (unit.isPresent()) {
+                        gameLogAction.createCommonPrivatePublicLog(" tried to draw " + sheetName.getName()
+                                + " barbarian unit. However there are no more in the deck. Will instead draw "
+                                + otherUnit.getName() + " unit instead!", pbfId, playerId);
+                        break;
+                    }
                 }
             }
         }
+        return (Unit) unit.orElseThrow(() -> new NoMoreItemsException("units"));
     }
 
-    private boolean tryToFindUnit(PBF pbf, Playerhand playerhand, StringBuilder stringBuilder, SheetName sheetToDraw, SheetName originalSheet) {
-        Optional<Item> anyUnit = pbf.getItems().stream().filter(p -> p.getSheetName() == sheetToDraw).findAny();
-        if (anyUnit.isPresent()) {
-            Iterator<Item> iterator = pbf.getItems().iterator();
-            while (iterator.hasNext()) {
-                Item item = iterator.next();
-                if (item.getSheetName() == sheetToDraw) {
-                    addBarbarian(pbf, playerhand, iterator, item);
-                    stringBuilder.append(" tried to draw ")
-                            .append(originalSheet.getName())
-                            .append(" barbarian unit. However there are no more in the deck. Will instead draw ")
-                            .append(sheetToDraw.getName())
-                            .append(" unit instead!");
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-
     public void discardBarbarians(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         if (playerhand.getBarbarians().isEmpty()) {
             return;
         }
         playerhand.getBarbarians().forEach(unit -> unit.setOwnerId(null));
-        pbf.getDiscardedItems().addAll(playerhand.getBarbarians());
+        deckRepository.discard(pbfId, playerhand.getBarbarians());
         revealAndDiscardUnits(" as barbarians", playerhand.getBarbarians(), pbfId, playerId);
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
     }
 
     public void revealAndDiscardBattlehand(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         if (playerhand.getBattlehand().isEmpty()) {
             log.warn("Tried to reveal playerhand, but was empty");
@@ -307,7 +221,7 @@ public class DrawAction extends BaseAction {
         }
 
         revealAndDiscardUnits(" from their battlehand", playerhand.getBattlehand(), pbfId, playerId);
-        pbfCollection.updateById(pbfId, pbf);
+        pbfRepository.save(pbf);
     }
 
     private void revealAndDiscardUnits(String message, List<Unit> units, String pbfId, String playerId) {
@@ -330,7 +244,7 @@ public class DrawAction extends BaseAction {
      * @param playerId
      */
     public void endBattle(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
 
         playerhand.getItems().stream()
@@ -340,7 +254,7 @@ public class DrawAction extends BaseAction {
                     unit.setInBattle(false);
                 });
 
-        pbfCollection.updateById(pbfId, pbf);
+        pbfRepository.save(pbf);
     }
 
     /**
@@ -388,13 +302,15 @@ public class DrawAction extends BaseAction {
         if (removed) {
             //Give to the other player
             playerTo.getItems().add(itemToGive);
-            createCommonPrivateLog(" is randomly looted " + itemToGive.revealAll() + " and gives to " + playerTo.getUsername(), pbfId, playerFrom.getPlayerId());
-            createCommonPrivateLog(" receives as loot " + itemToGive.revealAll() + " from " + playerFrom.getUsername(), pbfId, playerTo.getPlayerId());
+            try (GameLogBatch ignored = logAction.batch()) {
+                createCommonPrivateLog(" is randomly looted " + itemToGive.revealAll() + " and gives to " + playerTo.getUsername(), pbfId, playerFrom.getPlayerId());
+                createCommonPrivateLog(" receives as loot " + itemToGive.revealAll() + " from " + playerFrom.getUsername(), pbfId, playerTo.getPlayerId());
 
-            createCommonPublicLog(" is randomly looted " + itemToGive.revealPublic() + " and gives to " + playerTo.getUsername(), pbfId, playerFrom.getPlayerId());
-            createCommonPublicLog(" receives as loot " + itemToGive.revealPublic() + " from " + playerFrom.getUsername(), pbfId, playerTo.getPlayerId());
+                createCommonPublicLog(" is randomly looted " + itemToGive.revealPublic() + " and gives to " + playerTo.getUsername(), pbfId, playerFrom.getPlayerId());
+                createCommonPublicLog(" receives as loot " + itemToGive.revealPublic() + " from " + playerFrom.getUsername(), pbfId, playerTo.getPlayerId());
+            }
 
-            pbfCollection.updateById(pbf.getId(), pbf);
+            pbfRepository.save(pbf);
             return itemToGive;
         } else {
             throw cannotFindItem();
@@ -402,26 +318,14 @@ public class DrawAction extends BaseAction {
 
     }
 
-    private void addBarbarian(PBF pbf, Playerhand playerhand, Iterator<Item> iterator, Item item) {
-        playerhand.getBarbarians().add((Unit) item);
-        iterator.remove();
-        item.setOwnerId(playerhand.getPlayerId());
-        pbfCollection.updateById(pbf.getId(), pbf);
-    }
-
-    private void logShuffle(SheetName sheetName, PBF pbf) {
+    private void logShuffle(SheetName sheetName, String pbfId) {
         GameLog log = new GameLog();
         log.setUsername("System");
-        log.setPbfId(pbf.getId());
+        log.setPbfId(pbfId);
         log.setPublicLog(sheetName.getName() + " reshuffled and put back in the deck");
         gameLogAction.save(log);
     }
 
-    private void putItemToPlayer(Item item, PBF pbf, String playerId) {
-        Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
-        playerhand.getItems().add(item);
-    }
-
     private static Draw<Item> createDraw(String pbfId, String playerId, Item item) {
         Draw<Item> draw = new Draw<>(pbfId, playerId);
         item.setHidden(true);
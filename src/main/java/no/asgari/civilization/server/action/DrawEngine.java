@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.action;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.SheetName;
+import no.asgari.civilization.server.dto.MessageDTO;
+import no.asgari.civilization.server.excel.CardCatalog;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.GameEvent;
+import no.asgari.civilization.server.model.Item;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.Playerhand;
+import no.asgari.civilization.server.model.Unit;
+import no.asgari.civilization.server.mongodb.DeckRepository;
+import no.asgari.civilization.server.mongodb.GameEventStream;
+import no.asgari.civilization.server.mongodb.PBFRepository;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.util.EnumSet;
+import java.util.Optional;
+
+/**
+ * Moves the first item of a sheet from its {@link Deck} into a players hand without loading or rewriting the whole PBF.
+ * <p>
+ * The first item of the deck is read and removed from the deck if it is still the first item, otherwise the draw is retried.
+ * It is then pushed to the hand with one findAndModify which has the turn check in its query. If another end of turn gets there first,
+ * the query won't match, so the item is put back on top of the deck and the draw is retried, instead of overwriting the other change.
+ * This is the order of {@link DeckRepository}: the deck before the hand.
+ * The push increments the version of the PBF, so that writers holding an older copy will get a conflict.
+ * <p>
+ * The push is appended to the {@link GameEventStream} of the game as a DREW event.
+ * <p>
+ * When the {@link UnitOfWork} already holds the PBF or the deck, the item is moved between those instances instead,
+ * because the atomic draw would be overwritten or rejected when the unit of work writes them.
+ */
+@Log4j
+class DrawEngine {
+    static final String ITEMS = "items";
+    static final String BARBARIANS = "barbarians";
+
+    private static final String PLAYERS = "players";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JacksonDBCollection<PBF, String> pbfCollection;
+    private final DBCollection pbfDbCollection;
+    private final PBFRepository pbfRepository;
+    private final DeckRepository deckRepository;
+    private final GameEventStream gameEventStream;
+
+    DrawEngine(JacksonDBCollection<PBF, String> pbfCollection, PBFRepository pbfRepository, DeckRepository deckRepository,
+               GameEventStream gameEventStream) {
+        this.pbfCollection = pbfCollection;
+        this.pbfDbCollection = pbfCollection.getDbCollection();
+        this.pbfRepository = pbfRepository;
+        this.deckRepository = deckRepository;
+        this.gameEventStream = gameEventStream;
+    }
+
+    /**
+     * Draws the first item of the sheet and puts it in the players hand
+     *
+     * @param hand      - Either {@link #ITEMS} or {@link #BARBARIANS}
+     * @param checkTurn - If true, FORBIDDEN is thrown when it is not the players turn
+     * @return the drawn item, or empty if there are no more items of the sheet left in the deck
+     */
+    Optional<Item> draw(String pbfId, String playerId, SheetName sheetName, String hand, boolean checkTurn) {
+        if (pbfRepository.isLoaded(pbfId) || deckRepository.isLoaded(pbfId, sheetName)) {
+            return drawInUnitOfWork(pbfId, playerId, sheetName, hand, checkTurn);
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            DBObject pbf = pbfDbCollection.findOne(byId(pbfId), pickFields());
+            if (pbf == null) {
+                log.error("Couldn't find pbf with id " + pbfId);
+                throw new WebApplicationException(Response.Status.NOT_FOUND);
+            }
+
+            int playerIndex = findPlayerIndex(pbf, playerId);
+            if (checkTurn && !isYourTurn(pbf, playerIndex)) {
+                throw BaseAction.notYourTurn();
+            }
+
+            Optional<DBObject> peeked = deckRepository.peek(pbfId, sheetName);
+            if (!peeked.isPresent()) {
+                return Optional.empty();
+            }
+
+            DBObject itemWrapper = peeked.get();
+            String itemKey = itemWrapper.keySet().iterator().next();
+            BasicDBObject item = new BasicDBObject(((DBObject) itemWrapper.get(itemKey)).toMap());
+            item.put("ownerId", playerId);
+            DBObject ownedItem = new BasicDBObject(itemKey, item);
+
+            String playerPath = PLAYERS + "." + playerIndex;
+            BasicDBObject query = byId(pbfId).append(playerPath + ".playerId", playerId);
+            if (checkTurn) {
+                query.append(playerPath + ".yourTurn", true);
+            }
+
+            BasicDBObject update = new BasicDBObject("$push", new BasicDBObject(playerPath + "." + hand, ownedItem))
+                    .append("$inc", new BasicDBObject(PBFRepository.VERSION, 1));
+
+            if (!deckRepository.removeFirst(pbfId, sheetName, itemWrapper)) {
+                log.warn("The " + sheetName.getName() + " deck of pbf " + pbfId + " changed while drawing. Will try again");
+                continue;
+            }
+
+            DBObject moved;
+            try {
+                moved = pbfDbCollection.findAndModify(query, new BasicDBObject(PBFRepository.VERSION, 1), null, false, update, true, false);
+            } catch (RuntimeException e) {
+                putBack(pbfId, sheetName, itemWrapper, e);
+                throw e;
+            }
+            if (moved == null) {
+                putBack(pbfId, sheetName, itemWrapper, null);
+                log.warn("The players or turn of pbf " + pbfId + " changed while drawing " + sheetName.getName() + ". Will try again");
+                continue;
+            }
+            appendEvent(pbfId, moved, update);
+            return Optional.of(CardCatalog.fill(pbfCollection.convertFromDbObject(ownedItem, Item.class)));
+        }
+
+        log.error("Gave up drawing " + sheetName.getName() + " in pbf " + pbfId + " after " + MAX_ATTEMPTS + " attempts");
+        throw new WebApplicationException(Response.status(Response.Status.CONFLICT)
+                .entity(Entity.json(new MessageDTO("The game was changed by someone else. Please try again")))
+                .build());
+    }
+
+    /**
+     * The unit of work already holds the PBF or the deck, and writes them once when it is flushed, so the item is moved in memory
+     */
+    private Optional<Item> drawInUnitOfWork(String pbfId, String playerId, SheetName sheetName, String hand, boolean checkTurn) {
+        PBF pbf = pbfRepository.findById(pbfId);
+        Playerhand playerhand = pbf.getPlayers().stream()
+                .filter(p -> p.getPlayerId().equals(playerId))
+                .findFirst()
+                .orElseThrow(BaseAction::cannotFindPlayer);
+        if (checkTurn && !playerhand.isYourTurn()) {
+            throw BaseAction.notYourTurn();
+        }
+
+        Deck deck = deckRepository.find(pbfId, sheetName);
+        if (deck.getItems().isEmpty()) {
+            return Optional.empty();
+        }
+
+        Item item = deck.getItems().remove(0);
+        item.setOwnerId(playerId);
+        if (BARBARIANS.equals(hand)) {
+            playerhand.getBarbarians().add((Unit) item);
+        } else {
+            playerhand.getItems().add(item);
+        }
+        pbfRepository.save(pbf);
+        deckRepository.save(deck);
+        return Optional.of(item);
+    }
+
+    /**
+     * The item couldn't be put in the hand, so it goes back on top of the deck
+     */
+    private void putBack(String pbfId, SheetName sheetName, DBObject item, RuntimeException cause) {
+        try {
+            deckRepository.putBack(pbfId, sheetName, item);
+        } catch (RuntimeException e) {
+            log.error("Couldn't put " + sheetName.getName() + " back on the deck of pbf " + pbfId + ". The item is lost", e);
+            if (cause != null) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    private void appendEvent(String pbfId, DBObject written, DBObject update) {
+        gameEventStream.append(pbfId, ((Number) written.get(PBFRepository.VERSION)).longValue(), update,
+                EnumSet.of(GameEvent.Type.DREW), () -> pbfDbCollection.findOne(byId(pbfId)));
+    }
+
+    private static BasicDBObject byId(String pbfId) {
+        return new BasicDBObject("_id", new ObjectId(pbfId));
+    }
+
+    /**
+     * Only what is needed to find the player and whos turn it is
+     */
+    private static DBObject pickFields() {
+        return new BasicDBObject(PLAYERS + ".playerId", 1)
+                .append(PLAYERS + ".yourTurn", 1);
+    }
+
+    private static int findPlayerIndex(DBObject pbf, String playerId) {
+        BasicDBList players = (BasicDBList) pbf.get(PLAYERS);
+        if (players != null) {
+            for (int i = 0; i < players.size(); i++) {
+                if (playerId.equals(((DBObject) players.get(i)).get("playerId"))) {
+                    return i;
+                }
+            }
+        }
+        throw BaseAction.cannotFindPlayer();
+    }
+
+    private static boolean isYourTurn(DBObject pbf, int playerIndex) {
+        DBObject player = (DBObject) ((BasicDBList) pbf.get(PLAYERS)).get(playerIndex);
+        return Boolean.TRUE.equals(player.get("yourTurn"));
+    }
+}
@@ -17,19 +17,18 @@ package no.asgari.civilization.server.action;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Sets;
+import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.application.WriteConcernConfiguration;
 import no.asgari.civilization.server.dto.ChatDTO;
 import no.asgari.civilization.server.dto.CivHighscoreDTO;
 import no.asgari.civilization.server.dto.CreateNewGameDTO;
-import no.asgari.civilization.server.dto.DrawDTO;
 import no.asgari.civilization.server.dto.GameDTO;
-import no.asgari.civilization.server.dto.GameLogDTO;
+import no.asgari.civilization.server.dto.GameLogPageDTO;
 import no.asgari.civilization.server.dto.MessageDTO;
 import no.asgari.civilization.server.dto.PbfDTO;
 import no.asgari.civilization.server.dto.PlayerDTO;
@@ -38,13 +37,22 @@ import no.asgari.civilization.server.email.SendEmail;
 import no.asgari.civilization.server.excel.ItemReader;
 import no.asgari.civilization.server.misc.CivUtil;
 import no.asgari.civilization.server.misc.SecurityCheck;
+import no.asgari.civilization.server.model.CatalogText;
 import no.asgari.civilization.server.model.Chat;
-import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.GameType;
 import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PbfSummary;
 import no.asgari.civilization.server.model.Player;
 import no.asgari.civilization.server.model.Playerhand;
+import no.asgari.civilization.server.model.Stat;
+import no.asgari.civilization.server.mongodb.GameEventStream;
+import no.asgari.civilization.server.mongodb.PlayerRepository;
+import no.asgari.civilization.server.mongodb.Repositories;
+import no.asgari.civilization.server.mongodb.TurnRepository;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+import no.asgari.civilization.server.mongodb.WriteTiers;
+import org.bson.types.ObjectId;
 import org.apache.commons.lang3.StringUtils;
 import org.mongojack.DBQuery;
 import org.mongojack.DBSort;
@@ -55,10 +63,12 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URLDecoder;
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -76,13 +86,19 @@ public class GameAction extends BaseAction {
     private final JacksonDBCollection<Player, String> playerCollection;
     private final GameLogAction gameLogAction;
     private final JacksonDBCollection<Chat, String> chatCollection;
+    private final GameEventStream gameEventStream;
+    private final PlayerRepository playerRepository;
+    private final TurnRepository turnRepository;
 
     public GameAction(DB db) {
         super(db);
         this.playerCollection = JacksonDBCollection.wrap(db.getCollection(Player.COL_NAME), Player.class, String.class);
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
         this.chatCollection = JacksonDBCollection.wrap(db.getCollection(Chat.COL_NAME), Chat.class, String.class);
         this.gameLogAction = new GameLogAction(db);
+        this.gameEventStream = Repositories.of(db).getGameEventStream();
+        this.playerRepository = new PlayerRepository(db);
+        this.turnRepository = new TurnRepository(db);
     }
 
     public String createNewGame(CreateNewGameDTO dto, String playerId) {
@@ -93,39 +109,39 @@ public class GameAction extends BaseAction {
         ItemReader itemReader = new ItemReader();
         readItemFromExcel(dto.getType(), itemReader);
 
-        pbf.getItems().addAll(itemReader.shuffledCivs);
-        pbf.getItems().addAll(itemReader.shuffledCultureI);
-        pbf.getItems().addAll(itemReader.shuffledCultureII);
-        pbf.getItems().addAll(itemReader.shuffledCultureIII);
-        pbf.getItems().addAll(itemReader.shuffledGPs);
-        pbf.getItems().addAll(itemReader.shuffledHuts);
-        pbf.getItems().addAll(itemReader.shuffledVillages);
-        pbf.getItems().addAll(itemReader.shuffledTiles);
-        pbf.getItems().addAll(itemReader.shuffledCityStates);
-        pbf.getItems().addAll(itemReader.ancientWonders);
-        pbf.getItems().addAll(itemReader.medievalWonders);
-        pbf.getItems().addAll(itemReader.modernWonders);
-        pbf.getItems().addAll(itemReader.mountedList);
-        pbf.getItems().addAll(itemReader.aircraftList);
-        pbf.getItems().addAll(itemReader.artilleryList);
-        pbf.getItems().addAll(itemReader.infantryList);
-        pbf.getTechs().addAll(itemReader.allTechs);
-        pbf.getSocialPolicies().addAll(itemReader.socialPolicies);
-
-        Collections.shuffle(pbf.getItems(), new Random(System.nanoTime()));
-        Collections.shuffle(pbf.getTechs(), new Random(System.nanoTime()));
-        Collections.shuffle(pbf.getSocialPolicies(), new Random(System.nanoTime()));
-
-        pbf.getItems().forEach(it -> it.setItemNumber(ItemReader.itemCounter.incrementAndGet()));
-        pbf.getTechs().forEach(it -> it.setItemNumber(ItemReader.itemCounter.incrementAndGet()));
-        pbf.getSocialPolicies().forEach(it -> it.setItemNumber(ItemReader.itemCounter.incrementAndGet()));
+        List<Item> items = new ArrayList<>();
+        items.addAll(itemReader.shuffledCivs);
+        items.addAll(itemReader.shuffledCultureI);
+        items.addAll(itemReader.shuffledCultureII);
+        items.addAll(itemReader.shuffledCultureIII);
+        items.addAll(itemReader.shuffledGPs);
+        items.addAll(itemReader.shuffledHuts);
+        items.addAll(itemReader.shuffledVillages);
+        items.addAll(itemReader.shuffledTiles);
+        items.addAll(itemReader.shuffledCityStates);
+        items.addAll(itemReader.ancientWonders);
+        items.addAll(itemReader.medievalWonders);
+        items.addAll(itemReader.modernWonders);
+        items.addAll(itemReader.mountedList);
+        items.addAll(itemReader.aircraftList);
+        items.addAll(itemReader.artilleryList);
+        items.addAll(itemReader.infantryList);
+        items.addAll(itemReader.allTechs);
+        items.addAll(itemReader.socialPolicies);
+
+        Collections.shuffle(items, new Random(System.nanoTime()));
+        items.forEach(it -> it.setItemNumber(ItemReader.itemCounter.incrementAndGet()));
 
         WriteResult<PBF, String> pbfInsert = pbfCollection.insert(pbf);
         pbf.setId(pbfInsert.getSavedId());
+        gameEventStream.created(pbf.getId(), pbfCollection.convertToDbObject(pbf));
+        deckRepository.create(pbf.getId(), items);
         log.info("PBF game created with id " + pbfInsert.getSavedId());
         joinGame(pbf, playerId, Optional.of(dto.getColor()), true);
 
-        //Do this in a new thread
+        //Do this in a new thread. Losing the email timestamp only means the player may get the next email sooner, so it is not waited for.
+        //Only the timestamp is set, so that the unacknowledged write can't undo other changes to the player
+        WriteTiers writeTiers = CivSingleton.instance().writeTiers();
         Thread thread = new Thread(() -> {
             playerCollection.find().toArray().stream()
                     .filter(p -> !p.isDisableEmail())
@@ -133,7 +149,10 @@ public class GameAction extends BaseAction {
                     .forEach(p -> {
                         SendEmail.sendMessage(p.getEmail(), "New Civilization game created",
                                 "A new game by the name " + pbf.getName() + " was just created! Visit " + SendEmail.URL + " to join the game.", p.getId());
-                        playerCollection.updateById(p.getId(), p);
+                        Object emailSent = playerCollection.convertToDbObject(p).get(Player.EMAIL_SENT);
+                        writeTiers.write(WriteConcernConfiguration.EMAIL, writeConcern -> playerCollection.update(
+                                new BasicDBObject("_id", new ObjectId(p.getId())),
+                                new BasicDBObject("$set", new BasicDBObject(Player.EMAIL_SENT, emailSent)), false, false, writeConcern));
                     });
         });
         thread.start();
@@ -157,43 +176,40 @@ public class GameAction extends BaseAction {
      * @return
      */
     public List<PbfDTO> getAllGames() {
-        List<PBF> pbfs = pbfCollection.find().toArray();
-        return pbfs.stream()
+        return pbfSummaryRepository.findAll().stream()
                 .map(GameAction::createPbfDTO)
-                .sorted((o1, o2) -> {
-                    int v = Boolean.valueOf(o1.isActive()).compareTo(o2.isActive());
-                    if (v != 0) return v;
-                    return Long.valueOf(o1.getCreated()).compareTo(o2.getCreated());
-                })
                 .collect(toList());
     }
 
     /**
      * Creating PbfDTO so to not include every players Ghand and information
      *
-     * @param pbf - the PBF
+     * @param summary - the summary of the PBF
      * @return PbfDto
      */
-    private static PbfDTO createPbfDTO(PBF pbf) {
+    private static PbfDTO createPbfDTO(PbfSummary summary) {
         PbfDTO dto = new PbfDTO();
-        dto.setType(pbf.getType());
-        dto.setId(pbf.getId());
-        dto.setName(pbf.getName());
-        dto.setActive(pbf.isActive());
-        long created = pbf.getCreated().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        dto.setCreated(created);
-        dto.setNumOfPlayers(pbf.getNumOfPlayers());
-        dto.setPlayers(pbf.getPlayers().stream()
-                .map(p -> createPlayerDTO(p, pbf.getId()))
+        dto.setType(summary.getType());
+        dto.setId(summary.getId());
+        dto.setName(summary.getName());
+        dto.setActive(summary.isActive());
+        dto.setCreated(summary.getCreated());
+        dto.setNumOfPlayers(summary.getNumOfPlayers());
+        dto.setPlayers(summary.getPlayers().stream()
+                .map(p -> createPlayerDTO(p.getPlayerId(), p.getUsername(), summary.getId()))
                 .collect(toList()));
-        dto.setNameOfUsersTurn(pbf.getNameOfUsersTurn());
+        dto.setNameOfUsersTurn(summary.getNameOfUsersTurn());
         return dto;
     }
 
     private static PlayerDTO createPlayerDTO(Playerhand player, String pbfId) {
+        return createPlayerDTO(player.getPlayerId(), player.getUsername(), pbfId);
+    }
+
+    private static PlayerDTO createPlayerDTO(String playerId, String username, String pbfId) {
         PlayerDTO dto = new PlayerDTO();
-        dto.setUsername(player.getUsername());
-        dto.setPlayerId(player.getPlayerId());
+        dto.setUsername(username);
+        dto.setPlayerId(playerId);
         dto.setPbfId(pbfId);
         return dto;
     }
@@ -210,7 +226,7 @@ public class GameAction extends BaseAction {
     }
 
     public void joinGame(String pbfId, Player player, Optional<String> colorOpt) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
 
         joinGame(pbf, player.getId(), colorOpt, false);
 
@@ -219,7 +235,7 @@ public class GameAction extends BaseAction {
                     .filter(p -> !p.getPlayerId().equals(player.getId()))
                     .forEach(p -> SendEmail.sendMessage(p.getEmail(), "Game update", player.getUsername() + " joined " + pbf.getName() + ". Go to " + SendEmail.URL + " to find out who!", p.getPlayerId()));
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
     }
 
     /**
@@ -246,13 +262,17 @@ public class GameAction extends BaseAction {
             throw new WebApplicationException(badReq);
         }
 
-        player.getGameIds().add(pbf.getId());
-        playerCollection.updateById(player.getId(), player);
+        String pbfId = pbf.getId();
+        UnitOfWork.afterCommit(() -> playerRepository.addGame(player.getId(), pbfId));
         Playerhand playerhand;
         if (!pbf.getWithdrawnPlayers().isEmpty()) {
             playerhand = pbf.getWithdrawnPlayers().remove(0);
-            boolean updated = gameLogAction.updateGameLog(pbf.getId(), playerhand.getUsername(), player.getUsername());
-            log.info("Managed to update gameLog: " + updated);
+            String withdrawnUsername = playerhand.getUsername();
+            UnitOfWork.afterCommit(() -> {
+                boolean updated = gameLogAction.updateGameLog(pbfId, withdrawnUsername, player.getUsername());
+                log.info("Managed to update gameLog: " + updated);
+                turnRepository.rename(pbfId, withdrawnUsername, player.getUsername());
+            });
             playerhand.setEmail(player.getEmail());
             playerhand.setPlayerId(player.getId());
             playerhand.setUsername(player.getUsername());
@@ -265,7 +285,8 @@ public class GameAction extends BaseAction {
             pbf.getPlayers().add(playerhand);
         }
         pbf = startIfAllPlayers(pbf);
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
+        pbfSummaryRepository.save(pbf);
     }
 
     private String chooseColorForPlayer(PBF pbf) {
@@ -285,7 +306,7 @@ public class GameAction extends BaseAction {
 
     public List<PlayerDTO> getAllPlayers(String pbfId) {
         Preconditions.checkNotNull(pbfId);
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         return pbf.getPlayers().stream()
                 .map(p -> createPlayerDTO(p, pbf.getId()))
                 .sorted((o1, o2) -> o1.getUsername().compareTo(o2.getUsername()))
@@ -303,15 +324,17 @@ public class GameAction extends BaseAction {
             firstplayer.setYourTurn(true);
             firstplayer.setPlayernumber(1);
 
-            createInfoLog(pbf.getId(), "Game has now started. Good luck, and have fun!");
-
             StringBuilder sb = new StringBuilder();
             for (int i = 0; i < pbf.getPlayers().size(); i++) {
                 Playerhand player = pbf.getPlayers().get(i);
                 player.setPlayernumber(i + 1);
                 sb.append(getNameForPlayerNumber(i) + " player is " + player.getUsername() + ". ");
             }
-            createInfoLog(pbf.getId(), sb.toString());
+
+            try (GameLogBatch ignored = logAction.batch()) {
+                createInfoLog(pbf.getId(), "Game has now started. Good luck, and have fun!");
+                createInfoLog(pbf.getId(), sb.toString());
+            }
         }
         return pbf;
     }
@@ -330,13 +353,10 @@ public class GameAction extends BaseAction {
         dto.setMapLink(pbf.getMapLink());
         dto.setAssetLink(pbf.getAssetLink());
 
-        //Set logs
-        List<GameLog> allPublicLogs = gameLogAction.getGameLogs(pbf.getId());
-        List<GameLogDTO> publicGamelogDTOs = allPublicLogs.stream()
-                .filter(log -> !Strings.isNullOrEmpty(log.getPublicLog()))
-                .map(log -> new GameLogDTO(log.getId(), log.getPublicLog(), log.getCreatedInMillis(), new DrawDTO(log.getDraw())))
-                .collect(toList());
-        dto.setPublicLogs(publicGamelogDTOs);
+        //Set the newest page of logs
+        GameLogPageDTO publicLogs = gameLogAction.getPublicLogPage(pbf.getId(), null, GameLogAction.DEFAULT_PAGE_SIZE, GameLogAction.Direction.OLDER);
+        dto.setPublicLogs(publicLogs.getLogs());
+        dto.setPublicLogsOlder(publicLogs.getOlder());
 
         //Set private player info if correct player is loggedIn.
         if (player != null && !Strings.isNullOrEmpty(player.getUsername()) && !Strings.isNullOrEmpty(player.getId())) {
@@ -347,14 +367,12 @@ public class GameAction extends BaseAction {
                     .findFirst();
 
             if (playerhand.isPresent()) {
-                List<GameLog> allPrivateLogs = gameLogAction.getGameLogsBelongingToPlayer(pbf.getId(), playerhand.get().getUsername());
-                List<GameLogDTO> privateGamelogDTOs = allPrivateLogs.stream()
-                        .filter(log -> !Strings.isNullOrEmpty(log.getPrivateLog()))
-                        .map(log -> new GameLogDTO(log.getId(), log.getPrivateLog(), log.getCreatedInMillis(), new DrawDTO(log.getDraw())))
-                        .collect(toList());
+                GameLogPageDTO privateLogs = gameLogAction.getPrivateLogPage(pbf.getId(), playerhand.get().getUsername(), null,
+                        GameLogAction.DEFAULT_PAGE_SIZE, GameLogAction.Direction.OLDER);
 
                 dto.setPlayer(playerhand.get());
-                dto.setPrivateLogs(privateGamelogDTOs);
+                dto.setPrivateLogs(privateLogs.getLogs());
+                dto.setPrivateLogsOlder(privateLogs.getOlder());
             }
         }
         dto.setRevealedItems(getAllRevealedItems(pbf));
@@ -362,7 +380,7 @@ public class GameAction extends BaseAction {
     }
 
     public boolean withdrawFromGame(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
 
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
             log.warn("User with id " + playerId + " is not player of this game, and cannot withdraw");
@@ -392,8 +410,9 @@ public class GameAction extends BaseAction {
                 pbf.getWithdrawnPlayers().add(playerhand);
                 iterator.remove();
                 gameLogAction.createCommonPublicLog("withdrew from game", pbfId, playerId);
-                //TODO remove from PlayerCollection also
-                pbfCollection.updateById(pbf.getId(), pbf);
+                UnitOfWork.afterCommit(() -> playerRepository.removeGame(playerId, pbfId));
+                pbfRepository.save(pbf);
+                pbfSummaryRepository.save(pbf);
                 return true;
             }
         }
@@ -411,24 +430,28 @@ public class GameAction extends BaseAction {
         chat.setPbfId(pbfId);
         chat.setMessage(URLDecoder.decode(message, "UTF-8"));
         chat.setUsername(username);
-        String id = chatCollection.insert(chat).getSavedId();
-        chat.setId(id);
-
-        if (pbfId != null) {
-            PBF pbf = findPBFById(pbfId);
-
-            if (StringUtils.isNotBlank(message)) {
+        int retentionDays = CivSingleton.instance().publicChatRetentionDays();
+        if (pbfId == null && retentionDays > 0) {
+            chat.setExpireAt(Date.from(Instant.now().plus(retentionDays, ChronoUnit.DAYS)));
+        }
+        chat.setId(new ObjectId().toString());
+        UnitOfWork.afterCommit(() -> chatCollection.insert(chat));
+
+        if (pbfId != null && StringUtils.isNotBlank(message)) {
+            //Only the email timestamps are changed, so it is safe to retry on conflicts with other writes
+            List<Playerhand> receivers = new ArrayList<>();
+            pbfRepository.update(pbfId, pbf -> {
+                receivers.clear();
                 pbf.getPlayers()
                         .stream()
                         .filter(p -> !p.getUsername().equals(username))
                         .filter(CivUtil::shouldSendEmailInGame)
-                        .forEach(p -> {
-                                    SendEmail.sendMessage(p.getEmail(), "New Chat", username + " wrote in the chat: " + chat.getMessage()
-                                            + ".\nLogin to " + SendEmail.gamelink(pbfId) + " to see the chat", p.getPlayerId());
-                                    pbfCollection.updateById(pbfId, pbf);
-                                }
-                        );
-            }
+                        .forEach(receivers::add);
+                return !receivers.isEmpty();
+            });
+
+            UnitOfWork.afterCommit(() -> receivers.forEach(p -> SendEmail.sendMessage(p.getEmail(), "New Chat", username + " wrote in the chat: " + chat.getMessage()
+                    + ".\nLogin to " + SendEmail.gamelink(pbfId) + " to see the chat", p.getPlayerId())));
         }
 
         return chat;
@@ -436,7 +459,7 @@ public class GameAction extends BaseAction {
 
     public List<ChatDTO> getChat(String pbfId) {
         Preconditions.checkNotNull(pbfId);
-        List<Chat> chats = chatCollection.find(DBQuery.is("pbfId", pbfId)).sort(DBSort.desc("created")).toArray();
+        List<Chat> chats = chatCollection.find(DBQuery.is(Chat.PBFID, pbfId)).sort(DBSort.desc(Chat.TIMESTAMP)).toArray();
         if (chats == null) {
             return new ArrayList<>();
         }
@@ -450,14 +473,11 @@ public class GameAction extends BaseAction {
         for (Chat c : chats) {
             chatDTOs.add(new ChatDTO(c.getId(), c.getPbfId(), c.getUsername(), c.getMessage(), colorMap.get(c.getUsername()), c.getCreatedInMillis()));
         }
-
-        //Sort newest date first
-        chatDTOs.sort((o1, o2) -> -Long.valueOf(o1.getCreated()).compareTo(o2.getCreated()));
         return chatDTOs;
     }
 
     public void endGame(String pbfId, Player player, String winner) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         if (!"admin".equals(player.getUsername())) {
             Playerhand playerhand = getPlayerhandByPlayerId(player.getId(), pbf);
             //Only game creator can end game
@@ -479,16 +499,19 @@ public class GameAction extends BaseAction {
         }
 
         pbf.setActive(false);
+        pbf.setEnded(new Date());
         createInfoLog(pbfId, player.getUsername() + " Ended this game");
         createInfoLog(pbfId, "Thank you for playing! Please donate if you liked this game!");
-        pbfCollection.updateById(pbfId, pbf);
+        pbfRepository.save(pbf);
+        pbfSummaryRepository.save(pbf);
+        statsRepository.save(pbf);
 
         Thread thread = new Thread(() -> {
             pbf.getPlayers().forEach(p -> SendEmail.sendMessage(p.getEmail(), "Game ended", pbf.getName() + " has ended. I hope you enjoyed playing.\n" +
                     "If you like this game, please consider donating. You can find the link at the bottom of the site. It will help keep the lights on, and continue adding more features!" +
                     "\n\nBest regards Shervin Asgari aka Cash", p.getPlayerId()));
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
     }
 
     /**
@@ -502,10 +525,10 @@ public class GameAction extends BaseAction {
             String id = removedPart.split("/")[0];
             log.info("Id from google presentation is: " + id);
 
-            PBF pbf = pbfCollection.findOneById(pbfId);
+            PBF pbf = findPBFById(pbfId);
 
             pbf.setMapLink(id);
-            pbfCollection.updateById(pbfId, pbf);
+            pbfRepository.save(pbf);
             Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
             createInfoLog(pbfId, playerhand.getUsername() + " Added map link");
             return id;
@@ -524,9 +547,9 @@ public class GameAction extends BaseAction {
             String id = removedPart.split("/")[0];
             log.info("Id from google presentation is: " + id);
 
-            PBF pbf = pbfCollection.findOneById(pbfId);
+            PBF pbf = findPBFById(pbfId);
             pbf.setAssetLink(id);
-            pbfCollection.updateById(pbfId, pbf);
+            pbfRepository.save(pbf);
             Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
             createInfoLog(pbfId, playerhand.getUsername() + " Added asset link");
             return id;
@@ -539,13 +562,14 @@ public class GameAction extends BaseAction {
         Preconditions.checkNotNull(oldUsername);
         Preconditions.checkNotNull(newUsername);
 
-        PBF pbf = pbfCollection.findOneById(gameid);
+        PBF pbf = findPBFById(gameid);
         Player toPlayer = playerCollection.find(DBQuery.is("username", newUsername)).toArray(1).get(0);
 
         //Find all instance of ownerid, and replace with newUsername
         Playerhand playerhandToReplace = pbf.getPlayers().stream().filter(p -> p.getUsername().equals(oldUsername)).findFirst().orElseThrow(PlayerAction::cannotFindPlayer);
 
         playerhandToReplace.setUsername(newUsername);
+        UnitOfWork.afterCommit(() -> turnRepository.rename(gameid, oldUsername, newUsername));
         playerhandToReplace.setPlayerId(toPlayer.getId());
         playerhandToReplace.setEmail(toPlayer.getEmail());
 
@@ -554,9 +578,11 @@ public class GameAction extends BaseAction {
         playerhandToReplace.getTechsChosen().forEach(b -> b.setOwnerId(toPlayer.getId()));
         playerhandToReplace.getItems().forEach(b -> b.setOwnerId(toPlayer.getId()));
 
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
+        pbfSummaryRepository.save(pbf);
         createInfoLog(pbf.getId(), newUsername + " is now playing instead of " + oldUsername);
-        SendEmail.sendMessage(playerhandToReplace.getEmail(), "You are now playing in " + pbf.getName(), "Please log in to http://playciv.com and start playing!", playerhandToReplace.getPlayerId());
+        UnitOfWork.afterCommit(() -> SendEmail.sendMessage(playerhandToReplace.getEmail(), "You are now playing in " + pbf.getName(),
+                "Please log in to http://playciv.com and start playing!", playerhandToReplace.getPlayerId()));
     }
 
     public boolean deleteGame(String gameid) {
@@ -564,23 +590,33 @@ public class GameAction extends BaseAction {
 
         final PBF pbf = findPBFById(gameid);
         WriteResult<PBF, String> writeResult = pbfCollection.removeById(gameid);
+        deckRepository.deleteAll(gameid);
+        pbfSummaryRepository.delete(gameid);
+        gameEventStream.delete(gameid);
+        turnRepository.deleteAll(gameid);
         log.warn("Managed to delete game: " + Strings.isNullOrEmpty(writeResult.getWriteResult().toString()));
 
-        List<Player> playerList = playerCollection.find().toArray().stream()
-                .filter(p -> p.getGameIds().contains(gameid))
-                .collect(toList());
-
-        playerList.forEach(player -> {
-            log.info("Deleting game from " + player.getUsername() + "s collection also");
-            player.getGameIds().remove(gameid);
-            SendEmail.sendMessage(player.getEmail(), "Game deleted", "Your game " + pbf.getName() + " was deleted by the admin. " +
-                    "If this was incorrect, please contact the admin.", player.getId());
-            playerCollection.save(player);
-        });
+        List<Player> playerList = playerRepository.findByGame(gameid);
+        playerRepository.removeGameFromAll(gameid);
 
+        Thread thread = new Thread(() -> playerList.forEach(player ->
+                SendEmail.sendMessage(player.getEmail(), "Game deleted", "Your game " + pbf.getName() + " was deleted by the admin. " +
+                        "If this was incorrect, please contact the admin.", player.getId())));
+        thread.start();
         return true;
     }
 
+    /**
+     * The game as it was at the version, replayed from its events
+     */
+    public PBF replay(String pbfId, long version) {
+        return gameEventStream.replay(pbfId, version)
+                .map(pbfCollection::convertFromDbObject)
+                .orElseThrow(() -> new WebApplicationException(Response.status(Response.Status.NOT_FOUND)
+                        .entity(new MessageDTO("There are no events to replay version " + version + " from"))
+                        .build()));
+    }
+
     public void sendMailToAll(String msg) {
         playerCollection.find().toArray()
                 .stream()
@@ -593,18 +629,23 @@ public class GameAction extends BaseAction {
     }
 
     /**
-     * Gets public chat which is 1 week old and maximum 50 entries, sorted on created
+     * Gets the newest 50 public chats from the last 2 weeks, oldest first
      */
     public List<ChatDTO> getPublicChat() {
-        return chatCollection.find(DBQuery.notExists("pbfId")).sort(DBSort.desc("created")).toArray()
-                .stream()
-                .filter(c -> c.getCreated().isAfter(LocalDateTime.now().minusWeeks(2)))
-                .sorted((a, b) -> a.getCreated().compareTo(b.getCreated()))
-                .map(c -> new ChatDTO(c.getUsername(), c.getMessage(), c.getCreatedInMillis()))
+        Date twoWeeksAgo = Date.from(Instant.now().minus(14, ChronoUnit.DAYS));
+        List<Chat> newestFirst = chatCollection.find(DBQuery.notExists(Chat.PBFID).greaterThan(Chat.TIMESTAMP, twoWeeksAgo))
+                .sort(DBSort.desc(Chat.TIMESTAMP))
                 .limit(50)
+                .toArray();
+        Collections.reverse(newestFirst);
+        return newestFirst.stream()
+                .map(c -> new ChatDTO(c.getUsername(), c.getMessage(), c.getCreatedInMillis()))
                 .collect(toList());
     }
 
+    /**
+     * The wins and attempts of every civ, read from the stats which are counted when a game ends
+     */
     public List<CivHighscoreDTO> getCivHighscore() {
         if (!CivSingleton.instance().itemsCache().containsKey(GameType.WAW)) {
             readItemFromExcel(GameType.WAW, new ItemReader());
@@ -615,85 +656,34 @@ public class GameAction extends BaseAction {
             return Collections.emptyList();
         }
 
-        List<PBF> pbfs = pbfCollection.find().toArray();
-
-        try {
-            Map<String, Long> numberOfCivsWinning = pbfs.stream()
-                    .filter(pbf -> !Strings.isNullOrEmpty(pbf.getWinner()))
-                    .filter(pbf -> !pbf.isActive())
-                    .filter(pbf -> {
-                        String playerWhoWon = pbf.getWinner();
-                        return pbf.getPlayers().stream()
-                                .filter(p -> p.getUsername().equals(playerWhoWon))
-                                .filter(p -> p.getCivilization() != null)
-                                .findFirst().isPresent();
-                    })
-                    .map(pbf -> {
-                        String playerWhoWon = pbf.getWinner();
-                        Playerhand playerhand = pbf.getPlayers().stream()
-                                .filter(p -> p.getUsername().equals(playerWhoWon))
-                                .filter(p -> p.getCivilization() != null)
-                                .findFirst()
-                                .get();
-                        return playerhand.getCivilization().getName();
-                    })
-                    .collect(Collectors.groupingBy(e -> e, Collectors.counting()));
-
-            Map<String, Long> numberOfCivAttempts = pbfs.stream()
-                    .filter(pbf -> !Strings.isNullOrEmpty(pbf.getWinner()))
-                    .filter(pbf -> !pbf.isActive())
-                    .flatMap(pbf -> pbf.getPlayers().stream())
-                    .filter(p -> p.getCivilization() != null)
-                    .map(p -> p.getCivilization().getName())
-                    .collect(Collectors.groupingBy(e -> e, Collectors.counting()));
-
-            return itemReader.shuffledCivs.stream()
-                    .map(civ -> new CivHighscoreDTO(civ.getName(), numberOfCivsWinning.get(civ.getName()), numberOfCivAttempts.get(civ.getName())))
-                    .sorted()
-                    .collect(toList());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return Collections.emptyList();
-        }
+        Map<String, Stat> civs = statsRepository.findCivs().stream()
+                .collect(Collectors.toMap(Stat::getName, civ -> civ));
+        return itemReader.shuffledCivs.stream()
+                .map(civ -> {
+                    Optional<Stat> stat = Optional.ofNullable(civs.get(civ.getName()));
+                    return new CivHighscoreDTO(civ.getName(), stat.map(Stat::getWins).orElse(0L), stat.map(Stat::getAttempts).orElse(0L));
+                })
+                .sorted()
+                .collect(toList());
     }
 
+    /**
+     * Every player with their wins, attempts and rating
+     */
     public List<WinnerDTO> getWinners() {
-        List<PBF> pbfs = pbfCollection.find().toArray();
-        final ListMultimap<String, String> multimap = ArrayListMultimap.create();
-
-        pbfs.stream()
-                .filter(pbf -> !Strings.isNullOrEmpty(pbf.getWinner()))
-                .forEach(pbf -> multimap.put(pbf.getWinner(), pbf.getId()));
-
-        Map<String, Long> attemptsPerUsername = pbfs.stream()
-                .filter(pbf -> !Strings.isNullOrEmpty(pbf.getWinner()))
-                .filter(pbf -> !pbf.isActive())
-                .flatMap(pbf -> pbf.getPlayers().stream())
-                .map(Playerhand::getUsername)
-                .collect(Collectors.groupingBy(e -> e, Collectors.counting()));
-
-        List<Player> allPlayers = playerCollection.find().toArray();
-        List<WinnerDTO> filteredPlayers = allPlayers.stream()
-                .filter(p -> !multimap.containsKey(p.getUsername()) && p.getUsername() != null)
-                .map(p -> {
-                    long attempts = attemptsPerUsername.get(p.getUsername()) == null ? 0L : attemptsPerUsername.get(p.getUsername());
-                    WinnerDTO winner = new WinnerDTO(p.getUsername(), 0, attempts);
+        return statsRepository.findPlayers().stream()
+                .map(stat -> {
+                    WinnerDTO winner = new WinnerDTO(stat.getName(), (int) stat.getWins(), stat.getAttempts());
+                    winner.setRating(Math.round(stat.getRating()));
                     return winner;
                 })
+                .sorted()
                 .collect(toList());
-
-        List<WinnerDTO> winners = multimap.keySet().stream()
-                .map(user -> new WinnerDTO(user, multimap.get(user).size(), attemptsPerUsername.get(user)))
-                .collect(toList());
-
-        winners.addAll(filteredPlayers);
-        Collections.sort(winners);
-        return winners;
     }
 
     private List<Item> getAllRevealedItems(PBF pbf) {
         //Had to have comparator inside sort, otherwise weird exception
-        Stream<Item> discardedStream = pbf.getDiscardedItems().stream()
+        Stream<Item> discardedStream = deckRepository.findDiscarded(pbf.getId()).stream()
                 .sorted((o1, o2) -> o1.getSheetName().compareTo(o2.getSheetName()));
 
         Stream<Item> playerStream = pbf.getPlayers().stream()
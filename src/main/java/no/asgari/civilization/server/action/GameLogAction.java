@@ -16,41 +16,111 @@
 package no.asgari.civilization.server.action;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.dto.DrawDTO;
+import no.asgari.civilization.server.dto.GameLogDTO;
+import no.asgari.civilization.server.dto.GameLogPageDTO;
+import no.asgari.civilization.server.dto.MessageDTO;
+import no.asgari.civilization.server.model.CatalogText;
 import no.asgari.civilization.server.model.Draw;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.Player;
+import no.asgari.civilization.server.mongodb.GameLogWriter;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+import org.bson.types.ObjectId;
 import org.mongojack.DBQuery;
 import org.mongojack.JacksonDBCollection;
 import org.mongojack.WriteResult;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Action class responsible for logging private and public logs
  */
 @Log4j
 public class GameLogAction {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Which way to page from the cursor
+     */
+    public enum Direction {
+        OLDER, NEWER;
+
+        /**
+         * Used by jersey, so that the query param is not case sensitive
+         */
+        public static Direction fromString(String direction) {
+            return valueOf(direction.toUpperCase());
+        }
+    }
+
     private final JacksonDBCollection<GameLog, String> gameLogCollection;
     private final JacksonDBCollection<Player, String> playerCollection;
 
     public GameLogAction(DB db) {
-        this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class);
+        this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class, CatalogText.Stored.class);
         this.playerCollection = JacksonDBCollection.wrap(db.getCollection(Player.COL_NAME), Player.class, String.class);
     }
 
-    String save(@NotNull @Valid GameLog gameLog) {
+    /**
+     * Logs with a draw can be undone, and the undo looks them up by id, so they are always written before the action is done.
+     * The other logs are written in the background when write-behind is enabled.
+     * The id is set on the log when it is written
+     */
+    void save(@NotNull @Valid GameLog gameLog) {
+        save(gameLog, gameLog.getDraw() != null);
+    }
+
+    /**
+     * Inside a {@link UnitOfWork} the log is written when the changes of the action are, so a failed action leaves no logs behind
+     *
+     * @param durable - If true the log is written before this returns, or before the unit of work is done, also when write-behind is enabled
+     */
+    void save(@NotNull @Valid GameLog gameLog, boolean durable) {
         Preconditions.checkNotNull(gameLog);
 
+        Optional<GameLogBatch> batch = GameLogBatch.current();
+        if (batch.isPresent()) {
+            batch.get().add(gameLog);
+        } else {
+            UnitOfWork.afterCommit(() -> write(gameLog, durable));
+        }
+    }
+
+    private void write(GameLog gameLog, boolean durable) {
+        Optional<GameLogWriter> writer = CivSingleton.instance().gameLogWriter();
+        if (!durable && writer.isPresent()) {
+            writer.get().write(gameLog);
+            return;
+        }
+
         WriteResult<GameLog, String> insert = this.gameLogCollection.insert(gameLog);
+        gameLog.setId(insert.getSavedId());
         log.debug("Saved Gamelog with _id " + insert.getSavedId());
-        return insert.getSavedId();
+    }
+
+    /**
+     * Opens a batch on this thread, so that the logs saved until it is closed are inserted together
+     */
+    public GameLogBatch batch() {
+        return GameLogBatch.open(gameLogCollection);
     }
 
     public GameLog createGameLog(Draw draw, GameLog.LogType logType) {
@@ -64,7 +134,7 @@ public class GameLogAction {
             pl.setUsername(getUsernameFromPlayerId(draw.getPlayerId()));
         }
         pl.createAndSetLog(logType, draw.getItem() != null ? draw.getItem().getItemNumber() : 0);
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
@@ -85,7 +155,7 @@ public class GameLogAction {
             pl.setUsername(getUsernameFromPlayerId(playerId));
         }
         pl.createAndSetLog(logType, item.getItemNumber());
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
@@ -95,7 +165,7 @@ public class GameLogAction {
         pl.setUsername(username);
         pl.setPublicLog(username + " has voted " + (vote ? "yes" : "no") + " to undo "
                 + draw.getItem().revealPublic() + " with item number " + draw.getItem().getItemNumber());
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
@@ -106,7 +176,7 @@ public class GameLogAction {
         GameLog pl = createCommonGameLog(pbfId, playerId);
         pl.setPublicLog(pl.getUsername() + " " + publicMessage);
         pl.setPrivateLog("");
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
@@ -114,7 +184,7 @@ public class GameLogAction {
         GameLog pl = createCommonGameLog(pbfId, playerId);
         pl.setPrivateLog(pl.getUsername() + " " + privateMessage);
         pl.setPublicLog("");
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
@@ -122,7 +192,7 @@ public class GameLogAction {
         GameLog pl = createCommonGameLog(pbfId, playerId);
         pl.setPrivateLog(pl.getUsername() + " " + message);
         pl.setPublicLog(pl.getUsername() + " " + message);
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
@@ -158,7 +228,79 @@ public class GameLogAction {
         return gameLogCollection.find(DBQuery.is("pbfId", pbfId).is("username", username)).toArray();
     }
 
+    /**
+     * A page of the public logs of the game. Without a cursor the newest page is returned
+     *
+     * @param cursor - The older or newer cursor of a page already returned, or null
+     */
+    public GameLogPageDTO getPublicLogPage(String pbfId, String cursor, int size, Direction direction) {
+        BasicDBObject query = new BasicDBObject("pbfId", pbfId)
+                .append("publicLog", new BasicDBObject("$nin", Arrays.asList("", null)));
+        return page(query, cursor, size, direction, GameLog::getPublicLog);
+    }
+
+    /**
+     * A page of the private logs the player has in the game. Without a cursor the newest page is returned
+     *
+     * @param cursor - The older or newer cursor of a page already returned, or null
+     */
+    public GameLogPageDTO getPrivateLogPage(String pbfId, String username, String cursor, int size, Direction direction) {
+        BasicDBObject query = new BasicDBObject("pbfId", pbfId)
+                .append("username", username)
+                .append("privateLog", new BasicDBObject("$nin", Arrays.asList("", null)));
+        return page(query, cursor, size, direction, GameLog::getPrivateLog);
+    }
+
+    /**
+     * Keyset pagination on _id. The ObjectId grows with the time the log was written, so it orders the logs the same
+     * way as created, which is stored as an array that mongo can't range over. One more log than the page size is read
+     * to know whether there are more in that direction.
+     * <p>
+     * The ids are made when the logs are inserted, also by the background writer and by log batches, so that a log waiting to be written
+     * doesn't get an id older than the newer cursor a client already has. Logs inserted within the same few milliseconds by different
+     * threads can still become readable out of order, and a page of newer logs may then skip one. Reading the newest page again shows it.
+     */
+    private GameLogPageDTO page(BasicDBObject query, String cursor, int size, Direction direction, Function<GameLog, String> logText) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        boolean older = direction != Direction.NEWER;
+        if (cursor != null) {
+            if (!ObjectId.isValid(cursor)) {
+                throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                        .entity(Entity.json(new MessageDTO("Not a valid cursor " + cursor)))
+                        .build());
+            }
+            query.append("_id", new BasicDBObject(older ? "$lt" : "$gt", new ObjectId(cursor)));
+        }
+
+        List<GameLog> logs = gameLogCollection.find(query)
+                .sort(new BasicDBObject("_id", older ? -1 : 1))
+                .limit(limit + 1)
+                .toArray();
+        boolean hasMore = logs.size() > limit;
+        if (hasMore) {
+            logs = logs.subList(0, limit);
+        }
+        if (older) {
+            logs = Lists.reverse(logs);
+        }
+
+        List<GameLogDTO> dtos = logs.stream()
+                .map(gl -> new GameLogDTO(gl.getId(), logText.apply(gl), gl.getCreatedInMillis(), new DrawDTO(gl.getDraw())))
+                .collect(Collectors.toList());
+        if (dtos.isEmpty()) {
+            return new GameLogPageDTO(dtos, older ? null : cursor, cursor);
+        }
+        boolean hasOlder = older ? hasMore : cursor != null;
+        return new GameLogPageDTO(dtos, hasOlder ? dtos.get(0).getId() : null, dtos.get(dtos.size() - 1).getId());
+    }
+
     public void createTradeGameLog(Item item, String pbfId, GameLog.LogType logType, String username) {
+        try (GameLogBatch ignored = batch()) {
+            createTradeGameLogs(item, pbfId, logType, username);
+        }
+    }
+
+    private void createTradeGameLogs(Item item, String pbfId, GameLog.LogType logType, String username) {
         GameLog gl = new GameLog();
         Draw<Item> draw = new Draw<>(pbfId, item.getOwnerId());
         draw.setItem(item);
@@ -171,14 +313,14 @@ public class GameLogAction {
             gl.setUsername(getUsernameFromPlayerId(item.getOwnerId()));
         }
         gl.createAndSetLog(logType, item.getItemNumber());
-        gl.setId(save(gl));
+        save(gl);
 
         GameLog gl2 = new GameLog();
         gl2.setPbfId(pbfId);
         gl2.setUsername(username);
         gl2.setPrivateLog(gl.getUsername() + " has received - " + draw.getItem().revealAll());
         gl2.setPublicLog("");
-        gl2.setId(save(gl2));
+        save(gl2);
     }
 
     public GameLog createGameLog(String pbfId, GameLog.LogType logType, String playerId) {
@@ -191,17 +333,20 @@ public class GameLogAction {
             pl.setUsername(getUsernameFromPlayerId(playerId));
         }
         pl.createAndSetLog(logType, 0);
-        pl.setId(save(pl));
+        save(pl);
         return pl;
     }
 
+    /**
+     * Gives the logs of the old username to the new one, in one update using the pbfId and username index
+     *
+     * @return true if there were any logs to update
+     */
     public boolean updateGameLog(String pbfId, String oldUsername, String newUsername) {
-        List<GameLog> gameLogs = gameLogCollection.find(DBQuery.is("pbfId", pbfId).is("username", oldUsername)).toArray();
-        for(GameLog gl : gameLogs) {
-            gl.setUsername(newUsername);
-            gameLogCollection.updateById(gl.getId(), gl);
-        }
-        return !gameLogs.isEmpty();
+        int updated = gameLogCollection.getDbCollection().update(new BasicDBObject("pbfId", pbfId).append("username", oldUsername),
+                new BasicDBObject("$set", new BasicDBObject("username", newUsername)), false, true).getN();
+        log.info("Moved " + updated + " logs of pbf " + pbfId + " from " + oldUsername + " to " + newUsername);
+        return updated > 0;
     }
 
     public void createUndoLog(String pbfId, String message, Item item) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.action;
+
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.GameLog;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the logs an action writes, and inserts them all at once when the batch is closed.
+ * While a batch is open on the thread, {@link GameLogAction} adds the logs it saves to the batch instead of inserting them one by one.
+ * The ids are made when the logs are inserted, so that they are newer than every log already written.
+ * Inside a {@link UnitOfWork} the logs are inserted when the changes of the action are written, so closing the batch doesn't give the ids.
+ * Until then the logs have no id. A caller that needs the id reads it from its log once the command has returned.
+ * <p>
+ * A batch opened inside another batch joins the outer one, and the logs are written when the outer batch is closed.
+ * <pre>
+ * try (GameLogBatch batch = logAction.batch()) {
+ *     ...
+ * }
+ * </pre>
+ */
+@Log4j
+public final class GameLogBatch implements AutoCloseable {
+    private static final ThreadLocal<GameLogBatch> CURRENT = new ThreadLocal<>();
+
+    private final JacksonDBCollection<GameLog, String> gameLogCollection;
+    private final List<GameLog> logs = new ArrayList<>();
+    private int depth;
+
+    private GameLogBatch(JacksonDBCollection<GameLog, String> gameLogCollection) {
+        this.gameLogCollection = gameLogCollection;
+    }
+
+    static GameLogBatch open(JacksonDBCollection<GameLog, String> gameLogCollection) {
+        GameLogBatch batch = CURRENT.get();
+        if (batch == null) {
+            batch = new GameLogBatch(gameLogCollection);
+            CURRENT.set(batch);
+        }
+        batch.depth++;
+        return batch;
+    }
+
+    static Optional<GameLogBatch> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    void add(GameLog gameLog) {
+        logs.add(gameLog);
+    }
+
+    /**
+     * Inserts the logs collected so far with one bulk insert, and sets the id of each log
+     *
+     * @return the ids of the inserted logs
+     */
+    public List<String> flush() {
+        if (logs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        logs.stream()
+                .filter(gameLog -> gameLog.getId() == null)
+                .forEach(gameLog -> gameLog.setId(new ObjectId().toString()));
+        List<String> ids = logs.stream().map(GameLog::getId).collect(Collectors.toList());
+        gameLogCollection.insert(new ArrayList<>(logs));
+        logs.clear();
+        log.debug("Saved " + ids.size() + " gamelogs with _id " + ids);
+        return ids;
+    }
+
+    @Override
+    public void close() {
+        if (--depth > 0) {
+            return;
+        }
+        try {
+            UnitOfWork.afterCommit(this::flush);
+        } finally {
+            CURRENT.remove();
+        }
+    }
+}
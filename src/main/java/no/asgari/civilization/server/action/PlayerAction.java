@@ -30,8 +30,10 @@ import no.asgari.civilization.server.dto.TechDTO;
 import no.asgari.civilization.server.email.SendEmail;
 import no.asgari.civilization.server.exception.PlayerExistException;
 import no.asgari.civilization.server.misc.SecurityCheck;
+import no.asgari.civilization.server.model.CatalogText;
 import no.asgari.civilization.server.model.Civ;
 import no.asgari.civilization.server.model.Draw;
+import no.asgari.civilization.server.model.GameEvent;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.PBF;
@@ -41,6 +43,8 @@ import no.asgari.civilization.server.model.SocialPolicy;
 import no.asgari.civilization.server.model.Tech;
 import no.asgari.civilization.server.model.Tradable;
 import no.asgari.civilization.server.model.Unit;
+import no.asgari.civilization.server.mongodb.GameEventStream;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.mongojack.DBQuery;
 import org.mongojack.JacksonDBCollection;
@@ -51,6 +55,7 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Response;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
@@ -72,8 +77,8 @@ public class PlayerAction extends BaseAction {
     public PlayerAction(DB db) {
         super(db);
         this.playerCollection = JacksonDBCollection.wrap(db.getCollection(Player.COL_NAME), Player.class, String.class);
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
-        this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class);
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
+        this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class, CatalogText.Stored.class);
         this.drawAction = new DrawAction(db);
     }
 
@@ -96,14 +101,15 @@ public class PlayerAction extends BaseAction {
     public GameLog chooseTech(String pbfId, String techName, String playerId) {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(techName);
+        GameEventStream.describe(pbfId, GameEvent.Type.TECH_CHOSEN);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
             log.error("User with id " + playerId + " has no access to pbf " + pbf.getName());
             throw new WebApplicationException(Response.Status.FORBIDDEN);
         }
 
-        Optional<Tech> tech = pbf.getTechs().stream()
+        Optional<Tech> tech = findTechs(pbfId).stream()
                 .filter(techToFind -> techToFind.getName().equals(techName))
                 .findFirst();
         //if not static then this::cannotFindItem
@@ -118,7 +124,7 @@ public class PlayerAction extends BaseAction {
         }
         playerhand.getTechsChosen().add(chosenTech);
 
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
         log.debug("Player " + playerId + " chose tech " + chosenTech.getName());
 
         return super.createLog(chosenTech, pbfId, GameLog.LogType.TECH);
@@ -129,7 +135,7 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(playerId);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
             log.error("User with id " + playerId + " has no access to pbf " + pbf.getName());
             throw new WebApplicationException(Response.Status.FORBIDDEN);
@@ -144,7 +150,7 @@ public class PlayerAction extends BaseAction {
             log.error("Could not remove tech " + techName + " from player with id " + playerId + " in pbf " + pbf.getName());
             return false;
         }
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
 
         super.createLog(techToRemove, pbfId, GameLog.LogType.REMOVED_TECH);
         return true;
@@ -153,8 +159,9 @@ public class PlayerAction extends BaseAction {
     public boolean endTurn(String pbfId, Player player) {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(player.getUsername());
+        GameEventStream.describe(pbfId, GameEvent.Type.TURN_ENDED);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
 
         if (pbf.getPlayers().get(0).getPlayernumber() > 0) {
             Playerhand playerhand = pbf.getPlayers().stream().filter(Playerhand::isYourTurn).findFirst().get();
@@ -164,9 +171,10 @@ public class PlayerAction extends BaseAction {
             Playerhand firstPlayer = pbf.getPlayers().stream().filter(p -> p.getPlayernumber() == 1).findFirst().get();
             Playerhand nextPlayer = pbf.getPlayers().stream().filter(p -> p.getPlayernumber() == nextPlayerNumber).findFirst().orElse(firstPlayer);
             nextPlayer.setYourTurn(true);
-            SendEmail.sendYourTurn(pbf.getName(), nextPlayer.getEmail(), pbf.getId());
 
-            pbfCollection.updateById(pbf.getId(), pbf);
+            pbfRepository.save(pbf);
+            pbfSummaryRepository.save(pbf);
+            UnitOfWork.afterCommit(() -> SendEmail.sendYourTurn(pbf.getName(), nextPlayer.getEmail(), pbf.getId()));
             return true;
 
         } else {
@@ -186,9 +194,10 @@ public class PlayerAction extends BaseAction {
                         nextPlayer = pbf.getPlayers().get(i + 1);
                     }
                     nextPlayer.setYourTurn(true);
-                    SendEmail.sendYourTurn(pbf.getName(), nextPlayer.getEmail(), pbf.getId());
 
-                    pbfCollection.updateById(pbf.getId(), pbf);
+                    pbfRepository.save(pbf);
+                    pbfSummaryRepository.save(pbf);
+                    UnitOfWork.afterCommit(() -> SendEmail.sendYourTurn(pbf.getName(), nextPlayer.getEmail(), pbf.getId()));
                     return true;
                 }
             }
@@ -211,7 +220,7 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(playerId);
 
         //Check if item can be found on the player
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
 
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
@@ -253,7 +262,7 @@ public class PlayerAction extends BaseAction {
             startingTech.setHidden(false);
             startingTech.setOwnerId(playerId);
             playerhand.getTechsChosen().add(startingTech);
-            pbfCollection.updateById(pbf.getId(), pbf);
+            pbfRepository.save(pbf);
             //Create a new log entry
             logAction.createGameLog(itemToReveal, pbf.getId(), GameLog.LogType.REVEAL);
             log.debug("item to be reveal " + itemToReveal);
@@ -265,7 +274,7 @@ public class PlayerAction extends BaseAction {
 
             deleteTheOtherCivs(pbfId, playerId, civ);
         } else {
-            pbfCollection.updateById(pbf.getId(), pbf);
+            pbfRepository.save(pbf);
             //Create a new log entry
             logAction.createGameLog(itemToReveal, pbf.getId(), GameLog.LogType.REVEAL);
             log.debug("item to be reveal " + itemToReveal);
@@ -274,23 +283,25 @@ public class PlayerAction extends BaseAction {
     }
 
     private void deleteTheOtherCivs(String pbfId, String playerId, Civ civ) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         Iterator<Item> iterator = playerhand.getItems().iterator();
-        boolean deleted = false;
-        while (iterator.hasNext()) {
-            Item item = iterator.next();
-            if (item instanceof Civ && !item.equals(civ)) {
-                item.setHidden(true);
-                pbf.getDiscardedItems().add(item);
-                iterator.remove();
-                deleted = true;
-                createLog(item, pbf.getId(), GameLog.LogType.DISCARD, playerId);
+        List<Item> deleted = new ArrayList<>();
+        try (GameLogBatch ignored = logAction.batch()) {
+            while (iterator.hasNext()) {
+                Item item = iterator.next();
+                if (item instanceof Civ && !item.equals(civ)) {
+                    item.setHidden(true);
+                    deleted.add(item);
+                    iterator.remove();
+                    createLog(item, pbf.getId(), GameLog.LogType.DISCARD, playerId);
+                }
             }
         }
 
-        if (deleted) {
-            pbfCollection.updateById(pbf.getId(), pbf);
+        if (!deleted.isEmpty()) {
+            pbfRepository.save(pbf);
+            deckRepository.discard(pbfId, deleted);
         }
     }
 
@@ -360,7 +371,7 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(playerId);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
 
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
             log.error("User with id " + playerId + " has no access to pbf " + pbf.getName());
@@ -380,12 +391,22 @@ public class PlayerAction extends BaseAction {
         Tech tech = playerhand.getTechsChosen().stream().filter(t -> t.getName().equals(item.getName())).findFirst().orElseThrow(PlayerAction::cannotFindItem);
         tech.setHidden(false);
 
-        gameLogCollection.updateById(gameLog.getId(), gameLog);
-        pbfCollection.updateById(pbfId, pbf);
+        UnitOfWork.afterCommit(() -> gameLogCollection.updateById(gameLog.getId(), gameLog));
+        pbfRepository.save(pbf);
 
         createLog(item, pbf.getId(), GameLog.LogType.REVEAL, playerId);
     }
 
+    /**
+     * All the techs of the game, which are kept in the decks of each level
+     */
+    private List<Tech> findTechs(String pbfId) {
+        return deckRepository.findItems(pbfId, SheetName.TECHS).stream()
+                .filter(item -> item instanceof Tech)
+                .map(item -> (Tech) item)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Returns the remaining techs the player can choose from
      *
@@ -394,7 +415,7 @@ public class PlayerAction extends BaseAction {
      * @return
      */
     public List<Tech> getRemaingTechsForPlayer(String playerId, String pbfId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
 
         Optional<Playerhand> playerhandOptional = pbf.getPlayers().stream()
                 .filter(p -> p.getPlayerId().equals(playerId))
@@ -408,7 +429,7 @@ public class PlayerAction extends BaseAction {
         if (playerhand.getCivilization() != null && playerhand.getCivilization().getStartingTech() != null) {
             techsChosen.add(playerhandOptional.get().getCivilization().getStartingTech());
         }
-        List<Tech> techs = pbf.getTechs();
+        List<Tech> techs = findTechs(pbfId);
         techs.removeAll(techsChosen);
 
         techs.sort(((o1, o2) -> Integer.valueOf(o1.getLevel()).compareTo(o2.getLevel())));
@@ -425,7 +446,7 @@ public class PlayerAction extends BaseAction {
      * @see #checkYourTurn(String, String)
      */
     public boolean isYourTurn(String pbfId, String playerId) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         return playerhand.isYourTurn();
     }
@@ -441,8 +462,9 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(item);
         Preconditions.checkNotNull(item.getPbfId());
         Preconditions.checkNotNull(item.getOwnerId());
+        GameEventStream.describe(item.getPbfId(), GameEvent.Type.TRADED);
 
-        PBF pbf = pbfCollection.findOneById(item.getPbfId());
+        PBF pbf = findPBFById(item.getPbfId());
         Playerhand fromPlayer = getPlayerhandByPlayerId(playerId, pbf);
         Playerhand toPlayer = getPlayerhandByPlayerId(item.getOwnerId(), pbf);
         Optional<SheetName> dtoSheet = SheetName.find(item.getSheetName());
@@ -466,13 +488,14 @@ public class PlayerAction extends BaseAction {
         toPlayer.getItems().add(itemToTrade);
 
         itemToTrade.setOwnerId(toPlayer.getPlayerId());
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
         logAction.createTradeGameLog(itemToTrade, pbf.getId(), GameLog.LogType.TRADE_BETWEEN_PLAYERS, fromPlayer.getUsername());
         return true;
     }
 
     public void discardItem(String pbfId, String playerId, ItemDTO itemdto) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        GameEventStream.describe(pbfId, GameEvent.Type.DISCARDED);
+        PBF pbf = findPBFById(pbfId);
 
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         Optional<SheetName> dtoSheet = SheetName.find(itemdto.getSheetName());
@@ -493,9 +516,9 @@ public class PlayerAction extends BaseAction {
         //itemToDelete.setOwnerId(null); //I think I need this in case of undo
 
         if (playerhand.getItems().remove(itemToDeleteOptional.get())) {
-            pbf.getDiscardedItems().add(itemToDeleteOptional.get());
             createLog(itemToDelete, pbf.getId(), GameLog.LogType.DISCARD, playerId);
-            pbfCollection.updateById(pbf.getId(), pbf);
+            pbfRepository.save(pbf);
+            deckRepository.discard(pbf.getId(), Collections.singletonList(itemToDelete));
             return;
         }
         log.error("Found the item " + itemToDelete + " , but couldn't delete it for some reason");
@@ -510,7 +533,7 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(playerId);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         return pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(playerId))
                 .findFirst().orElseThrow(PlayerAction::cannotFindPlayer)
                 .getTechsChosen();
@@ -544,6 +567,7 @@ public class PlayerAction extends BaseAction {
         player.setPassword(DigestUtils.sha1Hex(decodedPassword));
         player.setEmail(email);
         WriteResult<Player, String> insert = playerCollection.insert(player);
+        statsRepository.addPlayer(username);
         log.info(String.format("Saving player with id %s", insert.getSavedId()));
         return insert.getSavedId();
     }
@@ -599,14 +623,15 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(socialPolicyName);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
             log.error("User with id " + playerId + " has no access to pbf " + pbf.getName());
             throw new WebApplicationException(Response.Status.FORBIDDEN);
         }
 
-        Optional<SocialPolicy> socialPolicyOptional = pbf.getSocialPolicies().stream()
-                .filter(it -> it.getName().equals(socialPolicyName))
+        Optional<SocialPolicy> socialPolicyOptional = deckRepository.find(pbfId, SheetName.SOCIAL_POLICY).getItems().stream()
+                .filter(it -> it instanceof SocialPolicy && it.getName().equals(socialPolicyName))
+                .map(it -> (SocialPolicy) it)
                 .findFirst();
         //if not static then this::cannotFindItem
         SocialPolicy socialPolicy = socialPolicyOptional.orElseThrow(PlayerAction::cannotFindItem);
@@ -629,7 +654,7 @@ public class PlayerAction extends BaseAction {
 
         playerhand.getSocialPolicies().add(sp);
 
-        pbfCollection.updateById(pbf.getId(), pbf);
+        pbfRepository.save(pbf);
         log.debug("Player " + playerId + " chose social policy " + sp.getName());
 
         return super.createLog(sp, pbfId, GameLog.LogType.SOCIAL_POLICY, playerId);
@@ -638,7 +663,7 @@ public class PlayerAction extends BaseAction {
     public List<AllTechsDTO> getTechsForAllPlayers(String pbfId) {
         Preconditions.checkNotNull(pbfId);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         return pbf.getPlayers().stream()
                 .filter(p -> p.getCivilization() != null)
                 .map(p -> new AllTechsDTO(p.getCivilization().getName(), p.getColor(),
@@ -653,9 +678,9 @@ public class PlayerAction extends BaseAction {
         Preconditions.checkNotNull(pbfId);
         Preconditions.checkNotNull(playerId);
 
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         playerhand.setGamenote(messageDTO.getMessage());
-        pbfCollection.updateById(pbfId, pbf);
+        pbfRepository.save(pbf);
     }
 }
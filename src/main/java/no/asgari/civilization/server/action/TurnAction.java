@@ -10,24 +10,27 @@ import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.PlayerTurn;
 import no.asgari.civilization.server.model.Playerhand;
-import org.mongojack.JacksonDBCollection;
+import no.asgari.civilization.server.mongodb.TurnRepository;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
 @Log4j
 public class TurnAction extends BaseAction {
 
-    private final JacksonDBCollection<PBF, String> pbfCollection;
+    private final TurnRepository turnRepository;
 
     public TurnAction(DB db) {
         super(db);
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
+        this.turnRepository = new TurnRepository(db);
     }
 
     public void updateSOT(String pbfId, String playerId, TurnDTO turnDTO) {
@@ -45,9 +48,8 @@ public class TurnAction extends BaseAction {
                                     + ".\n\nLogin to " + SendEmail.gamelink(pbfId) + " to see the order", playerhand.getPlayerId())
                     );
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
 
-        pbfCollection.updateById(pbfId, pbf);
         super.createLog(pbfId, GameLog.LogType.SOT, playerId);
     }
 
@@ -66,9 +68,8 @@ public class TurnAction extends BaseAction {
                                     + ".\n\nLogin to " + SendEmail.gamelink(pbfId) + " to see the order", playerhand.getPlayerId())
                     );
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
 
-        pbfCollection.updateById(pbfId, pbf);
         super.createLog(pbfId, GameLog.LogType.TRADE, playerId);
     }
 
@@ -89,9 +90,8 @@ public class TurnAction extends BaseAction {
                             }
                     );
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
 
-        pbfCollection.updateById(pbfId, pbf);
         super.createLog(pbfId, GameLog.LogType.CM, playerId);
     }
 
@@ -111,9 +111,8 @@ public class TurnAction extends BaseAction {
                                     + ".\n\nLogin to " + SendEmail.gamelink(pbfId) + " to see the order", playerhand.getPlayerId())
                     );
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
 
-        pbfCollection.updateById(pbfId, pbf);
         super.createLog(pbfId, GameLog.LogType.MOVEMENT, playerId);
     }
 
@@ -132,9 +131,8 @@ public class TurnAction extends BaseAction {
                                     + ".\n\nLogin to " + SendEmail.gamelink(pbfId) + " to see the order", playerhand.getPlayerId())
                     );
         });
-        thread.start();
+        UnitOfWork.afterCommit(thread::start);
 
-        pbfCollection.updateById(pbfId, pbf);
         super.createLog(pbfId, GameLog.LogType.RESEARCH, playerId);
     }
 
@@ -144,29 +142,11 @@ public class TurnAction extends BaseAction {
     public void addNewTurn(String pbfId, String playerId, int turnNumber) {
         PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
-
-        Optional<PlayerTurn> turnOptional = playerhand.getPlayerTurns().stream()
-                .filter(p -> p.getTurnNumber() == turnNumber)
-                .findAny();
-
-        if (!turnOptional.isPresent()) {
-            playerhand.getPlayerTurns().add(new PlayerTurn(playerhand.getUsername(), turnNumber));
-        }
-    }
-
-    private PlayerTurn getPlayerTurn(TurnDTO turnDTO, Set<PlayerTurn> playerturns, String username) {
-        PlayerTurn playerTurn = playerturns.stream()
-                .filter(t -> t.getTurnNumber() == turnDTO.getTurnNumber())
-                .findFirst()
-                .orElse(new PlayerTurn(username, turnDTO.getTurnNumber()));
-        playerTurn.setUsername(username);
-        return playerTurn;
+        turnRepository.add(pbfId, playerhand.getUsername(), turnNumber);
     }
 
     public List<PlayerTurn> getAllPublicTurns(String pbfId) {
-        PBF pbf = findPBFById(pbfId);
-
-        return pbf.getPublicTurns().values().stream()
+        return turnRepository.findPublic(pbfId).stream()
                 .sorted()
                 .map(p -> {
                     //Remove the last order in the history
@@ -184,67 +164,49 @@ public class TurnAction extends BaseAction {
     public Set<PlayerTurn> getPlayersTurns(String pbfId, String playerId) {
         PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
-        Set<PlayerTurn> playerTurns = playerhand.getPlayerTurns();
+        Set<PlayerTurn> playerTurns = new TreeSet<>(turnRepository.findByPlayer(pbfId, playerhand.getUsername()));
         if (playerTurns.isEmpty()) {
-            playerhand.getPlayerTurns().add(new PlayerTurn(playerhand.getUsername(), 1));
-            pbfCollection.updateById(pbfId, pbf);
+            turnRepository.add(pbfId, playerhand.getUsername(), 1);
+            playerTurns.add(new PlayerTurn(pbfId, playerhand.getUsername(), 1));
         }
 
         return playerTurns;
     }
 
+    /**
+     * Writes the order to the turn of the player with one upsert, without touching the PBF
+     */
     private void updateTurn(String playerId, TurnDTO turnDTO, PBF pbf, Playerhand playerhand) {
         if (!SecurityCheck.hasUserAccess(pbf, playerId)) {
             log.error("User with id " + playerId + " has no access to pbf " + pbf.getName());
             throw new WebApplicationException(Response.Status.FORBIDDEN);
         }
-        Set<PlayerTurn> playerturns = playerhand.getPlayerTurns();
-        PlayerTurn playerTurn = updatePrivatePlayerturn(turnDTO, playerhand, playerturns);
-
-        addTurnInPBF(pbf, playerTurn);
-    }
 
-    private void addTurnInPBF(PBF pbf, PlayerTurn playerTurn) {
-        // Cant get map serialization to work in jackson
-        //final TurnKey turnKey = new TurnKey(playerTurn.getTurnNumber(), playerTurn.getUsername());
-        pbf.getPublicTurns().put(playerTurn.getTurnNumber() + playerTurn.getUsername(), playerTurn);
-        pbfCollection.updateById(pbf.getId(), pbf);
+        Optional<String> phase = phase(turnDTO.getPhase());
+        if (phase.isPresent()) {
+            turnRepository.writeOrder(pbf.getId(), playerhand.getUsername(), turnDTO.getTurnNumber(), phase.get(), turnDTO.getOrder());
+        } else {
+            turnRepository.publish(pbf.getId(), playerhand.getUsername(), turnDTO.getTurnNumber());
+        }
     }
 
-    private PlayerTurn updatePrivatePlayerturn(TurnDTO turnDTO, Playerhand playerhand, Set<PlayerTurn> playerturns) {
-        PlayerTurn pt = getPlayerTurn(turnDTO, playerturns, playerhand.getUsername());
-
-        if ("SOT".equalsIgnoreCase(turnDTO.getPhase())) {
-            pt.setSot(turnDTO.getOrder());
-            pt.getSotHistory().add(turnDTO.getOrder());
-        } else if ("Trade".equalsIgnoreCase(turnDTO.getPhase())) {
-            pt.setTrade(turnDTO.getOrder());
-            pt.getTradeHistory().add(turnDTO.getOrder());
-        } else if ("CM".equalsIgnoreCase(turnDTO.getPhase())) {
-            pt.setCm(turnDTO.getOrder());
-            pt.getCmHistory().add(turnDTO.getOrder());
-        } else if ("Movement".equalsIgnoreCase(turnDTO.getPhase())) {
-            pt.setMovement(turnDTO.getOrder());
-            pt.getMovementHistory().add(turnDTO.getOrder());
-        } else if ("Research".equalsIgnoreCase(turnDTO.getPhase())) {
-            pt.setResearch(turnDTO.getOrder());
-            pt.getResearchHistory().add(turnDTO.getOrder());
-        }
-        playerhand.getPlayerTurns().add(pt);
-        return pt;
+    /**
+     * The field of the phase in {@link PlayerTurn}
+     */
+    private static Optional<String> phase(String phase) {
+        return Stream.of(PlayerTurn.SOT, PlayerTurn.TRADE, PlayerTurn.CM, PlayerTurn.MOVEMENT, PlayerTurn.RESEARCH)
+                .filter(field -> field.equalsIgnoreCase(phase))
+                .findFirst();
     }
 
     public void lockOrUnlockTurn(String pbfId, String playerId, TurnDTO turnDTO) {
         PBF pbf = findPBFById(pbfId);
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
-        PlayerTurn playerTurn = playerhand.getPlayerTurns().stream()
-                .filter(p -> p.getTurnNumber() == turnDTO.getTurnNumber())
-                .findFirst()
-                .orElseThrow(PlayerAction::cannotFindItem);
+        if (!turnRepository.setDisabled(pbfId, playerhand.getUsername(), turnDTO.getTurnNumber(), turnDTO.isLocked())) {
+            throw PlayerAction.cannotFindItem();
+        }
 
-        playerTurn.setDisabled(turnDTO.isLocked());
         String message = turnDTO.isLocked() ? " has locked in turn " + turnDTO.getTurnNumber() : " has re-opened turn " + turnDTO.getTurnNumber();
         createCommonPublicLog(message, pbfId, playerId);
-        pbfCollection.updateById(pbfId, pbf);
     }
 }
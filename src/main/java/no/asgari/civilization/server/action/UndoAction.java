@@ -17,18 +17,23 @@ package no.asgari.civilization.server.action;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.SheetName;
 import no.asgari.civilization.server.dto.ItemDTO;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Deck;
 import no.asgari.civilization.server.model.Draw;
+import no.asgari.civilization.server.model.GameEvent;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.Playerhand;
 import no.asgari.civilization.server.model.Tech;
 import no.asgari.civilization.server.model.Undo;
+import no.asgari.civilization.server.model.Unit;
+import no.asgari.civilization.server.mongodb.GameEventStream;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
 import org.mongojack.DBQuery;
 import org.mongojack.JacksonDBCollection;
 
@@ -39,7 +44,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 @Log4j
 public class UndoAction extends BaseAction {
@@ -48,18 +52,19 @@ public class UndoAction extends BaseAction {
 
     public UndoAction(DB db) {
         super(db);
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
-        this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class);
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
+        this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class, CatalogText.Stored.class);
     }
 
     private boolean putDrawnItemBackInPBF(PBF pbf, String playerId, Item item) {
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
+        Deck deck = deckRepository.find(pbf.getId(), item.getSheetName());
         if (item instanceof Tech) {
             //Remove from tech
             if (playerhand.getTechsChosen().remove(item)) {
                 logAction.createUndoLog(pbf.getId(), "has removed " + item.getName() + " from " + playerhand.getUsername(), item);
                 log.debug("Successfully undoed tech");
-            } else if (pbf.getDiscardedItems().remove(item)) {
+            } else if (deck.getDiscarded().remove(item)) {
                 playerhand.getTechsChosen().add((Tech) item);
                 logAction.createUndoLog(pbf.getId(), "has added back " + item.getName() + " to " + playerhand.getUsername(), item);
             } else {
@@ -70,14 +75,14 @@ public class UndoAction extends BaseAction {
             if (playerhand.getItems().remove(item)) {
                 item.setHidden(true);
                 logAction.createUndoLog(pbf.getId(), "has removed " + item.getName() + " from " + playerhand.getUsername() + " and put back in the deck. Deck is reshuffled", item);
-                pbf.getItems().add(item);
-                shufflePBFTwice(pbf);
+                deck.getItems().add(item);
+                shuffleDeckTwice(deck);
                 log.debug("Successfully undoed item");
-            } else if (pbf.getDiscardedItems().remove(item)) {
+            } else if (deck.getDiscarded().remove(item)) {
                 item.setHidden(true);
                 playerhand.getItems().add(item);
                 logAction.createUndoLog(pbf.getId(), "has added back " + item.getName() + " to " + playerhand.getUsername(), item);
-            } else if (pbf.getItems().remove(item)) {
+            } else if (deck.getItems().remove(item)) {
                 //In rare cases the item is put back to the player
                 item.setHidden(true);
                 playerhand.getItems().add(item);
@@ -88,7 +93,9 @@ public class UndoAction extends BaseAction {
             }
         }
 
-        pbfCollection.updateById(pbf.getId(), pbf);
+        GameEventStream.describe(pbf.getId(), GameEvent.Type.UNDO_APPLIED);
+        pbfRepository.save(pbf);
+        deckRepository.save(deck);
         return true;
     }
 
@@ -104,12 +111,13 @@ public class UndoAction extends BaseAction {
     private boolean putDrawnItemBackInPBF(PBF pbf, String playerId, Draw draw) {
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         Item item = draw.getItem();
+        Deck deck = deckRepository.find(pbf.getId(), item.getSheetName());
         if (item instanceof Tech) {
             //Remove from tech
             if (playerhand.getTechsChosen().remove(item)) {
                 logAction.createUndoLog(pbf.getId(), "has removed " + item.getName() + " from " + playerhand.getUsername(), item);
                 log.debug("Successfully undoed tech");
-            } else if (pbf.getDiscardedItems().remove(item)) {
+            } else if (deck.getDiscarded().remove(item)) {
                 playerhand.getTechsChosen().add((Tech) item);
                 logAction.createUndoLog(pbf.getId(), "has added back " + item.getName() + " to " + playerhand.getUsername(), item);
             } else {
@@ -120,24 +128,23 @@ public class UndoAction extends BaseAction {
             if(!Strings.isNullOrEmpty(draw.getGameLogId())) {
                 GameLog gamelog = gameLogCollection.findOneById(draw.getGameLogId());
                 if(gamelog.getPrivateLog().contains("discarded")) {
-                    if(pbf.getDiscardedItems().remove(item)) {
+                    if(deck.getDiscarded().remove(item)) {
                         item.setHidden(true);
                         playerhand.getItems().add(item);
                         logAction.createUndoLog(pbf.getId(), "has added back " + item.getName() + " to " + playerhand.getUsername(), item);
                     }
                 } else if(gamelog.getPrivateLog().contains("drew") && !gamelog.getPrivateLog().contains("barbarian")) {
-                    if (playerhand.getItems().remove(item) || pbf.getDiscardedItems().remove(item)) {
+                    if (playerhand.getItems().remove(item) || deck.getDiscarded().remove(item)) {
                         item.setHidden(true);
                         logAction.createUndoLog(pbf.getId(), "has removed " + item.getName() + " from " + playerhand.getUsername() + " and put back in the deck. Deck is reshuffled", item);
-                        pbf.getItems().add(item);
-                        shufflePBFTwice(pbf);
+                        deck.getItems().add(item);
+                        shuffleDeckTwice(deck);
                     }
                 } else if(gamelog.getPrivateLog().contains("drew") && gamelog.getPrivateLog().contains("barbarian")) {
-                    pbf.getItems().addAll(playerhand.getBarbarians());
+                    putBarbariansBackInDecks(pbf.getId(), playerhand.getBarbarians());
                     playerhand.getBarbarians().clear();
                     logAction.createUndoLog(pbf.getId(), "has removed barbarians from " + playerhand.getUsername() + " and put back in the deck. Deck is reshuffled", item);
-                    shufflePBFTwice(pbf);
-                }  else if (pbf.getItems().remove(item)) {
+                }  else if (deck.getItems().remove(item)) {
                     //In rare cases the item is put back to the player (Not sure if I need this)
                     item.setHidden(true);
                     playerhand.getItems().add(item);
@@ -151,14 +158,14 @@ public class UndoAction extends BaseAction {
                 if (playerhand.getItems().remove(item)) {
                     item.setHidden(true);
                     logAction.createUndoLog(pbf.getId(), "has removed " + item.getName() + " from " + playerhand.getUsername() + " and put back in the deck. Deck is reshuffled", item);
-                    pbf.getItems().add(item);
-                    shufflePBFTwice(pbf);
+                    deck.getItems().add(item);
+                    shuffleDeckTwice(deck);
                     log.debug("Successfully undoed item");
-                } else if (pbf.getDiscardedItems().remove(item)) {
+                } else if (deck.getDiscarded().remove(item)) {
                     item.setHidden(true);
                     playerhand.getItems().add(item);
                     logAction.createUndoLog(pbf.getId(), "has added back " + item.getName() + " to " + playerhand.getUsername(), item);
-                } else if (pbf.getItems().remove(item)) {
+                } else if (deck.getItems().remove(item)) {
                     //In rare cases the item is put back to the player
                     item.setHidden(true);
                     playerhand.getItems().add(item);
@@ -170,13 +177,24 @@ public class UndoAction extends BaseAction {
             }
         }
 
-        pbfCollection.updateById(pbf.getId(), pbf);
+        GameEventStream.describe(pbf.getId(), GameEvent.Type.UNDO_APPLIED);
+        pbfRepository.save(pbf);
+        deckRepository.save(deck);
         return true;
     }
 
-    private void shufflePBFTwice(PBF pbf) {
-        Collections.shuffle(pbf.getItems(), new Random(System.nanoTime()));
-        Collections.shuffle(pbf.getItems(), new Random(System.nanoTime()));
+    private void putBarbariansBackInDecks(String pbfId, List<Unit> barbarians) {
+        barbarians.forEach(barbarian -> {
+            Deck deck = deckRepository.find(pbfId, barbarian.getSheetName());
+            deck.getItems().add(barbarian);
+            shuffleDeckTwice(deck);
+            deckRepository.save(deck);
+        });
+    }
+
+    private void shuffleDeckTwice(Deck deck) {
+        Collections.shuffle(deck.getItems(), new Random(System.nanoTime()));
+        Collections.shuffle(deck.getItems(), new Random(System.nanoTime()));
     }
 
     /**
@@ -194,7 +212,7 @@ public class UndoAction extends BaseAction {
         Preconditions.checkNotNull(gameLog.getDraw());
         Preconditions.checkNotNull(gameLog.getDraw().getUndo());
 
-        PBF pbf = pbfCollection.findOneById(gameLog.getPbfId());
+        PBF pbf = findPBFById(gameLog.getPbfId());
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
 
         if (gameLog.getDraw() == null || gameLog.getDraw().getUndo() == null) {
@@ -213,7 +231,7 @@ public class UndoAction extends BaseAction {
             gameLog.getDraw().getUndo().setDone(true);
             putDrawnItemBackInPBF(pbf, gameLog.getDraw());
         }
-        gameLogCollection.updateById(gameLog.getId(), gameLog);
+        UnitOfWork.afterCommit(() -> gameLogCollection.updateById(gameLog.getId(), gameLog));
         return gameLog;
     }
 
@@ -234,44 +252,36 @@ public class UndoAction extends BaseAction {
             throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
                     .build());
         }
-        PBF pbf = pbfCollection.findOneById(logContainingItemToUndo.getPbfId());
+        PBF pbf = findPBFById(logContainingItemToUndo.getPbfId());
         if (!pbf.getPlayers().stream().anyMatch(p -> p.getPlayerId().equals(playerId))) {
             log.error("Couldn't find playerId " + playerId + " in PBF's players");
             throw PlayerAction.cannotFindPlayer();
         }
 
         draw.setUndo(new Undo(pbf.getNumOfPlayers(), playerId));
-        gameLogCollection.updateById(logContainingItemToUndo.getId(), logContainingItemToUndo);
+        UnitOfWork.afterCommit(() -> gameLogCollection.updateById(logContainingItemToUndo.getId(), logContainingItemToUndo));
 
         createLog(draw.getItem(), pbf.getId(), GameLog.LogType.UNDO, playerId);
     }
 
+    /**
+     * Logs without an undo are in the index on (pbfId, draw.undo.done) with null for draw.undo.done.
+     * Looking up false only reads the index entries with exactly that value, so only the undoes are read, not every log of the game
+     */
     public List<GameLog> getAllActiveUndos(String pbfId) {
-        List<GameLog> gameLogs = gameLogCollection.find(DBQuery.is("pbfId", pbfId), new BasicDBObject()).toArray();
-
-        return gameLogs.stream()
-                .filter(GameLog::hasActiveUndo)
-                .collect(Collectors.toList());
+        return gameLogCollection.find(DBQuery.is("pbfId", pbfId).is(GameLog.UNDO_DONE, false)).toArray();
     }
 
     public List<GameLog> getPlayersActiveUndoes(String pbfId, String username) {
-        List<GameLog> gamelogs = gameLogCollection.find(DBQuery.is("pbfId", pbfId).is("username", username), new BasicDBObject()).toArray();
-
-        return gamelogs.stream()
-                .filter(GameLog::hasActiveUndo)
-                .collect(Collectors.toList());
+        return gameLogCollection.find(DBQuery.is("pbfId", pbfId).is(GameLog.UNDO_DONE, false).is("username", username)).toArray();
     }
 
     public List<GameLog> getAllFinishedUndos(String pbfId) {
-        List<GameLog> gameLogs = gameLogCollection.find(DBQuery.is("pbfId", pbfId), new BasicDBObject()).toArray();
-
-        return gameLogs.stream()
-                .filter(log -> log.getDraw() != null && log.getDraw().getUndo() != null && log.getDraw().getUndo().isDone())
-                .collect(Collectors.toList());
+        return gameLogCollection.find(DBQuery.is("pbfId", pbfId).is(GameLog.UNDO_DONE, true)).toArray();
     }
 
     public void playerPutsItemBackInDeck(String pbfId, String playerId, ItemDTO itemdto) {
-        PBF pbf = pbfCollection.findOneById(pbfId);
+        PBF pbf = findPBFById(pbfId);
 
         Playerhand playerhand = getPlayerhandByPlayerId(playerId, pbf);
         Optional<SheetName> dtoSheet = SheetName.find(itemdto.getSheetName());
@@ -15,14 +15,18 @@
 
 package no.asgari.civilization.server.application;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.excel.ItemReader;
 import no.asgari.civilization.server.model.GameType;
+import no.asgari.civilization.server.mongodb.GameLogWriter;
+import no.asgari.civilization.server.mongodb.WriteTiers;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +46,22 @@ public final class CivSingleton {
 
     private Cache<String, String> chatCache;
 
+    private MetricRegistry metrics = new MetricRegistry();
+
+    private GameExecutor gameExecutor;
+
+    private ReadExecutor readExecutor;
+
+    private WriteTiers writeTiers;
+
+    private int publicChatRetentionDays;
+
+    private int snapshotEveryEvents = 50;
+
+    private boolean bsonCodecs;
+
+    private GameLogWriter gameLogWriter;
+
     private CivSingleton() {
         this.chatCache = CacheBuilder.<String, String>newBuilder().expireAfterWrite(30, TimeUnit.MINUTES).build();
     }
@@ -74,4 +94,102 @@ public final class CivSingleton {
         return chatCache;
     }
 
+    public void setMetrics(MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * The registry of the environment, or a standalone one when not running inside dropwizard
+     */
+    public MetricRegistry metrics() {
+        return metrics;
+    }
+
+    public void setGameExecutor(GameExecutor gameExecutor) {
+        this.gameExecutor = gameExecutor;
+    }
+
+    /**
+     * Runs the commands changing a game. If none is set, one with a thread per core is created
+     */
+    public synchronized GameExecutor gameExecutor() {
+        if (gameExecutor == null) {
+            gameExecutor = new GameExecutor(Runtime.getRuntime().availableProcessors(), metrics);
+        }
+        return gameExecutor;
+    }
+
+    public void setReadExecutor(ReadExecutor readExecutor) {
+        this.readExecutor = readExecutor;
+    }
+
+    /**
+     * Runs the reads of the polled endpoints. If none is set, one with the default settings is created
+     */
+    public synchronized ReadExecutor readExecutor() {
+        if (readExecutor == null) {
+            readExecutor = new ReadExecutor(new ReadExecutorConfiguration(), metrics);
+        }
+        return readExecutor;
+    }
+
+    public void setWriteTiers(WriteTiers writeTiers) {
+        this.writeTiers = writeTiers;
+    }
+
+    /**
+     * The write concerns of the collections. If none is set, one with the default tiers is created
+     */
+    public synchronized WriteTiers writeTiers() {
+        if (writeTiers == null) {
+            WriteConcernConfiguration configuration = new WriteConcernConfiguration();
+            writeTiers = new WriteTiers(configuration.writeConcerns(), configuration.collections, metrics);
+        }
+        return writeTiers;
+    }
+
+    public void setPublicChatRetentionDays(int publicChatRetentionDays) {
+        this.publicChatRetentionDays = publicChatRetentionDays;
+    }
+
+    public void setGameLogWriter(GameLogWriter gameLogWriter) {
+        this.gameLogWriter = gameLogWriter;
+    }
+
+    /**
+     * Present when the game logs are written in the background
+     */
+    public Optional<GameLogWriter> gameLogWriter() {
+        return Optional.ofNullable(gameLogWriter);
+    }
+
+    /**
+     * How many days public chat is kept. 0 means forever
+     */
+    public int publicChatRetentionDays() {
+        return publicChatRetentionDays;
+    }
+
+    public void setSnapshotEveryEvents(int snapshotEveryEvents) {
+        this.snapshotEveryEvents = snapshotEveryEvents;
+    }
+
+    /**
+     * How many events of a game there are between each snapshot of the whole PBF
+     */
+    public int snapshotEveryEvents() {
+        return snapshotEveryEvents;
+    }
+
+    public void setBsonCodecs(boolean bsonCodecs) {
+        this.bsonCodecs = bsonCodecs;
+    }
+
+    /**
+     * If true the pbfs are decoded straight from bson, instead of through a DBObject
+     */
+    public boolean bsonCodecs() {
+        return bsonCodecs;
+    }
+
 }
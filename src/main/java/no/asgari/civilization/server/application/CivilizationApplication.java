@@ -21,11 +21,11 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheBuilderSpec;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
-import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
+import com.mongodb.ServerAddress;
 import io.dropwizard.Application;
 import io.dropwizard.assets.AssetsBundle;
 import io.dropwizard.auth.basic.BasicCredentials;
@@ -36,9 +36,18 @@ import io.dropwizard.java8.auth.basic.BasicAuthFactory;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import lombok.extern.log4j.Log4j;
-import no.asgari.civilization.server.model.Chat;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.Player;
+import no.asgari.civilization.server.mongodb.ChatTimestampMigration;
+import no.asgari.civilization.server.mongodb.DeckMigration;
+import no.asgari.civilization.server.mongodb.GameLogWriter;
+import no.asgari.civilization.server.mongodb.IndexManager;
+import no.asgari.civilization.server.mongodb.PbfSummaryRepository;
+import no.asgari.civilization.server.mongodb.StatsRepository;
+import no.asgari.civilization.server.mongodb.TurnMigration;
+import no.asgari.civilization.server.mongodb.WriteTiers;
 import no.asgari.civilization.server.resource.AdminResource;
 import no.asgari.civilization.server.resource.AuthResource;
 import no.asgari.civilization.server.resource.DrawResource;
@@ -50,8 +59,8 @@ import org.mongojack.JacksonDBCollection;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
+import java.lang.management.ManagementFactory;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.eclipse.jetty.servlets.CrossOriginFilter.ALLOWED_HEADERS_PARAM;
@@ -76,36 +85,63 @@ public class CivilizationApplication extends Application<CivilizationConfigurati
     public void initialize(Bootstrap<CivilizationConfiguration> bootstrap) {
         bootstrap.addBundle(new Java8Bundle());
         bootstrap.addBundle(new AssetsBundle());
+        bootstrap.addCommand(new RebuildSummariesCommand());
+        bootstrap.addCommand(new RebuildStatsCommand());
     }
 
-    @Override
-    public void run(CivilizationConfiguration configuration, Environment environment) throws Exception {
-        DB db;
-        MongoClient mongo;
+    static MongoClient createMongoClient(CivilizationConfiguration configuration, MongoClientOptions.Builder options) {
         if (!Strings.isNullOrEmpty(configuration.mongodbUser) && !Strings.isNullOrEmpty(configuration.mongodbPassword)) {
             MongoClientURI clientURI = new MongoClientURI("mongodb://" + configuration.mongodbUser + ":" + configuration.mongodbPassword
-                    + "@" + configuration.mongohost + ":" + configuration.mongoport + "/" + configuration.mongodb);
-
-            mongo = new MongoClient(clientURI);
-            db = mongo.getDB(clientURI.getDatabase());
-        } else {
-            mongo = new MongoClient(configuration.mongohost, configuration.mongoport);
-            db = mongo.getDB(configuration.mongodb);
+                    + "@" + configuration.mongohost + ":" + configuration.mongoport + "/" + configuration.mongodb, options);
+            return new MongoClient(clientURI);
         }
+        return new MongoClient(new ServerAddress(configuration.mongohost, configuration.mongoport), options.build());
+    }
+
+    @Override
+    public void run(CivilizationConfiguration configuration, Environment environment) throws Exception {
+        WriteTiers writeTiers = new WriteTiers(configuration.writeConcerns.writeConcerns(), configuration.writeConcerns.collections, environment.metrics());
+        MongoClient mongo = createMongoClient(configuration, configuration.mongo.options().addCommandListener(writeTiers));
+        DB db = mongo.getDB(configuration.mongodb);
+        writeTiers.apply(db);
+        CivSingleton.instance().setWriteTiers(writeTiers);
+        CivSingleton.instance().setMetrics(environment.metrics());
+        CivSingleton.instance().setPublicChatRetentionDays(configuration.publicChatRetentionDays);
+        CivSingleton.instance().setSnapshotEveryEvents(configuration.snapshotEveryEvents);
+        CivSingleton.instance().setBsonCodecs(configuration.bsonCodecs);
         MongoManaged mongoManaged = new MongoManaged(mongo);
         environment.lifecycle().manage(mongoManaged);
+        new MongoPoolMetrics(ManagementFactory.getPlatformMBeanServer()).register(environment.metrics());
+        createGameLogWriter(configuration.gameLogWriteBehind, db, mongoManaged, environment);
+
+        //Commands are mostly waiting on mongo, so twice as many threads as cores
+        GameExecutor gameExecutor = new GameExecutor(Runtime.getRuntime().availableProcessors() * 2, environment.metrics());
+        environment.lifecycle().manage(gameExecutor);
+        CivSingleton.instance().setGameExecutor(gameExecutor);
+
+        ReadExecutor readExecutor = new ReadExecutor(configuration.readExecutor, environment.metrics());
+        environment.lifecycle().manage(readExecutor);
+        CivSingleton.instance().setReadExecutor(readExecutor);
 
         JacksonDBCollection<Player, String> playerCollection = JacksonDBCollection.wrap(db.getCollection(Player.COL_NAME), Player.class, String.class);
-        JacksonDBCollection<PBF, String> pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
-        JacksonDBCollection<Chat, String> chatCollection = JacksonDBCollection.wrap(db.getCollection(Chat.COL_NAME), Chat.class, String.class);
-        createUniqueIndexForPlayer(playerCollection);
+        JacksonDBCollection<PBF, String> pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
         createUsernameCache(playerCollection);
         //createUniqueIndexForPBF(pbfCollection);
-        createIndexForChat(chatCollection);
+        new DeckMigration(db).migrate();
+        new TurnMigration(db).migrate();
+        createPbfSummaries(new PbfSummaryRepository(db));
+        createStats(new StatsRepository(db));
+        new ChatTimestampMigration(db).migrate();
         //createItemCache(); //TODO Have to rewrite the code to make it work, right now everyone gets same number and same draws
 
+        //The unique indexes are built before the server starts serving, the others in the background afterwards
+        IndexManager indexManager = new IndexManager(db);
+        environment.lifecycle().manage(indexManager);
+        environment.lifecycle().manage(new PbfArchiver(db, configuration.archiveAfterDays, environment.metrics()));
+
         //healtcheck
         environment.healthChecks().register("MongoHealthCheck", new MongoHealthCheck(mongo));
+        environment.healthChecks().register("MongoIndexes", new IndexHealthCheck(indexManager));
 
         //Resources
         environment.jersey().register(new GameResource(db));
@@ -152,23 +188,43 @@ public class CivilizationApplication extends Application<CivilizationConfigurati
         CivSingleton.instance().setPlayerCache(usernameCache);
     }
 
-    private void createUniqueIndexForPlayer(JacksonDBCollection<Player, String> playerCollection) {
-        List<DBObject> indexInfos = playerCollection.getIndexInfo();
-        if (indexInfos.isEmpty()) {
-            playerCollection.createIndex(new BasicDBObject(Player.USERNAME, 1), new BasicDBObject("unique", true));
-            playerCollection.createIndex(new BasicDBObject(Player.EMAIL, 1), new BasicDBObject("unique", true));
-        }
-    }
-
     /*private void createUniqueIndexForPBF(JacksonDBCollection<PBF, String> pbfCollection) {
         if (pbfCollection.getIndexInfo().isEmpty()) {
             pbfCollection.createIndex(new BasicDBObject(PBF.NAME, 1), new BasicDBObject("unique", true));
         }
     }*/
 
-    private void createIndexForChat(JacksonDBCollection<Chat, String> chatCollection) {
-        if (chatCollection.getIndexInfo().isEmpty()) {
-            chatCollection.createIndex(new BasicDBObject(Chat.PBFID, 1));
+    /**
+     * The writer is stopped by the mongo lifecycle, so the queued logs are written before the client is closed
+     */
+    private void createGameLogWriter(GameLogWriteBehindConfiguration config, DB db, MongoManaged mongoManaged, Environment environment) {
+        if (!config.enabled) {
+            return;
+        }
+        GameLogWriter gameLogWriter = new GameLogWriter(
+                JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class, CatalogText.Stored.class),
+                config.batchSize, config.maxLatencyMillis, config.queueCapacity, environment.metrics());
+        mongoManaged.manage(gameLogWriter);
+        CivSingleton.instance().setGameLogWriter(gameLogWriter);
+    }
+
+    /**
+     * Games created before the summaries existed get theirs the first time
+     */
+    private void createPbfSummaries(PbfSummaryRepository pbfSummaryRepository) {
+        if (pbfSummaryRepository.isEmpty()) {
+            pbfSummaryRepository.rebuild();
+        }
+    }
+
+    /**
+     * Games finished before the stats existed are counted the first time, and counts that didn't finish are finished
+     */
+    private void createStats(StatsRepository statsRepository) {
+        if (statsRepository.findPlayers().isEmpty()) {
+            statsRepository.rebuild();
+        } else {
+            statsRepository.finishPending();
         }
     }
 }
@@ -19,8 +19,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 public class CivilizationConfiguration extends Configuration {
     public static final String CIVILIZATION = "civilization";
@@ -41,4 +43,51 @@ public class CivilizationConfiguration extends Configuration {
     public String mongodbUser = System.getenv("MONGODB_USER") == null ? null : System.getenv("MONGODB_USER");
 
     public String mongodbPassword = System.getenv("MONGODB_PASS") == null ? null : System.getenv("MONGODB_PASS");
-}
\ No newline at end of file
+
+    @JsonProperty
+    @Valid
+    @NotNull
+    public MongoConfiguration mongo = new MongoConfiguration();
+
+    /**
+     * Public chat older than this many days is removed by mongo. 0 keeps it forever
+     */
+    @JsonProperty
+    @Min(0)
+    public int publicChatRetentionDays = 0;
+
+    /**
+     * Games which ended more than this many days ago are moved to the archive. 0 never archives them
+     */
+    @JsonProperty
+    @Min(0)
+    public int archiveAfterDays = 0;
+
+    /**
+     * A snapshot of the whole game is kept every this many events, so replaying a game never applies more events than this
+     */
+    @JsonProperty
+    @Min(1)
+    public int snapshotEveryEvents = 50;
+
+    /**
+     * Decode the games straight from bson instead of through a DBObject. Compare the PBFRepository.reads timers of the two
+     */
+    @JsonProperty
+    public boolean bsonCodecs = false;
+
+    @JsonProperty
+    @Valid
+    @NotNull
+    public GameLogWriteBehindConfiguration gameLogWriteBehind = new GameLogWriteBehindConfiguration();
+
+    @JsonProperty
+    @Valid
+    @NotNull
+    public ReadExecutorConfiguration readExecutor = new ReadExecutorConfiguration();
+
+    @JsonProperty
+    @Valid
+    @NotNull
+    public WriteConcernConfiguration writeConcerns = new WriteConcernConfiguration();
+}
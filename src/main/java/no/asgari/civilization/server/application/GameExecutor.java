@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the commands that change a game one at a time, in the order they arrive.
+ * <p>
+ * Every game has its own mailbox, and the mailboxes share one thread pool. So commands for one game never run at the same time,
+ * while different games run in parallel. The commands waiting in a mailbox are run one after the other by the same thread,
+ * each in its own {@link UnitOfWork}, so a command that fails or is in conflict leaves nothing behind and doesn't fail the others.
+ * <p>
+ * The PBF is not kept between the commands, and each command reads and writes it itself. Writing it once for the whole batch would
+ * take the changes of a failed command along with the others, and a kept copy goes stale when the game is written outside this mailbox,
+ * like by another server, which would turn the next commands into conflicts. {@link #MAX_BATCH_SIZE} only
+ * limits how long one game holds a thread before the other games get their turn.
+ */
+@Log4j
+public class GameExecutor implements Managed {
+    //The commands run before the mailbox lets other games have the thread
+    private static final int MAX_BATCH_SIZE = 16;
+    private static final long IDLE_MINUTES = 10;
+
+    //The game whose command is running, so commands calling other commands for the same game don't wait for themselves
+    private static final ThreadLocal<String> RUNNING_COMMAND = new ThreadLocal<>();
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+    private final ScheduledExecutorService sweeper;
+    private final MetricRegistry metrics;
+
+    public GameExecutor(int threads, MetricRegistry metrics) {
+        this.metrics = metrics;
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("game-executor-%d")
+                .setDaemon(true)
+                .build());
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("game-executor-sweeper")
+                .setDaemon(true)
+                .build());
+        sweeper.scheduleWithFixedDelay(this::removeIdleMailboxes, IDLE_MINUTES, IDLE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Runs the command in the mailbox of the game and waits for the result
+     */
+    public <T> T execute(String pbfId, Supplier<T> command) {
+        if (pbfId.equals(RUNNING_COMMAND.get())) {
+            return command.get();
+        }
+
+        Command<T> cmd = new Command<>(command);
+        while (!mailboxes.computeIfAbsent(pbfId, Mailbox::new).offer(cmd)) {
+            //The mailbox was removed while idle, a new one is created
+        }
+
+        try {
+            return cmd.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void execute(String pbfId, Runnable command) {
+        execute(pbfId, () -> {
+            command.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void start() throws Exception {
+    }
+
+    @Override
+    public void stop() throws Exception {
+        sweeper.shutdownNow();
+        pool.shutdown();
+        if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Commands were still running when the game executor was stopped");
+            pool.shutdownNow();
+        }
+        mailboxes.values().forEach(mailbox -> mailbox.failQueued(new RejectedExecutionException("The game executor is stopped")));
+    }
+
+    private void removeIdleMailboxes() {
+        long idleSince = System.nanoTime() - TimeUnit.MINUTES.toNanos(IDLE_MINUTES);
+        mailboxes.values().stream()
+                .filter(mailbox -> mailbox.closeIfIdle(idleSince))
+                .forEach(mailbox -> {
+                    mailboxes.remove(mailbox.pbfId, mailbox);
+                    metrics.removeMatching((name, metric) -> name.startsWith(mailbox.metricPrefix));
+                });
+    }
+
+    private static final class Command<T> {
+        private final Supplier<T> command;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+
+        private Command(Supplier<T> command) {
+            this.command = command;
+        }
+
+        private void run() {
+            value = UnitOfWork.run(command);
+        }
+
+        private void complete() {
+            result.complete(value);
+        }
+
+        private void fail(Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private final class Mailbox {
+        private final String pbfId;
+        private final String metricPrefix;
+        private final Queue<Command<?>> queue = new ArrayDeque<>();
+        private final Histogram queueDepth;
+        private final Timer serviceTime;
+        private boolean scheduled;
+        private boolean closed;
+        private long lastUsed = System.nanoTime();
+
+        private Mailbox(String pbfId) {
+            this.pbfId = pbfId;
+            this.metricPrefix = MetricRegistry.name(GameExecutor.class, pbfId) + ".";
+            this.queueDepth = metrics.histogram(metricPrefix + "queue-depth");
+            this.serviceTime = metrics.timer(metricPrefix + "service-time");
+        }
+
+        private synchronized boolean offer(Command<?> command) {
+            if (closed) {
+                return false;
+            }
+            queue.add(command);
+            queueDepth.update(queue.size());
+            lastUsed = System.nanoTime();
+            if (!scheduled) {
+                try {
+                    pool.execute(this::runBatch);
+                } catch (RejectedExecutionException e) {
+                    queue.remove(command);
+                    throw e;
+                }
+                scheduled = true;
+            }
+            return true;
+        }
+
+        private synchronized List<Command<?>> nextBatch() {
+            List<Command<?>> batch = new ArrayList<>();
+            while (batch.size() < MAX_BATCH_SIZE && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+            return batch;
+        }
+
+        private synchronized void batchDone() {
+            lastUsed = System.nanoTime();
+            if (queue.isEmpty()) {
+                scheduled = false;
+                return;
+            }
+            try {
+                pool.execute(this::runBatch);
+            } catch (RejectedExecutionException e) {
+                failQueued(e);
+            }
+        }
+
+        /**
+         * Fails the commands that will never run, so their callers don't wait forever
+         */
+        private synchronized void failQueued(Throwable e) {
+            queue.forEach(command -> command.fail(e));
+            queue.clear();
+            scheduled = false;
+        }
+
+        private synchronized boolean closeIfIdle(long idleSince) {
+            if (!scheduled && queue.isEmpty() && lastUsed - idleSince < 0) {
+                closed = true;
+            }
+            return closed;
+        }
+
+        private void runBatch() {
+            RUNNING_COMMAND.set(pbfId);
+            try {
+                for (Command<?> command : nextBatch()) {
+                    try (Timer.Context ignored = serviceTime.time()) {
+                        command.run();
+                    } catch (RuntimeException | Error e) {
+                        command.fail(e);
+                        continue;
+                    }
+                    command.complete();
+                }
+            } finally {
+                RUNNING_COMMAND.remove();
+                batchDone();
+            }
+        }
+    }
+}
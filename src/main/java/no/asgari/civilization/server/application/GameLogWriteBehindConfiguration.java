@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Settings for writing the game logs in the background. Off by default, so every log is written before the response
+ */
+public class GameLogWriteBehindConfiguration {
+
+    @JsonProperty
+    public boolean enabled = false;
+
+    //The most logs written in one insert
+    @JsonProperty
+    @Min(1)
+    public int batchSize = 100;
+
+    //The longest a log waits in the queue before it is written
+    @JsonProperty
+    @Min(1)
+    public long maxLatencyMillis = 200;
+
+    //When the queue is full, the request writes its log itself
+    @JsonProperty
+    @Min(1)
+    public int queueCapacity = 10000;
+}
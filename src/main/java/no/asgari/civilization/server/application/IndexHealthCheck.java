@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.health.HealthCheck;
+import no.asgari.civilization.server.mongodb.IndexManager;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports how far the {@link IndexManager} has come. Unhealthy only if an index could not be created,
+ * the indexes still building are listed in the message
+ */
+public class IndexHealthCheck extends HealthCheck {
+
+    private final IndexManager indexManager;
+
+    public IndexHealthCheck(IndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    @Override
+    protected Result check() throws Exception {
+        Map<IndexManager.State, String> indexesByState = new TreeMap<>(indexManager.getStatuses().entrySet().stream()
+                .collect(Collectors.groupingBy(e -> e.getValue().getState(),
+                        Collectors.mapping(Map.Entry::getKey, Collectors.joining(", ")))));
+
+        String failed = indexManager.getStatuses().entrySet().stream()
+                .filter(e -> e.getValue().getState() == IndexManager.State.FAILED)
+                .map(e -> e.getKey() + ": " + e.getValue().getError())
+                .collect(Collectors.joining("; "));
+        if (!failed.isEmpty()) {
+            return Result.unhealthy("Could not create the indexes " + failed);
+        }
+        return Result.healthy(indexesByState.toString());
+    }
+}
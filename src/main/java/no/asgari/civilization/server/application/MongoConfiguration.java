@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mongodb.MongoClientOptions;
+
+import javax.validation.constraints.Min;
+
+/**
+ * The connection pool and timeouts of the mongo client. The defaults are the ones of the driver.
+ * A timeout of 0 waits forever, and an idle or life time of 0 keeps the connection forever
+ */
+public class MongoConfiguration {
+
+    //The most connections to each server
+    @JsonProperty
+    @Min(1)
+    public int connectionsPerHost = 100;
+
+    @JsonProperty
+    @Min(0)
+    public int minConnectionsPerHost = 0;
+
+    //connectionsPerHost times this many threads may wait for a connection, the next one fails at once
+    @JsonProperty
+    @Min(1)
+    public int waitQueueMultiplier = 5;
+
+    //How long a thread waits for a connection before it fails
+    @JsonProperty
+    @Min(0)
+    public int maxWaitTimeMillis = 120000;
+
+    @JsonProperty
+    @Min(0)
+    public int connectTimeoutMillis = 10000;
+
+    @JsonProperty
+    @Min(0)
+    public int socketTimeoutMillis = 0;
+
+    @JsonProperty
+    @Min(0)
+    public int serverSelectionTimeoutMillis = 30000;
+
+    @JsonProperty
+    @Min(0)
+    public int maxConnectionIdleTimeMillis = 0;
+
+    @JsonProperty
+    @Min(0)
+    public int maxConnectionLifeTimeMillis = 0;
+
+    public MongoClientOptions.Builder options() {
+        return MongoClientOptions.builder()
+                .connectionsPerHost(connectionsPerHost)
+                .minConnectionsPerHost(minConnectionsPerHost)
+                .threadsAllowedToBlockForConnectionMultiplier(waitQueueMultiplier)
+                .maxWaitTime(maxWaitTimeMillis)
+                .connectTimeout(connectTimeoutMillis)
+                .socketTimeout(socketTimeoutMillis)
+                .serverSelectionTimeout(serverSelectionTimeoutMillis)
+                .maxConnectionIdleTime(maxConnectionIdleTimeMillis)
+                .maxConnectionLifeTime(maxConnectionLifeTimeMillis);
+    }
+}
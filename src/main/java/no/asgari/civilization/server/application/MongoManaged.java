@@ -18,22 +18,40 @@ package no.asgari.civilization.server.application;
 import com.mongodb.Mongo;
 import io.dropwizard.lifecycle.Managed;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MongoManaged implements Managed {
 
     private Mongo mongo;
 
+    //Started after and stopped before the client, since they write to mongo
+    private final List<Managed> dependents = new ArrayList<>();
+
     public MongoManaged(Mongo mongo) {
         this.mongo = mongo;
     }
 
+    public void manage(Managed dependent) {
+        dependents.add(dependent);
+    }
+
     @Override
     public void start() throws Exception {
-
+        for (Managed dependent : dependents) {
+            dependent.start();
+        }
     }
 
     @Override
     public void stop() throws Exception {
-        mongo.close();
+        try {
+            for (int i = dependents.size() - 1; i >= 0; i--) {
+                dependents.get(i).stop();
+            }
+        } finally {
+            mongo.close();
+        }
     }
 
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.mongodb.management.ConnectionPoolStatisticsMBean;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Gauges of the connection pools of the mongo client, summed over the servers.
+ * <p>
+ * The driver keeps the statistics of every pool in an MBean, so they are read from there.
+ * When checked-out is at max-size and the wait-queue is growing, the requests are waiting for a connection and not for mongo.
+ */
+public class MongoPoolMetrics {
+    private static final ObjectName POOLS = poolsName();
+
+    private final MBeanServer mBeanServer;
+
+    public MongoPoolMetrics(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    public void register(MetricRegistry metrics) {
+        metrics.register(name("checked-out"), (Gauge<Integer>) () -> sum(ConnectionPoolStatisticsMBean::getCheckedOutCount));
+        metrics.register(name("wait-queue-size"), (Gauge<Integer>) () -> sum(ConnectionPoolStatisticsMBean::getWaitQueueSize));
+        metrics.register(name("size"), (Gauge<Integer>) () -> sum(ConnectionPoolStatisticsMBean::getSize));
+        metrics.register(name("max-size"), (Gauge<Integer>) () -> sum(ConnectionPoolStatisticsMBean::getMaxSize));
+        metrics.register(name("utilization"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(sum(ConnectionPoolStatisticsMBean::getCheckedOutCount), sum(ConnectionPoolStatisticsMBean::getMaxSize));
+            }
+        });
+    }
+
+    int sum(ToIntFunction<ConnectionPoolStatisticsMBean> statistic) {
+        return mBeanServer.queryNames(POOLS, null).stream()
+                .map(pool -> JMX.newMBeanProxy(mBeanServer, pool, ConnectionPoolStatisticsMBean.class))
+                .mapToInt(pool -> read(pool, statistic))
+                .sum();
+    }
+
+    //A pool is removed when its server leaves the cluster, and is counted as empty
+    private static int read(ConnectionPoolStatisticsMBean pool, ToIntFunction<ConnectionPoolStatisticsMBean> statistic) {
+        try {
+            return statistic.applyAsInt(pool);
+        } catch (UndeclaredThrowableException e) {
+            return 0;
+        }
+    }
+
+    private static String name(String gauge) {
+        return MetricRegistry.name(MongoPoolMetrics.class, gauge);
+    }
+
+    private static ObjectName poolsName() {
+        try {
+            return new ObjectName("org.mongodb.driver:type=ConnectionPool,*");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.mongodb.PBFRepository;
+import no.asgari.civilization.server.mongodb.PbfArchive;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archives the games which ended more than the configured number of days ago, once every hour.
+ * <p>
+ * Reports how many games are left in the pbf collection, how much space they take,
+ * and how many of the games read had to be restored from the archive.
+ */
+@Log4j
+public class PbfArchiver implements Managed {
+    private static final long PERIOD_MINUTES = 60;
+
+    private final PbfArchive archive;
+    private final int archiveAfterDays;
+    private final ScheduledExecutorService scheduler;
+
+    public PbfArchiver(DB db, int archiveAfterDays, MetricRegistry metrics) {
+        this.archive = new PbfArchive(db);
+        this.archiveAfterDays = archiveAfterDays;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("pbf-archiver")
+                .setDaemon(true)
+                .build());
+
+        DBCollection pbfCollection = db.getCollection(PBF.COL_NAME);
+        metrics.register(MetricRegistry.name(PbfArchiver.class, "hot-games"), new CachedGauge<Long>(1, TimeUnit.MINUTES) {
+            @Override
+            protected Long loadValue() {
+                return pbfCollection.count();
+            }
+        });
+        metrics.register(MetricRegistry.name(PbfArchiver.class, "hot-bytes"), new CachedGauge<Number>(1, TimeUnit.MINUTES) {
+            @Override
+            protected Number loadValue() {
+                return (Number) pbfCollection.getStats().get("size");
+            }
+        });
+        metrics.register(MetricRegistry.name(PbfArchiver.class, "archived-games"), new CachedGauge<Long>(1, TimeUnit.MINUTES) {
+            @Override
+            protected Long loadValue() {
+                return archive.countArchived();
+            }
+        });
+
+        Meter hits = metrics.meter(MetricRegistry.name(PbfArchive.class, "hits"));
+        Meter reads = metrics.meter(MetricRegistry.name(PBFRepository.class, "reads"));
+        metrics.register(MetricRegistry.name(PbfArchiver.class, "archive-hit-rate"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getFifteenMinuteRate(), reads.getFifteenMinuteRate());
+            }
+        });
+    }
+
+    /**
+     * Archives every game which ended before the configured number of days ago
+     *
+     * @return the number of games archived
+     */
+    public int archive() {
+        Date endedBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(archiveAfterDays));
+        int archived = 0;
+        for (String pbfId : archive.findArchivable(endedBefore)) {
+            if (archive.archive(pbfId)) {
+                archived++;
+            }
+        }
+        if (archived > 0) {
+            log.info("Archived " + archived + " games which ended before " + endedBefore);
+        }
+        return archived;
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (archiveAfterDays > 0) {
+            scheduler.scheduleWithFixedDelay(this::archiveAndLog, 1, PERIOD_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    private void archiveAndLog() {
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            log.error("Couldn't archive the ended games", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.dto.MessageDTO;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the reads of the endpoints the clients are polling, and completes their {@link AsyncResponse} when the read is done.
+ * <p>
+ * The jetty thread is given back as soon as the read is queued. The read itself still holds a thread of this pool while it waits on mongo,
+ * since the repositories read through MongoJack, which only has the blocking driver, so the reads served at once are bound by the threads.
+ * The queue is bounded, so when mongo is slow the clients get 503 instead of the server running out of memory.
+ * The reads are timed by read-time, since a timer on the resource method would only time the queueing.
+ * The reads don't change anything, so they are run without a {@link UnitOfWork}.
+ */
+@Log4j
+public class ReadExecutor implements Managed {
+    private final ThreadPoolExecutor pool;
+    private final long timeoutSeconds;
+    private final Timer readTime;
+    private final Meter rejected;
+
+    public ReadExecutor(ReadExecutorConfiguration configuration, MetricRegistry metrics) {
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(configuration.queueCapacity);
+        this.pool = new ThreadPoolExecutor(configuration.threads, configuration.threads, 0L, TimeUnit.MILLISECONDS, queue,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("read-executor-%d")
+                        .setDaemon(true)
+                        .build());
+        this.timeoutSeconds = configuration.timeoutSeconds;
+        this.readTime = metrics.timer(MetricRegistry.name(ReadExecutor.class, "read-time"));
+        this.rejected = metrics.meter(MetricRegistry.name(ReadExecutor.class, "rejected"));
+        metrics.register(MetricRegistry.name(ReadExecutor.class, "queue-size"), (Gauge<Integer>) queue::size);
+    }
+
+    /**
+     * Runs the read in the pool and resumes the response with the result, or with the exception it threw
+     */
+    public <T> void resume(AsyncResponse response, Supplier<T> read) {
+        response.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+        response.setTimeoutHandler(timedOut -> timedOut.resume(unavailable("The server is busy. Please try again")));
+        try {
+            pool.execute(() -> {
+                Timer.Context time = readTime.time();
+                try {
+                    response.resume(read.get());
+                } catch (RuntimeException | Error e) {
+                    response.resume(e);
+                } finally {
+                    time.stop();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            log.warn("Too many reads are waiting, rejecting the read");
+            response.resume(unavailable("The server is busy. Please try again"));
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+    }
+
+    @Override
+    public void stop() throws Exception {
+        pool.shutdown();
+        if (!pool.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+            log.warn("Reads were still running when the read executor was stopped");
+            pool.shutdownNow();
+        }
+    }
+
+    private static Response unavailable(String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(new MessageDTO(message))
+                .build();
+    }
+}
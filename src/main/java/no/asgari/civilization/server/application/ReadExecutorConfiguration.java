@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Settings for the pool running the reads of the polled endpoints, so the jetty threads are not kept waiting on mongo
+ */
+public class ReadExecutorConfiguration {
+
+    @JsonProperty
+    @Min(1)
+    public int threads = 16;
+
+    //When this many reads are waiting, new ones are answered with 503
+    @JsonProperty
+    @Min(1)
+    public int queueCapacity = 1000;
+
+    //A read still not done after this long is answered with 503
+    @JsonProperty
+    @Min(1)
+    public long timeoutSeconds = 30;
+}
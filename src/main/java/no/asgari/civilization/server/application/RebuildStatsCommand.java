@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.mongodb.MongoClient;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import lombok.extern.log4j.Log4j;
+import net.sourceforge.argparse4j.inf.Namespace;
+import no.asgari.civilization.server.mongodb.StatsRepository;
+
+/**
+ * Counts the wins, attempts and ratings of all finished games again, ie if games have been changed by hand in the database.
+ * <p>
+ * Run with <code>java -jar civilization.jar rebuild-stats config.yml</code>
+ */
+@Log4j
+public class RebuildStatsCommand extends ConfiguredCommand<CivilizationConfiguration> {
+
+    public RebuildStatsCommand() {
+        super("rebuild-stats", "Counts the stats of the highscores again from the finished games");
+    }
+
+    @Override
+    protected void run(Bootstrap<CivilizationConfiguration> bootstrap, Namespace namespace, CivilizationConfiguration configuration) throws Exception {
+        MongoClient mongo = CivilizationApplication.createMongoClient(configuration, configuration.mongo.options());
+        try {
+            int games = new StatsRepository(mongo.getDB(configuration.mongodb)).rebuild();
+            log.info("Counted " + games + " games");
+        } finally {
+            mongo.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.mongodb.MongoClient;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import lombok.extern.log4j.Log4j;
+import net.sourceforge.argparse4j.inf.Namespace;
+import no.asgari.civilization.server.mongodb.PbfSummaryRepository;
+
+/**
+ * Makes the summaries of all games again from the games themselves, ie if they have been changed by hand in the database.
+ * <p>
+ * Run with <code>java -jar civilization.jar rebuild-summaries config.yml</code>
+ */
+@Log4j
+public class RebuildSummariesCommand extends ConfiguredCommand<CivilizationConfiguration> {
+
+    public RebuildSummariesCommand() {
+        super("rebuild-summaries", "Makes the summaries in the list of games again from the games");
+    }
+
+    @Override
+    protected void run(Bootstrap<CivilizationConfiguration> bootstrap, Namespace namespace, CivilizationConfiguration configuration) throws Exception {
+        MongoClient mongo = CivilizationApplication.createMongoClient(configuration, configuration.mongo.options());
+        try {
+            int rebuilt = new PbfSummaryRepository(mongo.getDB(configuration.mongodb)).rebuild();
+            log.info("Rebuilt " + rebuilt + " summaries");
+        } finally {
+            mongo.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mongodb.WriteConcern;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The write concern of each kind of write, and which collections are written with which.
+ * Collections which are not listed are written with the default of the driver
+ */
+public class WriteConcernConfiguration {
+    public static final String GAME = "game";
+    public static final String LOG = "log";
+    public static final String EMAIL = "email";
+
+    @JsonProperty
+    @Valid
+    @NotNull
+    public Map<String, Tier> tiers = defaultTiers();
+
+    //Key is the collection and value is the tier
+    @JsonProperty
+    @NotNull
+    public Map<String, String> collections = defaultCollections();
+
+    public Map<String, WriteConcern> writeConcerns() {
+        Map<String, WriteConcern> writeConcerns = new LinkedHashMap<>();
+        tiers.forEach((name, tier) -> writeConcerns.put(name, tier.toWriteConcern()));
+        return writeConcerns;
+    }
+
+    public static class Tier {
+        //A number of members, or majority. 0 doesn't wait for the write at all
+        @JsonProperty
+        @NotEmpty
+        public String w = "1";
+
+        @JsonProperty
+        public boolean journal = false;
+
+        //How long to wait for the members, 0 waits forever
+        @JsonProperty
+        @Min(0)
+        public int wtimeoutMillis = 0;
+
+        public Tier() {
+        }
+
+        public Tier(String w, boolean journal, int wtimeoutMillis) {
+            this.w = w;
+            this.journal = journal;
+            this.wtimeoutMillis = wtimeoutMillis;
+        }
+
+        WriteConcern toWriteConcern() {
+            if (w.chars().allMatch(Character::isDigit)) {
+                return new WriteConcern(Integer.parseInt(w), wtimeoutMillis, false, journal);
+            }
+            return new WriteConcern(w, wtimeoutMillis, false, journal);
+        }
+    }
+
+    private static Map<String, Tier> defaultTiers() {
+        Map<String, Tier> tiers = new LinkedHashMap<>();
+        tiers.put(GAME, new Tier("majority", true, 5000));
+        tiers.put(LOG, new Tier("1", false, 0));
+        tiers.put(EMAIL, new Tier("0", false, 0));
+        return tiers;
+    }
+
+    private static Map<String, String> defaultCollections() {
+        Map<String, String> collections = new LinkedHashMap<>();
+        collections.put("pbf", GAME);
+        collections.put("deck", GAME);
+        collections.put("draw", GAME);
+        collections.put("game_event", LOG);
+        collections.put("pbf_snapshot", LOG);
+        collections.put("pbf_archive", GAME);
+        collections.put("player_turn", GAME);
+        collections.put("gamelog", LOG);
+        collections.put("chat", LOG);
+        return collections;
+    }
+}
@@ -41,8 +41,11 @@ public class GameDTO {
     private String mapLink;
     private String assetLink;
 
+    //Only the newest page of logs, the older pages are fetched with the cursors
     private List<GameLogDTO> publicLogs;
+    private String publicLogsOlder;
     private List<GameLogDTO> privateLogs;
+    private String privateLogsOlder;
     private Playerhand player;
     private List<Item> revealedItems;
 
@@ -13,6 +13,7 @@ public class WinnerDTO implements Comparable<WinnerDTO> {
     private int totalWins;
     private long attempts;
     private String percentWin;
+    private long rating;
 
     public WinnerDTO(String username, int totalWins, long attempts) {
         this.username = username;
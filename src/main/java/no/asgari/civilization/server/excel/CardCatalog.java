@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.excel;
+
+import com.fasterxml.jackson.databind.util.StdConverter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.SheetName;
+import no.asgari.civilization.server.model.CatalogItem;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Civ;
+import no.asgari.civilization.server.model.GameType;
+import no.asgari.civilization.server.model.Item;
+import no.asgari.civilization.server.model.SocialPolicy;
+import no.asgari.civilization.server.model.Tech;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The text of every card in the spreadsheet of a game type, read once and shared by all the games.
+ * <p>
+ * The games are stored without the {@link CatalogText} of their items, only with the sheet and name of each card.
+ * When a game is read, the converters of this class set the text of each item again from the catalog.
+ */
+@Log4j
+public class CardCatalog {
+    private static final Map<GameType, CardCatalog> catalogs = new ConcurrentHashMap<>();
+
+    private final ImmutableMap<String, Text> cards;
+
+    CardCatalog(ImmutableMap<String, Text> cards) {
+        this.cards = cards;
+    }
+
+    /**
+     * The catalog of the game type, which is read from the spreadsheet the first time it is asked for
+     */
+    public static CardCatalog of(GameType gameType) {
+        return catalogs.computeIfAbsent(gameType, CardCatalog::read);
+    }
+
+    private static CardCatalog read(GameType gameType) {
+        ItemReader itemReader = new ItemReader();
+        try {
+            itemReader.readItemsFromExcel(gameType);
+        } catch (IOException e) {
+            log.debug("No card catalog for " + gameType + ": " + e.getMessage());
+            return new CardCatalog(ImmutableMap.of());
+        }
+
+        Map<String, Text> cards = new HashMap<>();
+        ImmutableList.<List<? extends Item>>of(itemReader.shuffledCivs, itemReader.shuffledCultureI, itemReader.shuffledCultureII,
+                itemReader.shuffledCultureIII, itemReader.shuffledGPs, itemReader.shuffledHuts, itemReader.shuffledVillages,
+                itemReader.ancientWonders, itemReader.medievalWonders, itemReader.modernWonders, itemReader.shuffledTiles,
+                itemReader.shuffledCityStates, itemReader.allTechs, itemReader.socialPolicies)
+                .forEach(sheet -> sheet.forEach(item -> cards.putIfAbsent(key(item), new Text(item))));
+        return new CardCatalog(ImmutableMap.copyOf(cards));
+    }
+
+    public Optional<Text> find(SheetName sheetName, String name) {
+        return Optional.ofNullable(cards.get(key(sheetName, name)));
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    /**
+     * Sets the text of the item from the first game type which has the card. Items which are not in any catalog are left as they are
+     */
+    public static <T extends Item> T fill(T item) {
+        if (!(item instanceof CatalogItem) || item.getSheetName() == null) {
+            return item;
+        }
+        for (GameType gameType : GameType.values()) {
+            Optional<Text> text = of(gameType).find(item.getSheetName(), item.getName());
+            if (text.isPresent()) {
+                text.get().fill((CatalogItem) item);
+                return item;
+            }
+        }
+        return item;
+    }
+
+    private static String key(Item item) {
+        return key(item.getSheetName(), item.getName());
+    }
+
+    private static String key(SheetName sheetName, String name) {
+        return sheetName + ":" + name;
+    }
+
+    /**
+     * The text of one card
+     */
+    public static class Text {
+        private final String type;
+        private final String description;
+        private final String flipside;
+
+        Text(Item item) {
+            this.type = item.getType();
+            this.description = item.getDescription();
+            this.flipside = item instanceof SocialPolicy ? ((SocialPolicy) item).getFlipside() : null;
+        }
+
+        void fill(CatalogItem item) {
+            item.setType(type);
+            item.setDescription(description);
+            if (item instanceof SocialPolicy) {
+                ((SocialPolicy) item).setFlipside(flipside);
+            }
+        }
+    }
+
+    /**
+     * Fills the items when they are read, as the content converter of lists of items
+     */
+    public static class Fill extends StdConverter<Item, Item> {
+        @Override
+        public Item convert(Item item) {
+            return fill(item);
+        }
+    }
+
+    /**
+     * Civ has its own type info, so it needs its own converter
+     */
+    public static class FillCiv extends StdConverter<Civ, Civ> {
+        @Override
+        public Civ convert(Civ civ) {
+            return fill(civ);
+        }
+    }
+
+    public static class FillTech extends StdConverter<Tech, Tech> {
+        @Override
+        public Tech convert(Tech tech) {
+            return fill(tech);
+        }
+    }
+
+    public static class FillSocialPolicy extends StdConverter<SocialPolicy, SocialPolicy> {
+        @Override
+        public SocialPolicy convert(SocialPolicy socialPolicy) {
+            return fill(socialPolicy);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.exception;
+
+import no.asgari.civilization.server.dto.MessageDTO;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Thrown when the game was changed by someone else after it was loaded
+ */
+public class PBFConflictException extends WebApplicationException {
+    public PBFConflictException(String pbfId) {
+        super(Response.status(Response.Status.CONFLICT)
+                .entity(Entity.json(new MessageDTO("The game " + pbfId + " was changed by someone else. Please try again")))
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.misc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Elo rating for games with more than two players. The winner is counted as beating every other player,
+ * and the change is divided by the number of opponents so that a big game doesn't move the ratings more than a duel
+ */
+public final class EloRating {
+    public static final double INITIAL = 1500;
+    private static final double K = 32;
+
+    private EloRating() {
+    }
+
+    /**
+     * @param ratings - The rating of every player in the game, keyed by username
+     * @return how much the rating of each player changes
+     */
+    public static Map<String, Double> changes(Map<String, Double> ratings, String winner) {
+        Map<String, Double> changes = new HashMap<>();
+        ratings.keySet().forEach(username -> changes.put(username, 0.0));
+        Double winnerRating = ratings.get(winner);
+        if (winnerRating == null || ratings.size() < 2) {
+            return changes;
+        }
+
+        double k = K / (ratings.size() - 1);
+        ratings.forEach((username, rating) -> {
+            if (!username.equals(winner)) {
+                double winnerChange = k * (1 - expected(winnerRating, rating));
+                changes.merge(winner, winnerChange, Double::sum);
+                changes.merge(username, -winnerChange, Double::sum);
+            }
+        });
+        return changes;
+    }
+
+    /**
+     * The chance that a player with rating a beats a player with rating b
+     */
+    static double expected(double a, double b) {
+        return 1 / (1 + Math.pow(10, (b - a) / 400));
+    }
+}
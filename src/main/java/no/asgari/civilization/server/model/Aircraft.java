@@ -18,6 +18,7 @@ package no.asgari.civilization.server.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -38,6 +39,7 @@ public class Aircraft extends Unit implements Image {
     private int attack;
     private int health;
     private boolean isInBattle;
+    @JsonView(CatalogText.class)
     private String image;
     private SheetName sheetName;
     private int itemNumber;
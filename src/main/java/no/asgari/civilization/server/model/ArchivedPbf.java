@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
+import org.mongojack.Id;
+import org.mongojack.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The searchable header of a finished {@link PBF} which has been moved out of the pbf collection.
+ * The game itself and its {@link Deck}s are kept as gzipped json in {@link #BLOB}
+ */
+@Data
+@JsonRootName("archivedPbf")
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex(ArchivedPbf.USERNAMES)
+@MongoIndex({ArchivedPbf.TYPE, "-" + ArchivedPbf.ENDED})
+public class ArchivedPbf {
+    public static final String COL_NAME = "pbf_archive";
+    public static final String TYPE = "type";
+    public static final String USERNAMES = "usernames";
+    public static final String ENDED = "ended";
+    public static final String BLOB = "blob";
+
+    //Same id as the pbf
+    @ObjectId
+    @Id
+    private String id;
+
+    private String name;
+
+    private GameType type;
+
+    private String winner;
+
+    private List<String> usernames = new ArrayList<>();
+
+    private Date ended;
+
+    private Date archived;
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+/**
+ * An item whose text is the same in every game, so it is kept once in the card catalog of the spreadsheet instead of in every game.
+ * Its text properties are marked with the {@link CatalogText} view.
+ */
+public interface CatalogItem extends Item {
+
+    void setDescription(String description);
+
+    void setType(String type);
+}
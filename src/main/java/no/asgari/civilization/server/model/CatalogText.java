@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+/**
+ * The json view of the properties of an item which come from the card catalog or are computed, like the description and the image.
+ * <p>
+ * The games are written to mongo with the {@link Stored} view, which leaves these properties out.
+ * They are set again from the catalog when the game is read, and are always sent to the clients.
+ */
+public interface CatalogText {
+
+    /**
+     * The view the games are written with
+     */
+    interface Stored {
+    }
+}
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.mongojack.Id;
 import org.mongojack.ObjectId;
@@ -31,14 +32,19 @@ import org.mongojack.ObjectId;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Date;
 
 @Data
 @JsonRootName("chat")
 @NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({Chat.PBFID, "-" + Chat.TIMESTAMP})
+@MongoIndex(value = Chat.EXPIRE_AT, expireAfterSeconds = 0)
 public class Chat {
     public static final String COL_NAME = "chat";
     public static final String PBFID = "pbfId";
+    public static final String TIMESTAMP = "timestamp";
+    public static final String EXPIRE_AT = "expireAt";
 
     @Id
     @ObjectId
@@ -56,6 +62,12 @@ public class Chat {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime created = LocalDateTime.now();
 
+    //Same as created, but stored as a date so that mongo can filter and sort on it
+    private Date timestamp = Date.from(created.atZone(ZoneId.systemDefault()).toInstant());
+
+    //Mongo removes the chat after this date. Only set on public chat when there is a retention
+    private Date expireAt;
+
     @JsonIgnore
     public long getCreatedInMillis() {
         return created.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
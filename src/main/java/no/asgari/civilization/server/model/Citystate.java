@@ -18,6 +18,7 @@ package no.asgari.civilization.server.model;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -33,14 +34,16 @@ import org.hibernate.validator.constraints.NotEmpty;
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name", "type", "description"}, callSuper = false)
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class Citystate implements Item, Image {
+public class Citystate implements CatalogItem, Image {
     @JsonProperty
     @NotEmpty
     private String name;
 
     @JsonProperty
+    @JsonView(CatalogText.class)
     private String type;
     @JsonProperty
+    @JsonView(CatalogText.class)
     private String description;
     @JsonProperty
     private boolean used;
@@ -48,6 +51,7 @@ public class Citystate implements Item, Image {
     private boolean hidden = true;
     @JsonProperty
     private String ownerId; // (playerId)
+    @JsonView(CatalogText.class)
     private String image;
     private SheetName sheetName;
     private int itemNumber;
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -35,10 +36,12 @@ import org.hibernate.validator.constraints.NotEmpty;
 @JsonIgnoreProperties(ignoreUnknown = true)
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name", "description", "type"})
-public class Civ implements Item, Image {
+public class Civ implements CatalogItem, Image {
     @NotEmpty
     private String name;
+    @JsonView(CatalogText.class)
     private String type;
+    @JsonView(CatalogText.class)
     private String description;
     private boolean used;
     private boolean hidden = true;
@@ -46,6 +49,7 @@ public class Civ implements Item, Image {
     private SheetName sheetName;
     private Tech startingTech;
     private int itemNumber;
+    @JsonView(CatalogText.class)
     private String image;
 
     public Civ(String name) {
@@ -17,6 +17,7 @@ package no.asgari.civilization.server.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -32,14 +33,17 @@ import org.hibernate.validator.constraints.NotEmpty;
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name", "description", "type"})
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class CultureII implements Item, Tradable, Image {
+public class CultureII implements CatalogItem, Tradable, Image {
     @NotEmpty
     private String name;
+    @JsonView(CatalogText.class)
     private String description;
+    @JsonView(CatalogText.class)
     private String type;
     private boolean used;
     private boolean hidden = true;
     private String ownerId; // player_id
+    @JsonView(CatalogText.class)
     private String image;
     private SheetName sheetName;
     private int itemNumber;
@@ -18,6 +18,7 @@ package no.asgari.civilization.server.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -33,14 +34,17 @@ import org.hibernate.validator.constraints.NotEmpty;
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name", "description", "type"})
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class CultureIII implements Item, Tradable, Image {
+public class CultureIII implements CatalogItem, Tradable, Image {
     @NotEmpty
     private String name;
+    @JsonView(CatalogText.class)
     private String description;
+    @JsonView(CatalogText.class)
     private String type;
     private boolean used;
     private boolean hidden = true;
     private String ownerId; // game_id or player_id (username)
+    @JsonView(CatalogText.class)
     private String image;
     private SheetName sheetName;
     private int itemNumber;
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.SheetName;
+import no.asgari.civilization.server.excel.CardCatalog;
+import org.mongojack.Id;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The items of one sheet in a game which are not in any players hand.
+ * <p>
+ * Kept apart from the {@link PBF}, so that drawing and reshuffling only reads and writes the small deck,
+ * and the PBF only holds the players and the game itself.
+ * Techs and social policies are kept in decks too, but are never drawn from them.
+ */
+@Data
+@JsonRootName("deck")
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Deck {
+    public static final String COL_NAME = "deck";
+    public static final String PBFID = "pbfId";
+    public static final String ITEMS = "items";
+    public static final String DISCARDED = "discarded";
+
+    //pbfId:sheetName, so that there is only one deck of each sheet in a game
+    @Id
+    private String id;
+
+    @NotNull
+    private String pbfId;
+
+    @NotNull
+    private SheetName sheetName;
+
+    //The first item is the next to be drawn
+    @JsonDeserialize(contentConverter = CardCatalog.Fill.class)
+    private List<Item> items = new ArrayList<>();
+
+    //Will use these to reshuffle items which are discarded and can be drawn again
+    @JsonDeserialize(contentConverter = CardCatalog.Fill.class)
+    private List<Item> discarded = new ArrayList<>();
+
+    //Incremented on every write, so that concurrent writes can be detected
+    private long version;
+
+    public Deck(String pbfId, SheetName sheetName) {
+        this.id = createId(pbfId, sheetName);
+        this.pbfId = pbfId;
+        this.sheetName = sheetName;
+    }
+
+    @JsonIgnore
+    public static String createId(String pbfId, SheetName sheetName) {
+        return pbfId + ":" + sheetName.name();
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.excel.CardCatalog;
 import org.hibernate.validator.constraints.NotBlank;
 
 import javax.validation.constraints.NotNull;
@@ -47,6 +48,7 @@ public class Draw<T extends Item> {
      * Typically implementation of Unit or Item. Should have #getSheetName() to determine the type
      */
     @NotNull
+    @JsonDeserialize(converter = CardCatalog.Fill.class)
     private T item;
 
     public Draw(String pbfId, String playerId) {
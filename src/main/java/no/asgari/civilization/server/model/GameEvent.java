@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
+import org.mongojack.Id;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One write of a {@link PBF}. The events of a game, in the order of their version, make up everything that happened to it
+ */
+@Data
+@JsonRootName("gameEvent")
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({GameEvent.PBFID, GameEvent.VERSION})
+public class GameEvent {
+    public static final String COL_NAME = "game_event";
+    public static final String PBFID = "pbfId";
+    public static final String VERSION = "version";
+
+    public enum Type {
+        CREATED, DREW, DISCARDED, TRADED, TECH_CHOSEN, TURN_ENDED, UNDO_APPLIED, CHANGED
+    }
+
+    //pbfId:version, so that there is only one event of each version
+    @Id
+    private String id;
+
+    private String pbfId;
+
+    //The version of the pbf after the event
+    private long version;
+
+    private List<Type> types = new ArrayList<>();
+
+    //The mongo update of the pbf as json, or the whole pbf if it was replaced
+    private String change;
+
+    private Date created;
+
+    public static String createId(String pbfId, long version) {
+        return pbfId + ":" + version;
+    }
+}
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import no.asgari.civilization.server.mongodb.MongoIndex;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.mongojack.Id;
 import org.mongojack.ObjectId;
@@ -51,8 +52,14 @@ import java.time.ZoneId;
 @NoArgsConstructor
 @ToString(of = {"privateLog", "publicLog"})
 @Data
+@MongoIndex({"pbfId", "username", "created"})
+@MongoIndex({"pbfId", "-_id"})
+@MongoIndex({"pbfId", "username", "-_id"})
+@MongoIndex({"pbfId", GameLog.UNDO_DONE})
 public class GameLog {
     public static final String COL_NAME = "gamelog";
+    //Only logs with an undo have it. The other logs are in the index with null there, so a query for true or false only reads the undoes
+    public static final String UNDO_DONE = "draw.undo.done";
     private static final String DELIM = " - ";
 
     public enum LogType {
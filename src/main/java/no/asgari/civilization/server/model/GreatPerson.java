@@ -17,6 +17,7 @@ package no.asgari.civilization.server.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -32,14 +33,17 @@ import org.hibernate.validator.constraints.NotEmpty;
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name", "type"})
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class GreatPerson implements Item, Image {
+public class GreatPerson implements CatalogItem, Image {
     @NotEmpty
     private String name;
+    @JsonView(CatalogText.class)
     private String type;
+    @JsonView(CatalogText.class)
     private String description;
     private boolean used;
     private boolean hidden = true;
     private String ownerId; // game_id or player_id (username)
+    @JsonView(CatalogText.class)
     private String image;
     private SheetName sheetName;
     private int itemNumber;
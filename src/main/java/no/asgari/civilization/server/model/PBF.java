@@ -25,8 +25,7 @@ import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import com.google.common.collect.Lists;
 import lombok.Data;
-import no.asgari.civilization.server.jackson.TurnKeyDeserializer;
-import no.asgari.civilization.server.jackson.TurnKeySerializer;
+import no.asgari.civilization.server.mongodb.MongoIndex;
 import org.hibernate.validator.constraints.NotBlank;
 import org.mongojack.Id;
 import org.mongojack.ObjectId;
@@ -34,14 +33,15 @@ import org.mongojack.ObjectId;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 
 /**
  * PBF stands for Play By Forum
+ * <p>
+ * The items which are not in any players hand are kept in the {@link Deck}s of the game
  */
 @Data
 @JsonRootName(value = "pbf")
@@ -49,16 +49,24 @@ import java.util.TreeMap;
 @JsonInclude
 @JsonIgnoreProperties(ignoreUnknown = true)
 //Perhaps use this when the object keep getting changed, otherwise jackson throws exception when it cannot map
+@MongoIndex({"active", "created"})
+@MongoIndex({PBF.ACTIVE, PBF.ENDED})
 public class PBF {
     @JsonIgnore
     public static final String COL_NAME = "pbf";
     @JsonIgnore
     public static final String NAME = "name";
+    public static final String ACTIVE = "active";
+    public static final String WINNER = "winner";
+    public static final String ENDED = "ended";
 
     @ObjectId
     @Id
     private String id;
 
+    //Incremented on every write, so that concurrent writes can be detected
+    private long version;
+
     @NotBlank
     private String name;
     private GameType type;
@@ -72,17 +80,11 @@ public class PBF {
     private int numOfPlayers;
     private boolean active = true;
     private String winner; //username
-    private List<Item> items = Lists.newArrayList();
-    private List<Playerhand> players = Lists.newArrayList();
-    private List<Tech> techs = Lists.newArrayList();
-    private List<SocialPolicy> socialPolicies = new ArrayList<>(8);
 
-    //@JsonSerialize(keyUsing=TurnKeySerializer.class)
-    //@JsonDeserialize(keyUsing = TurnKeyDeserializer.class)
-    private Map<String, PlayerTurn> publicTurns = new HashMap<>();
+    //When the game was ended, so that it can be archived after a while
+    private Date ended;
 
-    //Will use these to reshuffle items which are discarded and can be drawn again
-    private List<Item> discardedItems = new ArrayList<>();
+    private List<Playerhand> players = Lists.newArrayList();
 
     //If a player leaves, his items and stuff will be put here
     private List<Playerhand> withdrawnPlayers = new ArrayList<>();
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
+import org.mongojack.Id;
+
+/**
+ * The whole {@link PBF} at a version, so that replaying a game only has to apply the {@link GameEvent}s after it
+ */
+@Data
+@JsonRootName("pbfSnapshot")
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({PbfSnapshot.PBFID, "-" + PbfSnapshot.VERSION})
+public class PbfSnapshot {
+    public static final String COL_NAME = "pbf_snapshot";
+    public static final String PBFID = "pbfId";
+    public static final String VERSION = "version";
+
+    //pbfId:version
+    @Id
+    private String id;
+
+    private String pbfId;
+
+    private long version;
+
+    //The pbf as json
+    private String document;
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
+import org.mongojack.Id;
+import org.mongojack.ObjectId;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * What the list of games shows about a {@link PBF}. Kept up to date whenever the players, turn or state of the game changes,
+ * so that the list of games doesn't have to read every game
+ */
+@Data
+@JsonRootName("pbfSummary")
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({PbfSummary.ACTIVE, PbfSummary.CREATED})
+public class PbfSummary {
+    public static final String COL_NAME = "pbf_summary";
+    public static final String ACTIVE = "active";
+    public static final String CREATED = "created";
+
+    //Same id as the pbf
+    @Id
+    @ObjectId
+    private String id;
+
+    private String name;
+    private GameType type;
+    private long created;
+    private int numOfPlayers;
+    private boolean active;
+    private List<PlayerSummary> players = new ArrayList<>();
+    private String nameOfUsersTurn;
+
+    public PbfSummary(PBF pbf) {
+        this.id = pbf.getId();
+        this.name = pbf.getName();
+        this.type = pbf.getType();
+        this.created = pbf.getCreated().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.numOfPlayers = pbf.getNumOfPlayers();
+        this.active = pbf.isActive();
+        this.players = pbf.getPlayers().stream()
+                .map(p -> new PlayerSummary(p.getPlayerId(), p.getUsername()))
+                .collect(toList());
+        this.nameOfUsersTurn = pbf.getNameOfUsersTurn();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class PlayerSummary {
+        private String playerId;
+        private String username;
+    }
+}
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotBlank;
 import org.mongojack.Id;
@@ -38,6 +39,9 @@ import java.util.Set;
 @JsonRootName("player")
 @NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex(value = Player.USERNAME, unique = true)
+@MongoIndex(value = Player.EMAIL, unique = true)
+@MongoIndex("gameIds")
 public class Player {
     @JsonIgnore
     public static final String COL_NAME = "player";
@@ -45,6 +49,8 @@ public class Player {
     public static final String USERNAME = "username";
     @JsonIgnore
     public static final String EMAIL = "email";
+    @JsonIgnore
+    public static final String EMAIL_SENT = "emailSent";
 
     @ObjectId
     @Id
@@ -6,17 +6,44 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import no.asgari.civilization.server.mongodb.MongoIndex;
+import org.mongojack.Id;
+import org.mongojack.ObjectId;
 
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
+/**
+ * The orders of one player in one turn. Kept in its own collection with one document for each pbfId, username and turnNumber,
+ * so that updating an order only writes that document and not the whole PBF.
+ * The turn is made public to the other players the first time an order is written.
+ */
 @Getter
 @Setter
 @ToString
 @JsonIgnoreProperties(ignoreUnknown = true)
 @NoArgsConstructor
+@MongoIndex(value = {PlayerTurn.PBFID, PlayerTurn.USERNAME, PlayerTurn.TURN_NUMBER}, unique = true)
+@MongoIndex({PlayerTurn.PBFID, PlayerTurn.PUBLISHED})
 public class PlayerTurn implements Comparable<PlayerTurn> {
+    public static final String COL_NAME = "player_turn";
+    public static final String PBFID = "pbfId";
+    public static final String USERNAME = "username";
+    public static final String TURN_NUMBER = "turnNumber";
+    public static final String PUBLISHED = "published";
+    public static final String DISABLED = "disabled";
+    public static final String SOT = "sot";
+    public static final String TRADE = "trade";
+    public static final String CM = "cm";
+    public static final String MOVEMENT = "movement";
+    public static final String RESEARCH = "research";
+
+    @Id
+    @ObjectId
+    private String id;
+    private String pbfId;
+    private boolean published;
     private int turnNumber = 1;
     private String username = "";
     private boolean disabled;
@@ -37,6 +64,18 @@ public class PlayerTurn implements Comparable<PlayerTurn> {
         this.turnNumber = turnNumber;
     }
 
+    public PlayerTurn(String pbfId, String username, int turnNumber) {
+        this(username, turnNumber);
+        this.pbfId = pbfId;
+    }
+
+    /**
+     * The field which keeps every order written in the phase
+     */
+    public static String history(String phase) {
+        return phase + "History";
+    }
+
     /**
      * Only one instance of username and turnNumber
      */
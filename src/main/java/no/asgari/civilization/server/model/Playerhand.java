@@ -25,6 +25,7 @@ import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.excel.CardCatalog;
 import org.hibernate.validator.constraints.NotBlank;
 
 import java.time.LocalDateTime;
@@ -54,6 +55,7 @@ public class Playerhand implements Comparable<Playerhand> {
 
     private String color;
 
+    @JsonDeserialize(converter = CardCatalog.FillCiv.class)
     private Civ civilization; //The chosen civilization
 
     /** Save personal gamenotes **/
@@ -70,15 +72,14 @@ public class Playerhand implements Comparable<Playerhand> {
     private int playernumber;
     private boolean gameCreator = false;
 
+    @JsonDeserialize(contentConverter = CardCatalog.Fill.class)
     private List<Item> items = new ArrayList<>();
+    @JsonDeserialize(contentConverter = CardCatalog.FillTech.class)
     private Set<Tech> techsChosen = new TreeSet<>();
     private List<Unit> barbarians = new ArrayList<>(3);
     private List<Unit> battlehand = new ArrayList<>();
+    @JsonDeserialize(contentConverter = CardCatalog.FillSocialPolicy.class)
     private List<SocialPolicy> socialPolicies = new ArrayList<>();
-    /**
-     * Private turns, only made public when they are locked
-     */
-    private Set<PlayerTurn> playerTurns = new TreeSet<>();
 
     @JsonSerialize(using = LocalDateTimeSerializer.class)
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
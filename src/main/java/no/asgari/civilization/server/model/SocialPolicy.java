@@ -2,6 +2,7 @@ package no.asgari.civilization.server.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -17,17 +18,21 @@ import org.hibernate.validator.constraints.NotEmpty;
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name"})
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class SocialPolicy implements Item, Image {
+public class SocialPolicy implements CatalogItem, Image {
     @NotEmpty
     private String name;
+    @JsonView(CatalogText.class)
     private String type;
+    @JsonView(CatalogText.class)
     private String description;
     private boolean used;
     private boolean hidden = true;
     private String ownerId;
     private SheetName sheetName;
     private int itemNumber;
+    @JsonView(CatalogText.class)
     private String image;
+    @JsonView(CatalogText.class)
     private String flipside;
 
     public SocialPolicy(String name) {
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import no.asgari.civilization.server.mongodb.MongoIndex;
+import org.mongojack.Id;
+
+/**
+ * The wins, attempts and rating of a player, or the wins and attempts of a civ, counted from the finished games.
+ * Each finished game also gets a GAME stat, so that it is only counted once, which holds the updates of the count not done yet
+ */
+@Data
+@JsonRootName("stat")
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+@MongoIndex({Stat.KIND, "-" + Stat.WINS})
+public class Stat {
+    public static final String COL_NAME = "stats";
+    public static final String KIND = "kind";
+    public static final String NAME = "name";
+    public static final String WINS = "wins";
+    public static final String ATTEMPTS = "attempts";
+    public static final String RATING = "rating";
+    public static final String PENDING = "pending";
+
+    public enum Kind {
+        PLAYER, CIV, GAME
+    }
+
+    //kind:name
+    @Id
+    private String id;
+
+    private Kind kind;
+
+    //The username, civ name or pbfId
+    private String name;
+
+    private long wins;
+
+    private long attempts;
+
+    //Only for players
+    private double rating;
+
+    public static String createId(Kind kind, String name) {
+        return kind.name().toLowerCase() + ":" + name;
+    }
+}
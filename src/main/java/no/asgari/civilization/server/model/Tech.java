@@ -19,6 +19,7 @@ import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonRootName;
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -33,7 +34,7 @@ import org.hibernate.validator.constraints.NotEmpty;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(of = {"name"})
-public class Tech implements Item, Level, Image {
+public class Tech implements CatalogItem, Level, Image {
     @JsonIgnore
     public static final int LEVEL_1 = 1;
     @JsonIgnore
@@ -50,12 +51,15 @@ public class Tech implements Item, Level, Image {
 
     @NotEmpty
     private String name;
+    @JsonView(CatalogText.class)
     private String type;
+    @JsonView(CatalogText.class)
     private String description;
     private boolean used;
     private boolean hidden = true;
     private String ownerId;
     private int level;
+    @JsonView(CatalogText.class)
     private String image;
     private SheetName sheetName;
     private int itemNumber;
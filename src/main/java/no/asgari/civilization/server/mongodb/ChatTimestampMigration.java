@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.model.Chat;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+import org.mongojack.DBUpdate;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives chat written before the timestamp existed a timestamp made from created,
+ * and public chat written before the retention was set an expireAt made from the timestamp.
+ * <p>
+ * Looking for chat without a timestamp reads the whole chat collection, so it is only done once, see {@link Migrations}.
+ * The expireAt of the public chat is set again only when {@link CivSingleton#publicChatRetentionDays()} changes,
+ * and removed when the retention is turned off.
+ */
+@Log4j
+public class ChatTimestampMigration {
+    static final String ID = "chat-timestamps";
+    static final String EXPIRE_AT_ID = "public-chat-expire-at";
+
+    private final Migrations migrations;
+    private final JacksonDBCollection<Chat, String> chatCollection;
+    private final DBCollection chatDbCollection;
+
+    public ChatTimestampMigration(DB db) {
+        this.migrations = new Migrations(db);
+        this.chatCollection = JacksonDBCollection.wrap(db.getCollection(Chat.COL_NAME), Chat.class, String.class);
+        this.chatDbCollection = chatCollection.getDbCollection();
+    }
+
+    /**
+     * @return the number of chats that got a timestamp
+     */
+    public int migrate() {
+        int migrated = migrateTimestamps();
+        expirePublicChat(CivSingleton.instance().publicChatRetentionDays());
+        return migrated;
+    }
+
+    private int migrateTimestamps() {
+        if (migrations.isDone(ID)) {
+            return 0;
+        }
+
+        int migrated = 0;
+        try (DBCursor<Chat> chats = chatCollection.find(DBQuery.notExists(Chat.TIMESTAMP))) {
+            for (Chat chat : chats) {
+                chatCollection.updateById(chat.getId(), DBUpdate.set(Chat.TIMESTAMP, new Date(chat.getCreatedInMillis())));
+                migrated++;
+            }
+        }
+        migrations.done(ID);
+        log.info("Gave " + migrated + " chats a timestamp");
+        return migrated;
+    }
+
+    /**
+     * The public chat is found with the index on pbfId and timestamp
+     */
+    private void expirePublicChat(int retentionDays) {
+        if (migrations.isDone(EXPIRE_AT_ID, retentionDays)) {
+            return;
+        }
+
+        if (retentionDays == 0) {
+            BasicDBObject expiring = new BasicDBObject(Chat.PBFID, null).append(Chat.EXPIRE_AT, new BasicDBObject("$exists", true));
+            int kept = chatDbCollection.update(expiring, new BasicDBObject("$unset", new BasicDBObject(Chat.EXPIRE_AT, "")), false, true).getN();
+            log.info("Public chat is kept forever, removed the expireAt of " + kept + " chats");
+        } else {
+            long retention = TimeUnit.DAYS.toMillis(retentionDays);
+            int expiring = 0;
+            BasicDBObject withTimestamp = new BasicDBObject(Chat.PBFID, null).append(Chat.TIMESTAMP, new BasicDBObject("$exists", true));
+            try (com.mongodb.DBCursor chats = chatDbCollection.find(withTimestamp, new BasicDBObject(Chat.TIMESTAMP, 1))) {
+                for (DBObject chat : chats) {
+                    Date expireAt = new Date(((Date) chat.get(Chat.TIMESTAMP)).getTime() + retention);
+                    chatDbCollection.update(new BasicDBObject("_id", chat.get("_id")), new BasicDBObject("$set", new BasicDBObject(Chat.EXPIRE_AT, expireAt)));
+                    expiring++;
+                }
+            }
+            log.info("Public chat is kept for " + retentionDays + " days, gave " + expiring + " chats an expireAt");
+        }
+        migrations.done(EXPIRE_AT_ID, retentionDays);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import lombok.Data;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.SheetName;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.Item;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.SocialPolicy;
+import no.asgari.civilization.server.model.Tech;
+import org.mongojack.DBQuery;
+import org.mongojack.Id;
+import org.mongojack.JacksonDBCollection;
+import org.mongojack.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the decks of games created before the decks got their own collection out of the PBFs.
+ * <p>
+ * Each game is migrated on its own, and a game is only migrated once, since the deck fields are removed from the PBF afterwards.
+ * If the migration stops halfway, the decks of the game are written again the next time.
+ * Looking for those games reads the whole pbf collection, so once every game is migrated it is not done again, see {@link Migrations}.
+ */
+@Log4j
+public class DeckMigration {
+    static final String ID = "pbf-decks";
+    private static final List<String> DECK_FIELDS = Arrays.asList("items", "techs", "socialPolicies", "discardedItems");
+
+    private final JacksonDBCollection<PBFDeck, String> pbfDeckCollection;
+    private final JacksonDBCollection<Deck, String> deckCollection;
+    private final Migrations migrations;
+
+    public DeckMigration(DB db) {
+        this.pbfDeckCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBFDeck.class, String.class);
+        this.deckCollection = JacksonDBCollection.wrap(db.getCollection(Deck.COL_NAME), Deck.class, String.class, CatalogText.Stored.class);
+        this.migrations = new Migrations(db);
+    }
+
+    /**
+     * @return the number of games that were migrated
+     */
+    public int migrate() {
+        if (migrations.isDone(ID)) {
+            return 0;
+        }
+
+        BasicDBList hasDeck = new BasicDBList();
+        BasicDBObject fields = new BasicDBObject();
+        DECK_FIELDS.forEach(field -> {
+            hasDeck.add(new BasicDBObject(field, new BasicDBObject("$exists", true)));
+            fields.append(field, 1);
+        });
+
+        int migrated = 0;
+        try (DBCursor cursor = pbfDeckCollection.getDbCollection().find(new BasicDBObject("$or", hasDeck), fields)) {
+            for (DBObject stored : cursor) {
+                migrate(pbfDeckCollection.convertFromDbObject(stored));
+                migrated++;
+            }
+        }
+        migrations.done(ID);
+        log.info("Moved the decks of " + migrated + " games to the " + Deck.COL_NAME + " collection");
+        return migrated;
+    }
+
+    private void migrate(PBFDeck pbfDeck) {
+        String pbfId = pbfDeck.getId();
+        Map<SheetName, Deck> decks = new EnumMap<>(SheetName.class);
+        pbfDeck.getItems().forEach(item -> deck(decks, pbfId, item).getItems().add(item));
+        pbfDeck.getTechs().forEach(tech -> deck(decks, pbfId, tech).getItems().add(tech));
+        pbfDeck.getSocialPolicies().forEach(sp -> deck(decks, pbfId, sp).getItems().add(sp));
+        pbfDeck.getDiscardedItems().forEach(item -> deck(decks, pbfId, item).getDiscarded().add(item));
+
+        decks.values().forEach(deck -> deckCollection.update(DBQuery.is("_id", deck.getId()), deck, true, false));
+
+        BasicDBObject unset = new BasicDBObject();
+        DECK_FIELDS.forEach(field -> unset.append(field, ""));
+        pbfDeckCollection.getDbCollection().update(new BasicDBObject("_id", new org.bson.types.ObjectId(pbfId)), new BasicDBObject("$unset", unset));
+        log.debug("Moved " + decks.size() + " decks out of pbf " + pbfId);
+    }
+
+    private static Deck deck(Map<SheetName, Deck> decks, String pbfId, Item item) {
+        return decks.computeIfAbsent(item.getSheetName(), sheetName -> new Deck(pbfId, sheetName));
+    }
+
+    /**
+     * The deck fields as they were stored in the PBF
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class PBFDeck {
+        @ObjectId
+        @Id
+        private String id;
+        private List<Item> items = new ArrayList<>();
+        private List<Tech> techs = new ArrayList<>();
+        private List<SocialPolicy> socialPolicies = new ArrayList<>();
+        private List<Item> discardedItems = new ArrayList<>();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.SheetName;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.exception.PBFConflictException;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.Item;
+import org.mongojack.DBQuery;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads and writes the {@link Deck}s of the games, with the same optimistic concurrency as the {@link PBFRepository}.
+ * <p>
+ * A deck that isn't stored yet is returned empty, and stored on the first write.
+ * <p>
+ * A drawn item is always taken off the deck before it is put in a hand, and put back on the deck if the hand can't be written.
+ * Both the {@link UnitOfWork} and the atomic draw follow this order. So a crash in between loses the item,
+ * but an item is never in a deck and a hand at the same time.
+ */
+@Log4j
+public class DeckRepository implements VersionedRepository<Deck> {
+    private final JacksonDBCollection<Deck, String> deckCollection;
+    private final DBCollection deckDbCollection;
+    private final DiffWriter<Deck> diffWriter;
+    private final Meter conflicts;
+    private final Meter cachedReads;
+
+    public DeckRepository(DB db) {
+        this.deckCollection = JacksonDBCollection.wrap(db.getCollection(Deck.COL_NAME), Deck.class, String.class, CatalogText.Stored.class);
+        this.deckDbCollection = deckCollection.getDbCollection();
+        this.diffWriter = new DiffWriter<>(deckCollection);
+        MetricRegistry metrics = CivSingleton.instance().metrics();
+        this.conflicts = metrics.meter(MetricRegistry.name(DeckRepository.class, "conflicts"));
+        this.cachedReads = metrics.meter(MetricRegistry.name(DeckRepository.class, "unit-of-work", "cached-reads"));
+    }
+
+    /**
+     * Stores the decks of a new game. The items are put in the deck of their sheet, in the order they are given
+     */
+    public void create(String pbfId, Collection<? extends Item> items) {
+        Map<SheetName, List<Item>> itemsPerSheet = items.stream()
+                .collect(groupingBy(Item::getSheetName, () -> new EnumMap<>(SheetName.class), toList()));
+
+        List<Deck> decks = new ArrayList<>();
+        itemsPerSheet.forEach((sheetName, sheetItems) -> {
+            Deck deck = new Deck(pbfId, sheetName);
+            deck.setItems(sheetItems);
+            decks.add(deck);
+        });
+
+        if (!decks.isEmpty()) {
+            deckCollection.insert(decks);
+        }
+        log.debug("Created " + decks.size() + " decks for pbf " + pbfId);
+    }
+
+    /**
+     * Finds the deck of the sheet. Inside a {@link UnitOfWork} the same instance is returned every time
+     */
+    public Deck find(String pbfId, SheetName sheetName) {
+        String id = Deck.createId(pbfId, sheetName);
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current();
+        if (unitOfWork.isPresent()) {
+            Optional<Deck> loaded = unitOfWork.get().find(key(id), Deck.class);
+            if (loaded.isPresent()) {
+                cachedReads.mark();
+                return loaded.get();
+            }
+        }
+
+        DBObject stored = deckDbCollection.findOne(new BasicDBObject("_id", id));
+        Deck deck = stored != null ? diffWriter.read(stored) : new Deck(pbfId, sheetName);
+        unitOfWork.ifPresent(uow -> uow.register(key(id), deck));
+        return deck;
+    }
+
+    /**
+     * Whether the current {@link UnitOfWork} already holds the deck, so that changes to it must be made on that instance
+     */
+    public boolean isLoaded(String pbfId, SheetName sheetName) {
+        return UnitOfWork.current().flatMap(uow -> uow.find(key(Deck.createId(pbfId, sheetName)), Deck.class)).isPresent();
+    }
+
+    /**
+     * Finds the stored decks of the sheets, with one query for the decks that are not in the {@link UnitOfWork} already
+     */
+    public List<Deck> findAll(String pbfId, Set<SheetName> sheetNames) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current();
+        Map<SheetName, Deck> decks = new EnumMap<>(SheetName.class);
+        unitOfWork.ifPresent(uow -> sheetNames.forEach(sheetName ->
+                uow.find(key(Deck.createId(pbfId, sheetName)), Deck.class).ifPresent(deck -> decks.put(sheetName, deck))));
+
+        List<String> notLoaded = sheetNames.stream()
+                .filter(sheetName -> !decks.containsKey(sheetName))
+                .map(sheetName -> Deck.createId(pbfId, sheetName))
+                .collect(toList());
+        if (!notLoaded.isEmpty()) {
+            try (DBCursor cursor = deckDbCollection.find(new BasicDBObject("_id", new BasicDBObject("$in", notLoaded)))) {
+                for (DBObject stored : cursor) {
+                    Deck deck = diffWriter.read(stored);
+                    decks.put(deck.getSheetName(), deck);
+                    unitOfWork.ifPresent(uow -> uow.register(key(deck.getId()), deck));
+                }
+            }
+        }
+        return new ArrayList<>(decks.values());
+    }
+
+    /**
+     * Every item in the decks of the sheets which can be drawn
+     */
+    public List<Item> findItems(String pbfId, Set<SheetName> sheetNames) {
+        return findAll(pbfId, sheetNames).stream()
+                .flatMap(deck -> deck.getItems().stream())
+                .collect(toList());
+    }
+
+    /**
+     * Every discarded item of the game
+     */
+    public List<Item> findDiscarded(String pbfId) {
+        return findAll(pbfId, SheetName.SHEETS).stream()
+                .flatMap(deck -> deck.getDiscarded().stream())
+                .collect(toList());
+    }
+
+    /**
+     * Puts the items on the discard pile of their decks
+     */
+    public void discard(String pbfId, Collection<? extends Item> items) {
+        items.stream()
+                .collect(groupingBy(Item::getSheetName, () -> new EnumMap<>(SheetName.class), toList()))
+                .forEach((sheetName, discarded) -> {
+                    Deck deck = find(pbfId, sheetName);
+                    deck.getDiscarded().addAll(discarded);
+                    save(deck);
+                });
+    }
+
+    /**
+     * Saves the deck if nobody else has saved it since it was read.
+     * Inside a {@link UnitOfWork} the deck is saved when the unit of work is flushed.
+     *
+     * @throws PBFConflictException - if the deck was changed by someone else
+     */
+    public void save(Deck deck) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current();
+        if (unitOfWork.isPresent() && unitOfWork.get().isRegistered(key(deck.getId()), deck)) {
+            unitOfWork.get().markDirty(key(deck.getId()), this);
+            return;
+        }
+        write(deck);
+    }
+
+    @Override
+    public void write(Deck deck) {
+        long expectedVersion = deck.getVersion();
+        deck.setVersion(expectedVersion + 1);
+        try {
+            //A deck which has never been written is inserted
+            if (diffWriter.write(deck, versionQuery(deck.getId(), expectedVersion), expectedVersion == 0)) {
+                return;
+            }
+        } catch (DuplicateKeyException e) {
+            log.debug("Deck " + deck.getId() + " was inserted by someone else");
+        }
+        deck.setVersion(expectedVersion);
+        conflicts.mark();
+        log.warn("Conflicting write on deck " + deck.getId() + " with version " + expectedVersion);
+        throw new PBFConflictException(deck.getPbfId());
+    }
+
+    /**
+     * The first item of the deck, without reading the rest of the deck
+     *
+     * @return the item as it is stored, ie {"infantry": {...}}, or empty if the deck has no items
+     */
+    public Optional<DBObject> peek(String pbfId, SheetName sheetName) {
+        BasicDBObject query = new BasicDBObject("_id", Deck.createId(pbfId, sheetName))
+                .append(Deck.ITEMS + ".0", new BasicDBObject("$exists", true));
+        DBObject deck = deckDbCollection.findOne(query, new BasicDBObject(Deck.ITEMS, new BasicDBObject("$slice", 1)));
+        if (deck == null) {
+            return Optional.empty();
+        }
+        return Optional.of((DBObject) ((BasicDBList) deck.get(Deck.ITEMS)).get(0));
+    }
+
+    /**
+     * The deck is put back by replacing what was written with what was read, with a newer version so that anyone who read the written deck
+     * gets a conflict. A deck which didn't exist before is removed
+     */
+    @Override
+    public Optional<Runnable> writeRevertible(Deck deck) {
+        Optional<DBObject> read = diffWriter.stored(deck);
+        write(deck);
+        long writtenVersion = deck.getVersion();
+        return Optional.of(() -> {
+            DBObject query = versionQuery(deck.getId(), writtenVersion);
+            boolean reverted;
+            if (read.isPresent()) {
+                BasicDBObject restored = new BasicDBObject(read.get().toMap());
+                restored.put(PBFRepository.VERSION, writtenVersion + 1);
+                reverted = deckDbCollection.update(query, restored).getN() == 1;
+            } else {
+                reverted = deckDbCollection.remove(query).getN() == 1;
+            }
+            if (reverted) {
+                log.warn("Put back deck " + deck.getId() + " since the rest of the changes to pbf " + deck.getPbfId() + " couldn't be written");
+            } else {
+                log.error("Couldn't put back deck " + deck.getId() + ", it was changed again after it was written");
+            }
+        });
+    }
+
+    /**
+     * Removes the first item of the deck in one atomic operation, if it is still the item from {@link #peek(String, SheetName)}
+     *
+     * @return false if someone else removed it first
+     */
+    public boolean removeFirst(String pbfId, SheetName sheetName, DBObject item) {
+        BasicDBObject query = new BasicDBObject("_id", Deck.createId(pbfId, sheetName))
+                .append(Deck.ITEMS + ".0", item);
+        BasicDBObject update = new BasicDBObject("$pop", new BasicDBObject(Deck.ITEMS, -1))
+                .append("$inc", new BasicDBObject(PBFRepository.VERSION, 1));
+        return deckDbCollection.update(query, update).getN() == 1;
+    }
+
+    /**
+     * Puts an item taken with {@link #removeFirst(String, SheetName, DBObject)} back on top of the deck
+     */
+    public void putBack(String pbfId, SheetName sheetName, DBObject item) {
+        BasicDBObject onTop = new BasicDBObject("$each", singletonList(item)).append("$position", 0);
+        BasicDBObject update = new BasicDBObject("$push", new BasicDBObject(Deck.ITEMS, onTop))
+                .append("$inc", new BasicDBObject(PBFRepository.VERSION, 1));
+        deckDbCollection.update(new BasicDBObject("_id", Deck.createId(pbfId, sheetName)), update);
+        log.warn("Put " + item.keySet().iterator().next() + " back on the deck of pbf " + pbfId + " since it couldn't be drawn");
+    }
+
+    public void deleteAll(String pbfId) {
+        List<String> ids = SheetName.SHEETS.stream()
+                .map(sheetName -> Deck.createId(pbfId, sheetName))
+                .collect(toList());
+        deckCollection.remove(DBQuery.in("_id", ids));
+    }
+
+    private static String key(String deckId) {
+        return Deck.COL_NAME + ":" + deckId;
+    }
+
+    /**
+     * Decks which were never written don't exist, and migrated decks don't have a version
+     */
+    private static DBObject versionQuery(String deckId, long version) {
+        return new BasicDBObject("_id", deckId).append(PBFRepository.VERSION, PBFRepository.versionCondition(version));
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.MapMaker;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.application.CivSingleton;
+import org.bson.BasicBSONEncoder;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes a document as an update of only the paths that changed since it was read, ie
+ * <code>{"$push": {"players.2.items": ...}, "$set": {"version": 8}}</code>, instead of replacing the whole document.
+ * <p>
+ * The document is remembered as it was read, and compared with the document when it is written.
+ * Appended list elements become a $push, one removed list element becomes a $pull, and everything else that changed a $set or $unset.
+ * If the update would be larger than the document itself, the document is replaced as before.
+ * <p>
+ * The update is only correct if the stored document is still the one that was read,
+ * so it must only be used with a query that checks the version of the document.
+ */
+@Log4j
+class DiffWriter<T> {
+    //Shared by all writers, since a document can be read by one repository and written by another. Weak keys compare by identity.
+    //The value is the stored DBObject, or the bson it was decoded from
+    private static final ConcurrentMap<Object, Object> SNAPSHOTS = new MapMaker().weakKeys().makeMap();
+
+    private final JacksonDBCollection<T, String> collection;
+    private final DBCollection dbCollection;
+    private final Histogram bytesSaved;
+    private final Meter diffWrites;
+    private final Meter fullWrites;
+
+    DiffWriter(JacksonDBCollection<T, String> collection) {
+        this.collection = collection;
+        this.dbCollection = collection.getDbCollection();
+        MetricRegistry metrics = CivSingleton.instance().metrics();
+        String name = dbCollection.getName();
+        this.bytesSaved = metrics.histogram(MetricRegistry.name(DiffWriter.class, name, "bytes-saved"));
+        this.diffWrites = metrics.meter(MetricRegistry.name(DiffWriter.class, name, "diff-writes"));
+        this.fullWrites = metrics.meter(MetricRegistry.name(DiffWriter.class, name, "full-writes"));
+    }
+
+    /**
+     * Converts the stored document and remembers it, so that the next write only sends the changes
+     */
+    T read(DBObject stored) {
+        T document = collection.convertFromDbObject(stored);
+        SNAPSHOTS.put(document, stored);
+        return document;
+    }
+
+    /**
+     * Remembers the bson the document was decoded from by a {@link JacksonCodec}.
+     * The DBObject to diff against is only made from it if the document is written
+     */
+    void read(T document, byte[] bson) {
+        SNAPSHOTS.put(document, bson);
+    }
+
+    /**
+     * The document as it was read or last written, or empty if it has never been stored
+     */
+    Optional<DBObject> stored(T document) {
+        return Optional.ofNullable(snapshot(document));
+    }
+
+    /**
+     * Writes the document to the stored document matching the query
+     *
+     * @param upsert - If true, a document which has not been read is inserted if nothing matches the query
+     * @return true if a document was written
+     */
+    boolean write(T document, DBObject query, boolean upsert) {
+        return writeChanges(document, query, upsert).isPresent();
+    }
+
+    /**
+     * Same as {@link #write(Object, DBObject, boolean)}
+     *
+     * @return the update that was written, which is the whole document when it was replaced, or empty if no document was written
+     */
+    Optional<DBObject> writeChanges(T document, DBObject query, boolean upsert) {
+        DBObject current = collection.convertToDbObject(document);
+        DBObject snapshot = snapshot(document);
+
+        DBObject written;
+        if (snapshot == null) {
+            written = replace(query, current, upsert) ? current : null;
+        } else {
+            Update update = new Update();
+            diff("", snapshot, current, update);
+            if (update.isEmpty()) {
+                return Optional.of(new BasicDBObject());
+            }
+
+            DBObject updateObject = update.toDBObject();
+            int documentSize = sizeOf(current);
+            int updateSize = sizeOf(updateObject);
+            if (updateSize >= documentSize) {
+                written = replace(query, current, false) ? current : null;
+            } else {
+                written = dbCollection.update(query, updateObject).getN() == 1 ? updateObject : null;
+                diffWrites.mark();
+                bytesSaved.update(documentSize - updateSize);
+            }
+        }
+
+        if (written != null) {
+            SNAPSHOTS.put(document, current);
+        }
+        return Optional.ofNullable(written);
+    }
+
+    private static DBObject snapshot(Object document) {
+        Object snapshot = SNAPSHOTS.get(document);
+        if (snapshot instanceof byte[]) {
+            return new DefaultDBDecoder().decode((byte[]) snapshot, (DBCollection) null);
+        }
+        return (DBObject) snapshot;
+    }
+
+    private boolean replace(DBObject query, DBObject current, boolean upsert) {
+        fullWrites.mark();
+        bytesSaved.update(0);
+        return dbCollection.update(query, current, upsert, false).getN() == 1;
+    }
+
+    static void diff(String path, Object stored, Object current, Update update) {
+        if (same(stored, current)) {
+            return;
+        }
+
+        if (stored instanceof List && current instanceof List) {
+            diffList(path, (List<?>) stored, (List<?>) current, update);
+        } else if (isDocument(stored) && isDocument(current) && canDescend((Map<?, ?>) stored, (Map<?, ?>) current)) {
+            Map<?, ?> storedMap = (Map<?, ?>) stored;
+            Map<?, ?> currentMap = (Map<?, ?>) current;
+            storedMap.keySet().stream()
+                    .filter(key -> !currentMap.containsKey(key))
+                    .forEach(key -> update.unset(child(path, key)));
+            currentMap.forEach((key, value) -> {
+                if (storedMap.containsKey(key)) {
+                    diff(child(path, key), storedMap.get(key), value, update);
+                } else {
+                    update.set(child(path, key), value);
+                }
+            });
+        } else {
+            update.set(path, current);
+        }
+    }
+
+    private static void diffList(String path, List<?> stored, List<?> current, Update update) {
+        if (current.size() > stored.size() && same(stored, current.subList(0, stored.size()))) {
+            update.push(path, current.subList(stored.size(), current.size()));
+        } else if (current.size() == stored.size() - 1) {
+            int removed = firstDifference(stored, current);
+            Object element = stored.get(removed);
+            //$pull removes every equal element, so only use it when there is just one
+            boolean unique = stored.stream().filter(other -> same(other, element)).count() == 1;
+            if (unique && same(stored.subList(removed + 1, stored.size()), current.subList(removed, current.size()))) {
+                update.pull(path, element);
+            } else {
+                update.set(path, current);
+            }
+        } else if (current.size() == stored.size()) {
+            for (int i = 0; i < current.size(); i++) {
+                diff(path + "." + i, stored.get(i), current.get(i), update);
+            }
+        } else {
+            update.set(path, current);
+        }
+    }
+
+    private static int firstDifference(List<?> stored, List<?> current) {
+        int i = 0;
+        while (i < current.size() && same(stored.get(i), current.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Keys with dots or dollars can't be part of a path, so such documents are set as a whole
+     */
+    private static boolean canDescend(Map<?, ?> stored, Map<?, ?> current) {
+        return stored.keySet().stream().allMatch(DiffWriter::isPathKey) && current.keySet().stream().allMatch(DiffWriter::isPathKey);
+    }
+
+    private static boolean isPathKey(Object key) {
+        String name = String.valueOf(key);
+        return !name.isEmpty() && !name.contains(".") && !name.startsWith("$");
+    }
+
+    private static boolean isDocument(Object value) {
+        return value instanceof Map && !(value instanceof List);
+    }
+
+    private static String child(String path, Object key) {
+        return path.isEmpty() ? String.valueOf(key) : path + "." + key;
+    }
+
+    /**
+     * Compares the values as mongo would, so that ie an int and a long with the same value are the same
+     */
+    static boolean same(Object stored, Object current) {
+        if (stored instanceof List && current instanceof List) {
+            List<?> storedList = (List<?>) stored;
+            List<?> currentList = (List<?>) current;
+            if (storedList.size() != currentList.size()) {
+                return false;
+            }
+            for (int i = 0; i < storedList.size(); i++) {
+                if (!same(storedList.get(i), currentList.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (isDocument(stored) && isDocument(current)) {
+            Map<?, ?> storedMap = (Map<?, ?>) stored;
+            Map<?, ?> currentMap = (Map<?, ?>) current;
+            return storedMap.size() == currentMap.size()
+                    && storedMap.entrySet().stream().allMatch(e -> currentMap.containsKey(e.getKey()) && same(e.getValue(), currentMap.get(e.getKey())));
+        }
+        if (stored instanceof Number && current instanceof Number
+                && !(stored instanceof Double || stored instanceof Float || current instanceof Double || current instanceof Float)) {
+            return ((Number) stored).longValue() == ((Number) current).longValue();
+        }
+        return Objects.equals(stored, current);
+    }
+
+    private static int sizeOf(DBObject object) {
+        return new BasicBSONEncoder().encode(object).length;
+    }
+
+    /**
+     * The update operators of one write. Every path is only changed by one operator
+     */
+    static final class Update {
+        private final BasicDBObject set = new BasicDBObject();
+        private final BasicDBObject unset = new BasicDBObject();
+        private final BasicDBObject push = new BasicDBObject();
+        private final BasicDBObject pull = new BasicDBObject();
+
+        void set(String path, Object value) {
+            set.put(path, value);
+        }
+
+        void unset(String path) {
+            unset.put(path, "");
+        }
+
+        void push(String path, List<?> values) {
+            BasicDBList each = new BasicDBList();
+            each.addAll(values);
+            push.put(path, new BasicDBObject("$each", each));
+        }
+
+        void pull(String path, Object value) {
+            pull.put(path, value);
+        }
+
+        boolean isEmpty() {
+            return set.isEmpty() && unset.isEmpty() && push.isEmpty() && pull.isEmpty();
+        }
+
+        DBObject toDBObject() {
+            BasicDBObject update = new BasicDBObject();
+            putIfNotEmpty(update, "$set", set);
+            putIfNotEmpty(update, "$unset", unset);
+            putIfNotEmpty(update, "$push", push);
+            putIfNotEmpty(update, "$pull", pull);
+            return update;
+        }
+
+        private static void putIfNotEmpty(BasicDBObject update, String operator, BasicDBObject paths) {
+            if (!paths.isEmpty()) {
+                update.put(operator, paths);
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.util.JSON;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.model.GameEvent;
+import no.asgari.civilization.server.model.PbfSnapshot;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Appends every write of a PBF to the events of the game, and keeps a snapshot of the whole PBF every
+ * {@link CivSingleton#snapshotEveryEvents()} events.
+ * <p>
+ * The event holds the same update that was written to the pbf collection, so appending it is as small as the write itself.
+ * Any version of a game can be read again by replaying the events after the closest snapshot before it.
+ * Actions tell what they did with {@link #describe(String, GameEvent.Type)}, and the next write of the game is given those types.
+ * An undo is the write that puts things back, and is appended as an UNDO_APPLIED event.
+ * <p>
+ * The events are appended after the pbf is written, and only on a best-effort basis. An event that can't be appended is logged and
+ * left as a gap, so the write of the game never fails because of it. {@link #replay(String, long)} doesn't give versions behind a gap.
+ */
+@Log4j
+public class GameEventStream {
+    //Games known to have a snapshot to replay from
+    private static final Set<String> SNAPSHOTTED = ConcurrentHashMap.newKeySet();
+
+    private final JacksonDBCollection<GameEvent, String> eventCollection;
+    private final JacksonDBCollection<PbfSnapshot, String> snapshotCollection;
+    private final Meter appended;
+    private final Meter snapshots;
+    private final Meter failed;
+    private final Histogram replayed;
+
+    public GameEventStream(DB db) {
+        this(JacksonDBCollection.wrap(db.getCollection(GameEvent.COL_NAME), GameEvent.class, String.class),
+                JacksonDBCollection.wrap(db.getCollection(PbfSnapshot.COL_NAME), PbfSnapshot.class, String.class),
+                CivSingleton.instance().metrics());
+    }
+
+    GameEventStream(JacksonDBCollection<GameEvent, String> eventCollection, JacksonDBCollection<PbfSnapshot, String> snapshotCollection,
+                    MetricRegistry metrics) {
+        this.eventCollection = eventCollection;
+        this.snapshotCollection = snapshotCollection;
+        this.appended = metrics.meter(MetricRegistry.name(GameEventStream.class, "appended"));
+        this.snapshots = metrics.meter(MetricRegistry.name(GameEventStream.class, "snapshots"));
+        this.failed = metrics.meter(MetricRegistry.name(GameEventStream.class, "failed"));
+        this.replayed = metrics.histogram(MetricRegistry.name(GameEventStream.class, "replayed-events"));
+    }
+
+    /**
+     * Tells what the action did to the game, which is saved with the next write of the pbf in the {@link UnitOfWork}
+     */
+    public static void describe(String pbfId, GameEvent.Type type) {
+        UnitOfWork.current().ifPresent(uow -> uow.describe(pbfId, type));
+    }
+
+    /**
+     * The first event of a new game holds the whole pbf
+     */
+    public void created(String pbfId, DBObject pbf) {
+        long version = version(pbf);
+        append(pbfId, version, pbf, EnumSet.of(GameEvent.Type.CREATED), () -> pbf);
+    }
+
+    /**
+     * Appends the update, with the types described in the {@link UnitOfWork}, once the changes of the unit of work are written
+     *
+     * @param current - The pbf after the update, only read when a snapshot is taken
+     */
+    void appendAfterCommit(String pbfId, long version, DBObject change, Supplier<DBObject> current) {
+        Set<GameEvent.Type> types = UnitOfWork.current()
+                .map(uow -> uow.takeEvents(pbfId))
+                .orElse(EnumSet.noneOf(GameEvent.Type.class));
+        UnitOfWork.afterCommit(() -> append(pbfId, version, change, types, current));
+    }
+
+    /**
+     * Appends an update which was written straight to the pbf collection. Never throws, an event which can't be appended is left as a gap
+     */
+    public void append(String pbfId, long version, DBObject change, Set<GameEvent.Type> types, Supplier<DBObject> current) {
+        GameEvent event = new GameEvent();
+        event.setId(GameEvent.createId(pbfId, version));
+        event.setPbfId(pbfId);
+        event.setVersion(version);
+        event.setTypes(new ArrayList<>(types.isEmpty() ? EnumSet.of(GameEvent.Type.CHANGED) : types));
+        event.setChange(JSON.serialize(change));
+        event.setCreated(new Date());
+        try {
+            eventCollection.insert(event);
+            appended.mark();
+            if (version % CivSingleton.instance().snapshotEveryEvents() == 0 || !hasSnapshot(pbfId)) {
+                snapshot(pbfId, version, current.get());
+            }
+        } catch (DuplicateKeyException e) {
+            log.warn("Pbf " + pbfId + " already has an event of version " + version);
+        } catch (RuntimeException e) {
+            failed.mark();
+            log.error("Couldn't append the event of version " + version + " to pbf " + pbfId + ". It is left as a gap", e);
+        }
+    }
+
+    /**
+     * The pbf as it was at the version, from the closest snapshot and the events after it
+     *
+     * @return the pbf, or empty if the events of that version are not all there
+     */
+    public Optional<DBObject> replay(String pbfId, long version) {
+        List<PbfSnapshot> closest = snapshotCollection.find(DBQuery.is(PbfSnapshot.PBFID, pbfId).lessThanEquals(PbfSnapshot.VERSION, version))
+                .sort(new BasicDBObject(PbfSnapshot.VERSION, -1))
+                .limit(1)
+                .toArray();
+        if (closest.isEmpty()) {
+            return Optional.empty();
+        }
+
+        DBObject pbf = (DBObject) JSON.parse(closest.get(0).getDocument());
+        int events = 0;
+        try (DBCursor<GameEvent> tail = eventCollection.find(DBQuery.is(GameEvent.PBFID, pbfId)
+                .greaterThan(GameEvent.VERSION, closest.get(0).getVersion())
+                .lessThanEquals(GameEvent.VERSION, version))
+                .sort(new BasicDBObject(GameEvent.VERSION, 1))) {
+            for (GameEvent event : tail) {
+                apply(pbf, (DBObject) JSON.parse(event.getChange()));
+                events++;
+            }
+        }
+        replayed.update(events);
+
+        if (version(pbf) != version) {
+            log.warn("Pbf " + pbfId + " is missing events before version " + version);
+            return Optional.empty();
+        }
+        return Optional.of(pbf);
+    }
+
+    public void delete(String pbfId) {
+        eventCollection.remove(DBQuery.is(GameEvent.PBFID, pbfId));
+        snapshotCollection.remove(DBQuery.is(PbfSnapshot.PBFID, pbfId));
+        SNAPSHOTTED.remove(pbfId);
+    }
+
+    private boolean hasSnapshot(String pbfId) {
+        if (SNAPSHOTTED.contains(pbfId)) {
+            return true;
+        }
+        if (snapshotCollection.getCount(DBQuery.is(PbfSnapshot.PBFID, pbfId)) > 0) {
+            SNAPSHOTTED.add(pbfId);
+            return true;
+        }
+        return false;
+    }
+
+    private void snapshot(String pbfId, long version, DBObject pbf) {
+        PbfSnapshot snapshot = new PbfSnapshot();
+        snapshot.setId(GameEvent.createId(pbfId, version));
+        snapshot.setPbfId(pbfId);
+        snapshot.setVersion(version);
+        snapshot.setDocument(JSON.serialize(pbf));
+        snapshotCollection.save(snapshot);
+        SNAPSHOTTED.add(pbfId);
+        snapshots.mark();
+    }
+
+    private static long version(DBObject pbf) {
+        Object version = pbf.get(PBFRepository.VERSION);
+        return version instanceof Number ? ((Number) version).longValue() : 0;
+    }
+
+    /**
+     * Applies the update the same way mongo does. A change without update operators replaces the whole document
+     */
+    static void apply(DBObject document, DBObject change) {
+        if (change.keySet().stream().noneMatch(key -> key.startsWith("$"))) {
+            new ArrayList<>(document.keySet()).forEach(document::removeField);
+            document.putAll(change);
+            return;
+        }
+
+        paths(change, "$set").forEach((path, value) -> set(document, path, value));
+        paths(change, "$unset").forEach((path, value) -> unset(document, path));
+        paths(change, "$inc").forEach((path, value) -> {
+            Object old = get(document, path);
+            long previous = old instanceof Number ? ((Number) old).longValue() : 0;
+            set(document, path, previous + ((Number) value).longValue());
+        });
+        paths(change, "$push").forEach((path, value) -> {
+            List<Object> list = list(document, path);
+            if (value instanceof DBObject && ((DBObject) value).containsField("$each")) {
+                list.addAll((List<?>) ((DBObject) value).get("$each"));
+            } else {
+                list.add(value);
+            }
+        });
+        paths(change, "$pull").forEach((path, value) -> list(document, path).removeIf(element -> DiffWriter.same(element, value)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> paths(DBObject change, String operator) {
+        DBObject paths = (DBObject) change.get(operator);
+        return paths != null ? paths.toMap() : new BasicDBObject();
+    }
+
+    private static Object get(DBObject document, String path) {
+        Object value = document;
+        for (String key : path.split("\\.")) {
+            if (value == null) {
+                return null;
+            }
+            value = child(value, key);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(DBObject document, String path) {
+        Object list = get(document, path);
+        if (list == null) {
+            list = new BasicDBList();
+            set(document, path, list);
+        }
+        return (List<Object>) list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void set(DBObject document, String path, Object value) {
+        int last = path.lastIndexOf('.');
+        Object parent = last == -1 ? document : parent(document, path.substring(0, last));
+        String key = path.substring(last + 1);
+        if (parent instanceof List) {
+            List<Object> list = (List<Object>) parent;
+            int index = Integer.parseInt(key);
+            if (index == list.size()) {
+                list.add(value);
+            } else {
+                list.set(index, value);
+            }
+        } else {
+            ((DBObject) parent).put(key, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void unset(DBObject document, String path) {
+        int last = path.lastIndexOf('.');
+        Object parent = last == -1 ? document : get(document, path.substring(0, last));
+        String key = path.substring(last + 1);
+        if (parent instanceof List) {
+            //Mongo leaves a null in the list
+            ((List<Object>) parent).set(Integer.parseInt(key), null);
+        } else if (parent != null) {
+            ((DBObject) parent).removeField(key);
+        }
+    }
+
+    /**
+     * Finds the document at the path, creating the documents that are missing
+     */
+    private static Object parent(DBObject document, String path) {
+        Object value = document;
+        for (String key : path.split("\\.")) {
+            Object next = child(value, key);
+            if (next == null) {
+                next = new BasicDBObject();
+                ((DBObject) value).put(key, next);
+            }
+            value = next;
+        }
+        return value;
+    }
+
+    private static Object child(Object parent, String key) {
+        if (parent instanceof List) {
+            List<?> list = (List<?>) parent;
+            int index = Integer.parseInt(key);
+            return index < list.size() ? list.get(index) : null;
+        }
+        return ((DBObject) parent).get(key);
+    }
+}
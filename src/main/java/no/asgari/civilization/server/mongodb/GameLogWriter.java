@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.DuplicateKeyException;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.GameLog;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes game logs in the background. The logs are queued, and a writer thread inserts them in batches of at most
+ * batchSize, waiting at most maxLatency for a batch to fill up.
+ * <p>
+ * When the queue is full the caller waits up to maxLatency for room, and then writes the log itself, so logs are never dropped
+ * and a slow mongo slows down the requests instead of filling up the memory.
+ * If a batch can't be inserted, its logs are inserted one by one with a few attempts each, and only the logs that still fail are lost.
+ * <p>
+ * The ids are made when the logs are inserted, not when they are queued, so that a log never gets an id older than logs
+ * which were written and could be read before it.
+ * <p>
+ * {@link #stop()} writes everything left in the queue, and must be called before the mongo client is closed.
+ */
+@Log4j
+public class GameLogWriter implements Managed {
+    static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    private final JacksonDBCollection<GameLog, String> gameLogCollection;
+    private final BlockingQueue<GameLog> queue;
+    private final int batchSize;
+    private final long maxLatencyMillis;
+    private final Meter written;
+    private final Meter queueFull;
+    private final Meter lost;
+    private Thread writer;
+    private volatile boolean running;
+
+    public GameLogWriter(JacksonDBCollection<GameLog, String> gameLogCollection, int batchSize, long maxLatencyMillis,
+                         int queueCapacity, MetricRegistry metrics) {
+        this.gameLogCollection = gameLogCollection;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.written = metrics.meter("GameLogWriter.written");
+        this.queueFull = metrics.meter("GameLogWriter.queue-full");
+        this.lost = metrics.meter("GameLogWriter.lost");
+        metrics.register("GameLogWriter.queue-size", (Gauge<Integer>) queue::size);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "gamelog-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer thread and writes the logs still in the queue
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        List<GameLog> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (int i = 0; i < left.size(); i += batchSize) {
+            insert(left.subList(i, Math.min(left.size(), i + batchSize)));
+        }
+    }
+
+    /**
+     * Queues the log. Its id is set when it is written
+     */
+    public void write(GameLog gameLog) {
+        boolean queued;
+        try {
+            queued = running && queue.offer(gameLog, maxLatencyMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (queued && !running && queue.remove(gameLog)) {
+            //Stopped while queueing, and the queue might already have been written
+            queued = false;
+        }
+        if (!queued) {
+            if (running) {
+                queueFull.mark();
+            }
+            insert(Collections.singletonList(gameLog));
+        }
+    }
+
+    private void run() {
+        List<GameLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                fill(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            //Whatever was taken from the queue is written, also when interrupted
+            insert(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Waits for the first log, and then until the batch is full or the first log has waited maxLatency
+     */
+    private void fill(List<GameLog> batch) throws InterruptedException {
+        GameLog first = queue.poll(maxLatencyMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.currentTimeMillis() + maxLatencyMillis;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long wait = deadline - System.currentTimeMillis();
+            if (batch.size() >= batchSize || wait <= 0) {
+                return;
+            }
+            GameLog next = queue.poll(wait, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void insert(List<GameLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        logs.stream()
+                .filter(gameLog -> gameLog.getId() == null)
+                .forEach(gameLog -> gameLog.setId(new ObjectId().toString()));
+        try {
+            gameLogCollection.insert(new ArrayList<>(logs));
+            written.mark(logs.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not write " + logs.size() + " gamelogs in one insert. Will write them one by one", e);
+            logs.forEach(this::insert);
+        }
+    }
+
+    /**
+     * Some logs of a failed batch may have been inserted before it failed, and they are the ones with a duplicate id
+     */
+    private void insert(GameLog gameLog) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                gameLogCollection.insert(gameLog);
+                written.mark();
+                return;
+            } catch (DuplicateKeyException e) {
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    lost.mark();
+                    log.error("Gave up writing gamelog " + gameLog + " after " + MAX_ATTEMPTS + " attempts", e);
+                    return;
+                }
+                pause(attempt);
+            }
+        }
+    }
+
+    private static void pause(int attempt) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
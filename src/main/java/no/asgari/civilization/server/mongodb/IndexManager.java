@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import io.dropwizard.lifecycle.Managed;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.ArchivedPbf;
+import no.asgari.civilization.server.model.Chat;
+import no.asgari.civilization.server.model.GameEvent;
+import no.asgari.civilization.server.model.GameLog;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PbfSnapshot;
+import no.asgari.civilization.server.model.PbfSummary;
+import no.asgari.civilization.server.model.Player;
+import no.asgari.civilization.server.model.PlayerTurn;
+import no.asgari.civilization.server.model.Stat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the indexes declared with {@link MongoIndex} on the model classes, and recreates the ones whose fields or
+ * uniqueness have changed. Indexes that are not declared are left alone.
+ * <p>
+ * When managed, the unique indexes are created before the server starts serving, since they are what keeps out duplicate players and turns.
+ * The other indexes are built in the background so that the server comes up without waiting for them.
+ * The state of each index can be read with {@link #getStatuses()}.
+ */
+@Log4j
+public class IndexManager implements Managed {
+    public static final List<Class<?>> MODELS = Collections.unmodifiableList(Arrays.asList(
+            Player.class, PBF.class, PbfSummary.class, Chat.class, GameLog.class, Stat.class, ArchivedPbf.class,
+            GameEvent.class, PbfSnapshot.class, PlayerTurn.class));
+
+    public enum State {
+        PENDING, BUILDING, READY, FAILED
+    }
+
+    private final DB db;
+    private final List<IndexSpec> indexes;
+    private final Map<String, Status> statuses = new LinkedHashMap<>();
+    private ExecutorService executor;
+
+    public IndexManager(DB db) {
+        this(db, MODELS);
+    }
+
+    public IndexManager(DB db, List<Class<?>> models) {
+        this.db = db;
+        this.indexes = models.stream()
+                .flatMap(model -> declared(model).stream())
+                .collect(Collectors.toList());
+        this.indexes.forEach(index -> statuses.put(index.toString(), new Status()));
+    }
+
+    @Override
+    public void start() throws Exception {
+        reconcile(index -> index.unique);
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("index-manager").setDaemon(true).build());
+        executor.submit(() -> reconcile(index -> !index.unique));
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates or changes the declared indexes one by one. An index that fails is logged and marked as FAILED,
+     * and does not stop the others
+     */
+    public void reconcile() {
+        reconcile(index -> true);
+    }
+
+    private void reconcile(Predicate<IndexSpec> which) {
+        for (IndexSpec index : indexes.stream().filter(which).collect(Collectors.toList())) {
+            Status status = statuses.get(index.toString());
+            status.state = State.BUILDING;
+            status.error = null;
+            try {
+                ensure(index);
+                status.state = State.READY;
+            } catch (Exception e) {
+                log.error("Could not create the index " + index, e);
+                status.error = e.getMessage();
+                status.state = State.FAILED;
+            }
+        }
+    }
+
+    /**
+     * @return the status of every declared index, keyed by collection.indexname
+     */
+    public Map<String, Status> getStatuses() {
+        return Collections.unmodifiableMap(statuses);
+    }
+
+    private void ensure(IndexSpec index) {
+        DBCollection collection = db.getCollection(index.collection);
+        List<DBObject> existing = collection.getIndexInfo();
+
+        Optional<DBObject> sameName = existing.stream()
+                .filter(info -> index.name.equals(info.get("name")))
+                .findFirst();
+        if (sameName.isPresent()) {
+            if (index.matches(sameName.get())) {
+                return;
+            }
+            log.warn("The index " + index + " has changed from " + sameName.get() + ". Will create it again");
+            collection.dropIndex(index.name);
+        } else if (existing.stream().anyMatch(index::matches)) {
+            log.debug("The index " + index + " already exists with another name");
+            return;
+        }
+
+        log.info("Creating the index " + index);
+        BasicDBObject options = new BasicDBObject("name", index.name).append("background", true);
+        if (index.unique) {
+            options.append("unique", true);
+        }
+        if (index.expireAfterSeconds >= 0) {
+            options.append("expireAfterSeconds", index.expireAfterSeconds);
+        }
+        collection.createIndex(index.keys, options);
+    }
+
+    static List<IndexSpec> declared(Class<?> model) {
+        MongoIndex[] declared = model.getAnnotationsByType(MongoIndex.class);
+        if (declared.length == 0) {
+            return Collections.emptyList();
+        }
+
+        String collection;
+        try {
+            collection = (String) model.getField("COL_NAME").get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(model.getName() + " declares indexes, but has no COL_NAME", e);
+        }
+
+        List<IndexSpec> specs = new ArrayList<>();
+        for (MongoIndex index : declared) {
+            specs.add(new IndexSpec(collection, index));
+        }
+        return specs;
+    }
+
+    @Getter
+    public static final class Status {
+        private volatile State state = State.PENDING;
+        private volatile String error;
+    }
+
+    static final class IndexSpec {
+        final String collection;
+        final String name;
+        final BasicDBObject keys = new BasicDBObject();
+        final boolean unique;
+        final long expireAfterSeconds;
+
+        IndexSpec(String collection, MongoIndex index) {
+            this.collection = collection;
+            this.unique = index.unique();
+            this.expireAfterSeconds = index.expireAfterSeconds();
+            for (String field : index.value()) {
+                if (field.startsWith("-")) {
+                    keys.append(field.substring(1), -1);
+                } else {
+                    keys.append(field, 1);
+                }
+            }
+            //Same name as mongo would have given it
+            this.name = keys.entrySet().stream()
+                    .map(e -> e.getKey() + "_" + e.getValue())
+                    .collect(Collectors.joining("_"));
+        }
+
+        /**
+         * True if the index info from mongo has the same fields in the same order and direction, the same uniqueness
+         * and the same expiry
+         */
+        boolean matches(DBObject info) {
+            Object key = info.get("key");
+            if (!(key instanceof DBObject)) {
+                return false;
+            }
+            DBObject existingKeys = (DBObject) key;
+            if (!new ArrayList<>(existingKeys.keySet()).equals(new ArrayList<>(keys.keySet()))) {
+                return false;
+            }
+            for (String field : keys.keySet()) {
+                Object direction = existingKeys.get(field);
+                if (!(direction instanceof Number) || ((Number) direction).intValue() != keys.getInt(field)) {
+                    return false;
+                }
+            }
+            Object expireAfter = info.get("expireAfterSeconds");
+            long existingExpireAfter = expireAfter instanceof Number ? ((Number) expireAfter).longValue() : -1;
+            return unique == Boolean.TRUE.equals(info.get("unique")) && expireAfterSeconds == existingExpireAfter;
+        }
+
+        @Override
+        public String toString() {
+            return collection + "." + name;
+        }
+    }
+}
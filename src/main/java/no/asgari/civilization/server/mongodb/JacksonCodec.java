@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.ByteBuf;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.mongojack.JacksonDBCollection;
+import org.mongojack.internal.MongoJackModule;
+import org.mongojack.internal.stream.JacksonDBDecoder;
+import org.mongojack.internal.stream.JacksonDBObject;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Decodes documents straight from their bson into the model classes, with the same Jackson mapping as the {@link JacksonDBCollection}.
+ * <p>
+ * The fields are streamed from the bytes into the object, so no {@link DBObject} is made on the way,
+ * which is what converting a read DBObject does. The bson is given to a listener together with the decoded object,
+ * so that the {@link DiffWriter} can diff against it later.
+ */
+public class JacksonCodec<T> implements Codec<T> {
+    private static final RawBsonDocumentCodec RAW = new RawBsonDocumentCodec();
+
+    private final Class<T> type;
+    private final JacksonDBCollection<T, ?> collection;
+    private final JacksonDBDecoder<T> decoder;
+    private final BiConsumer<T, byte[]> decoded;
+
+    public JacksonCodec(JacksonDBCollection<T, ?> collection, Class<T> type, BiConsumer<T, byte[]> decoded) {
+        ObjectMapper objectMapper = MongoJackModule.configure(new ObjectMapper());
+        this.type = type;
+        this.collection = collection;
+        this.decoder = new JacksonDBDecoder<>(collection, objectMapper, objectMapper.constructType(type));
+        this.decoded = decoded;
+    }
+
+    /**
+     * The collection of the legacy db, read through this codec
+     */
+    public MongoCollection<T> wrap(DB db, String collectionName) {
+        CodecRegistry registry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(this), MongoClient.getDefaultCodecRegistry());
+        return ((MongoClient) db.getMongo()).getDatabase(db.getName())
+                .getCollection(collectionName, type)
+                .withCodecRegistry(registry)
+                .withWriteConcern(db.getCollection(collectionName).getWriteConcern());
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        byte[] bson = bytes(RAW.decode(reader, decoderContext));
+        T document = decode(bson);
+        decoded.accept(document, bson);
+        return document;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T decode(byte[] bson) {
+        return ((JacksonDBObject<T>) decoder.decode(bson, (DBCollection) null)).getObject();
+    }
+
+    /**
+     * Only reads are streamed, so the document is written the same way as the {@link JacksonDBCollection} does
+     */
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        MongoClient.getDefaultCodecRegistry().get(DBObject.class).encode(writer, collection.convertToDbObject(value), encoderContext);
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+    public static byte[] bytes(RawBsonDocument document) {
+        ByteBuf buffer = document.getByteBuffer();
+        byte[] array = buffer.array();
+        return array.length == buffer.limit() ? array : Arrays.copyOf(array, buffer.limit());
+    }
+}
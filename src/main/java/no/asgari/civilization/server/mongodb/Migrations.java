@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+
+import java.util.Date;
+
+/**
+ * The startup migrations which are done.
+ * <p>
+ * There is no index that finds a missing field, so a migration looking for old documents reads the whole collection.
+ * When it is done it is marked in the migration collection, and the collection is not read again on the next startups.
+ */
+class Migrations {
+    static final String COL_NAME = "migration";
+    private static final String SETTING = "setting";
+
+    private final DBCollection migrationCollection;
+
+    Migrations(DB db) {
+        this.migrationCollection = db.getCollection(COL_NAME);
+    }
+
+    boolean isDone(String migration) {
+        return migrationCollection.findOne(new BasicDBObject("_id", migration)) != null;
+    }
+
+    /**
+     * Whether the migration was last done with this setting, for migrations which must be done again when the setting changes
+     */
+    boolean isDone(String migration, Object setting) {
+        return migrationCollection.findOne(new BasicDBObject("_id", migration).append(SETTING, setting)) != null;
+    }
+
+    void done(String migration) {
+        migrationCollection.update(new BasicDBObject("_id", migration), new BasicDBObject("_id", migration).append("done", new Date()), true, false);
+    }
+
+    void done(String migration, Object setting) {
+        migrationCollection.update(new BasicDBObject("_id", migration), new BasicDBObject("_id", migration)
+                .append("done", new Date())
+                .append(SETTING, setting), true, false);
+    }
+}
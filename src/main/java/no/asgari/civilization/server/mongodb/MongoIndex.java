@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index on the collection of a model class. The class must have a static COL_NAME.
+ * The indexes are created or changed by the {@link IndexManager} when the application starts.
+ * <pre>
+ * &#64;MongoIndex({"pbfId", "-created"})
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(MongoIndexes.class)
+public @interface MongoIndex {
+    /**
+     * The fields of the index in order. A field starting with - is descending
+     */
+    String[] value();
+
+    boolean unique() default false;
+
+    /**
+     * Makes it a TTL index, where mongo removes the documents this many seconds after the date in the field.
+     * Negative means the documents are kept
+     */
+    long expireAfterSeconds() default -1;
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBObject;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.dto.MessageDTO;
+import no.asgari.civilization.server.exception.PBFConflictException;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.PBF;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Writes PBFs with optimistic concurrency.
+ * <p>
+ * Every write only succeeds if the version of the stored PBF is the same as when it was read, and increments it.
+ * That way two requests on the same game can't silently overwrite each other.
+ * <p>
+ * With {@link CivSingleton#bsonCodecs()} the pbfs are decoded straight from bson by a {@link JacksonCodec} instead of from a read DBObject.
+ */
+@Log4j
+public class PBFRepository implements VersionedRepository<PBF> {
+    public static final String VERSION = "version";
+
+    static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 10;
+    private static final long MAX_BACKOFF_MS = 200;
+
+    private final JacksonDBCollection<PBF, String> pbfCollection;
+    private final DiffWriter<PBF> diffWriter;
+    private final PbfArchive archive;
+    private final GameEventStream eventStream;
+    private final Meter conflicts;
+    private final Meter retries;
+    private final Meter exhausted;
+    private final Meter cachedReads;
+    private final Meter deferredWrites;
+    private final Meter reads;
+    private final Timer dbObjectReads;
+    private final Timer bsonReads;
+    //Only when the pbfs are decoded straight from bson
+    private final MongoCollection<PBF> bsonCollection;
+
+    public PBFRepository(DB db) {
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
+        this.diffWriter = new DiffWriter<>(pbfCollection);
+        this.archive = new PbfArchive(db);
+        this.eventStream = new GameEventStream(db);
+        MetricRegistry metrics = CivSingleton.instance().metrics();
+        this.conflicts = metrics.meter(MetricRegistry.name(PBFRepository.class, "conflicts"));
+        this.retries = metrics.meter(MetricRegistry.name(PBFRepository.class, "retries"));
+        this.exhausted = metrics.meter(MetricRegistry.name(PBFRepository.class, "exhausted"));
+        this.cachedReads = metrics.meter(MetricRegistry.name(PBFRepository.class, "unit-of-work", "cached-reads"));
+        this.deferredWrites = metrics.meter(MetricRegistry.name(PBFRepository.class, "unit-of-work", "deferred-writes"));
+        this.reads = metrics.meter(MetricRegistry.name(PBFRepository.class, "reads"));
+        this.dbObjectReads = metrics.timer(MetricRegistry.name(PBFRepository.class, "reads", "dbobject"));
+        this.bsonReads = metrics.timer(MetricRegistry.name(PBFRepository.class, "reads", "bson"));
+        this.bsonCollection = CivSingleton.instance().bsonCodecs()
+                ? new JacksonCodec<>(pbfCollection, PBF.class, diffWriter::read).wrap(db, PBF.COL_NAME)
+                : null;
+    }
+
+    /**
+     * Finds the pbf. Inside a {@link UnitOfWork} the same instance is returned every time.
+     * A game which has been archived is restored first
+     */
+    public PBF findById(String pbfId) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current();
+        if (unitOfWork.isPresent()) {
+            Optional<PBF> loaded = unitOfWork.get().find(key(pbfId), PBF.class);
+            if (loaded.isPresent()) {
+                cachedReads.mark();
+                return loaded.get();
+            }
+        }
+
+        PBF pbf = read(pbfId);
+        unitOfWork.ifPresent(uow -> uow.register(key(pbfId), pbf));
+        return pbf;
+    }
+
+    /**
+     * Whether the current {@link UnitOfWork} already holds the pbf, so that changes to it must be made on that instance
+     */
+    public boolean isLoaded(String pbfId) {
+        return UnitOfWork.current().flatMap(uow -> uow.find(key(pbfId), PBF.class)).isPresent();
+    }
+
+    private PBF read(String pbfId) {
+        reads.mark();
+        Optional<PBF> stored = bsonCollection != null ? readBson(pbfId) : readDBObject(pbfId);
+        if (!stored.isPresent()) {
+            stored = archive.restore(pbfId).map(diffWriter::read);
+        }
+        if (!stored.isPresent()) {
+            log.error("Couldn't find pbf with id " + pbfId);
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND)
+                    .entity(Entity.json(new MessageDTO("Could not find game by id")))
+                    .build());
+        }
+        return stored.get();
+    }
+
+    private Optional<PBF> readDBObject(String pbfId) {
+        try (Timer.Context ignored = dbObjectReads.time()) {
+            DBObject stored = pbfCollection.getDbCollection().findOne(new BasicDBObject("_id", new ObjectId(pbfId)));
+            return Optional.ofNullable(stored).map(diffWriter::read);
+        }
+    }
+
+    private Optional<PBF> readBson(String pbfId) {
+        try (Timer.Context ignored = bsonReads.time()) {
+            return Optional.ofNullable(bsonCollection.find(Filters.eq("_id", new ObjectId(pbfId))).first());
+        }
+    }
+
+    /**
+     * Saves the pbf if nobody else has saved it since it was read.
+     * Inside a {@link UnitOfWork} the pbf is saved when the unit of work is flushed.
+     *
+     * @throws PBFConflictException - if the pbf was changed by someone else
+     */
+    public void save(PBF pbf) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current();
+        if (unitOfWork.isPresent() && unitOfWork.get().isRegistered(key(pbf.getId()), pbf)) {
+            unitOfWork.get().markDirty(key(pbf.getId()), this);
+            deferredWrites.mark();
+            return;
+        }
+        write(pbf);
+    }
+
+    @Override
+    public void write(PBF pbf) {
+        if (!compareAndSet(pbf)) {
+            conflicts.mark();
+            log.warn("Conflicting write on pbf " + pbf.getId() + " with version " + pbf.getVersion());
+            throw new PBFConflictException(pbf.getId());
+        }
+    }
+
+    /**
+     * Reads the pbf, applies the mutation and saves it. If someone else saved the pbf in the meantime,
+     * the mutation is applied again on a fresh copy after a short backoff. The mutation must therefore not have side effects
+     * outside of the pbf.
+     * When the {@link UnitOfWork} already holds the pbf, the mutation is applied once to that instance, and a conflict is reported when
+     * the unit of work is flushed. Otherwise the pbf is read and written here, without keeping it in the unit of work.
+     *
+     * @param mutation - Changes the pbf and returns true if it should be saved
+     * @return the saved pbf
+     * @throws PBFConflictException - if the pbf couldn't be saved after {@link #MAX_ATTEMPTS}
+     */
+    public PBF update(String pbfId, Predicate<PBF> mutation) {
+        if (isLoaded(pbfId)) {
+            PBF pbf = findById(pbfId);
+            if (mutation.test(pbf)) {
+                save(pbf);
+            }
+            return pbf;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            PBF pbf = read(pbfId);
+            if (!mutation.test(pbf) || compareAndSet(pbf)) {
+                return pbf;
+            }
+
+            conflicts.mark();
+            if (attempt == MAX_ATTEMPTS) {
+                exhausted.mark();
+                log.error("Gave up writing pbf " + pbfId + " after " + MAX_ATTEMPTS + " conflicting attempts");
+                throw new PBFConflictException(pbfId);
+            }
+            retries.mark();
+            log.warn("Conflicting write on pbf " + pbfId + ". Will try again, attempt " + (attempt + 1));
+            backoff(pbfId, attempt);
+        }
+    }
+
+    private boolean compareAndSet(PBF pbf) {
+        long expectedVersion = pbf.getVersion();
+        pbf.setVersion(expectedVersion + 1);
+        Optional<DBObject> change = diffWriter.writeChanges(pbf, versionQuery(pbf.getId(), expectedVersion), false);
+        if (change.isPresent()) {
+            eventStream.appendAfterCommit(pbf.getId(), pbf.getVersion(), change.get(), () -> pbfCollection.convertToDbObject(pbf));
+            return true;
+        }
+        pbf.setVersion(expectedVersion);
+        return false;
+    }
+
+    private static String key(String pbfId) {
+        return PBF.COL_NAME + ":" + pbfId;
+    }
+
+    /**
+     * Games created before the version was introduced don't have the field at all
+     */
+    private static DBObject versionQuery(String pbfId, long version) {
+        return new BasicDBObject("_id", new ObjectId(pbfId)).append(VERSION, versionCondition(version));
+    }
+
+    static Object versionCondition(long version) {
+        if (version == 0) {
+            BasicDBList noVersion = new BasicDBList();
+            noVersion.add(0L);
+            noVersion.add(null);
+            return new BasicDBObject("$in", noVersion);
+        }
+        return version;
+    }
+
+    private static void backoff(String pbfId, int attempt) {
+        long maxSleep = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << attempt);
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MS, maxSleep + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PBFConflictException(pbfId);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.util.JSON;
+import lombok.SneakyThrows;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.model.ArchivedPbf;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PlayerTurn;
+import no.asgari.civilization.server.model.Playerhand;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Moves finished games out of the pbf collection, so that the games being played are what mongo keeps in memory.
+ * <p>
+ * An archived game with its {@link Deck}s and {@link PlayerTurn}s is stored as one gzipped json blob with a small {@link ArchivedPbf} header.
+ * When an archived game is read again it is restored to the pbf, deck and turn collections,
+ * so everything else can keep reading it as if it was never archived.
+ */
+@Log4j
+public class PbfArchive {
+    private static final String PBF_FIELD = "pbf";
+    private static final String DECKS_FIELD = "decks";
+    private static final String TURNS_FIELD = "turns";
+
+    private final DBCollection pbfDbCollection;
+    private final DBCollection deckDbCollection;
+    private final DBCollection turnDbCollection;
+    private final TurnMigration turnMigration;
+    private final JacksonDBCollection<PBF, String> pbfCollection;
+    private final JacksonDBCollection<ArchivedPbf, String> archiveCollection;
+    private final Meter archived;
+    private final Meter hits;
+
+    public PbfArchive(DB db) {
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
+        this.pbfDbCollection = pbfCollection.getDbCollection();
+        this.deckDbCollection = db.getCollection(Deck.COL_NAME);
+        this.turnDbCollection = db.getCollection(PlayerTurn.COL_NAME);
+        this.turnMigration = new TurnMigration(db);
+        this.archiveCollection = JacksonDBCollection.wrap(db.getCollection(ArchivedPbf.COL_NAME), ArchivedPbf.class, String.class);
+        MetricRegistry metrics = CivSingleton.instance().metrics();
+        this.archived = metrics.meter(MetricRegistry.name(PbfArchive.class, "archived"));
+        this.hits = metrics.meter(MetricRegistry.name(PbfArchive.class, "hits"));
+    }
+
+    /**
+     * The ids of the games which ended before the date. Games ended before the end date was kept are found by when they were created
+     */
+    public List<String> findArchivable(Date endedBefore) {
+        BasicDBList endedOrOld = new BasicDBList();
+        endedOrOld.add(new BasicDBObject(PBF.ENDED, new BasicDBObject("$lt", endedBefore)));
+        endedOrOld.add(new BasicDBObject(PBF.ENDED, null)
+                .append("_id", new BasicDBObject("$lt", new ObjectId(endedBefore))));
+        BasicDBObject query = new BasicDBObject(PBF.ACTIVE, false).append("$or", endedOrOld);
+
+        List<String> pbfIds = new ArrayList<>();
+        try (DBCursor cursor = pbfDbCollection.find(query, new BasicDBObject("_id", 1))) {
+            cursor.forEach(pbf -> pbfIds.add(pbf.get("_id").toString()));
+        }
+        return pbfIds;
+    }
+
+    /**
+     * Moves the game, its decks and turns to the archive. The game is left alone if it was changed while being archived
+     *
+     * @return true if the game was archived
+     */
+    public boolean archive(String pbfId) {
+        BasicDBObject byId = new BasicDBObject("_id", new ObjectId(pbfId));
+        DBObject stored = pbfDbCollection.findOne(byId);
+        if (stored == null || Boolean.TRUE.equals(stored.get(PBF.ACTIVE))) {
+            return false;
+        }
+        List<DBObject> decks = deckDbCollection.find(new BasicDBObject(Deck.PBFID, pbfId)).toArray();
+        List<DBObject> turns = turnDbCollection.find(new BasicDBObject(PlayerTurn.PBFID, pbfId)).toArray();
+
+        PBF pbf = pbfCollection.convertFromDbObject(stored);
+        ArchivedPbf header = new ArchivedPbf();
+        header.setId(pbfId);
+        header.setName(pbf.getName());
+        header.setType(pbf.getType());
+        header.setWinner(pbf.getWinner());
+        header.setUsernames(pbf.getPlayers().stream().map(Playerhand::getUsername).collect(toList()));
+        header.setEnded(pbf.getEnded() != null ? pbf.getEnded() : new ObjectId(pbfId).getDate());
+        header.setArchived(new Date());
+
+        DBObject document = archiveCollection.convertToDbObject(header);
+        document.put(ArchivedPbf.BLOB, compress(new BasicDBObject(PBF_FIELD, stored).append(DECKS_FIELD, decks).append(TURNS_FIELD, turns)));
+        archiveCollection.getDbCollection().save(document);
+
+        //Only removed if nobody has written the game since it was read
+        BasicDBObject unchanged = new BasicDBObject(byId).append(PBFRepository.VERSION, stored.get(PBFRepository.VERSION));
+        if (pbfDbCollection.remove(unchanged).getN() == 0) {
+            archiveCollection.getDbCollection().remove(byId);
+            log.warn("Pbf " + pbfId + " was changed while being archived");
+            return false;
+        }
+        deckDbCollection.remove(new BasicDBObject(Deck.PBFID, pbfId));
+        turnDbCollection.remove(new BasicDBObject(PlayerTurn.PBFID, pbfId));
+        archived.mark();
+        return true;
+    }
+
+    /**
+     * Moves the game, its decks and turns back from the archive
+     *
+     * @return the stored pbf, or empty if the game isn't archived
+     */
+    public Optional<DBObject> restore(String pbfId) {
+        BasicDBObject byId = new BasicDBObject("_id", new ObjectId(pbfId));
+        DBObject document = archiveCollection.getDbCollection().findOne(byId, new BasicDBObject(ArchivedPbf.BLOB, 1));
+        if (document == null) {
+            return Optional.empty();
+        }
+
+        DBObject blob = decompress((byte[]) document.get(ArchivedPbf.BLOB));
+        DBObject pbf = (DBObject) blob.get(PBF_FIELD);
+        try {
+            pbfDbCollection.insert(pbf);
+            for (Object deck : (List<?>) blob.get(DECKS_FIELD)) {
+                deckDbCollection.save((DBObject) deck);
+            }
+            //Games archived before the turns got their own collection have their turns in the pbf
+            List<?> turns = (List<?>) blob.get(TURNS_FIELD);
+            if (turns != null) {
+                turns.forEach(turn -> turnDbCollection.save((DBObject) turn));
+            } else {
+                turnMigration.migrate(pbf);
+            }
+        } catch (DuplicateKeyException e) {
+            //Restored by someone else at the same time
+            log.debug("Pbf " + pbfId + " was already restored");
+            return Optional.ofNullable(pbfDbCollection.findOne(byId));
+        }
+        archiveCollection.getDbCollection().remove(byId);
+        hits.mark();
+        log.info("Restored pbf " + pbfId + " from the archive");
+        return Optional.of(pbf);
+    }
+
+    /**
+     * Every archived game, oldest first, for rebuilding what is counted from the games
+     */
+    public void forEachArchived(Consumer<PBF> consumer) {
+        try (DBCursor cursor = archiveCollection.getDbCollection().find(new BasicDBObject(), new BasicDBObject(ArchivedPbf.BLOB, 1))
+                .sort(new BasicDBObject("_id", 1))) {
+            for (DBObject document : cursor) {
+                DBObject blob = decompress((byte[]) document.get(ArchivedPbf.BLOB));
+                consumer.accept(pbfCollection.convertFromDbObject((DBObject) blob.get(PBF_FIELD)));
+            }
+        }
+    }
+
+    public long countArchived() {
+        return archiveCollection.getCount();
+    }
+
+    /**
+     * Mongo extended json keeps the ids and dates as they were stored
+     */
+    @SneakyThrows
+    static byte[] compress(DBObject dbObject) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            writer.write(JSON.serialize(dbObject));
+        }
+        return bytes.toByteArray();
+    }
+
+    @SneakyThrows
+    static DBObject decompress(byte[] blob) {
+        StringBuilder json = new StringBuilder();
+        char[] buffer = new char[8192];
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(blob)), StandardCharsets.UTF_8)) {
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                json.append(buffer, 0, read);
+            }
+        }
+        return (DBObject) JSON.parse(json.toString());
+    }
+}
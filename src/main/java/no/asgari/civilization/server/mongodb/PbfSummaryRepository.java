@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PbfSummary;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the {@link PbfSummary} of every game, which the list of games is read from.
+ * <p>
+ * Inside a {@link UnitOfWork} the summary is written when the unit of work is flushed, after the pbf itself,
+ * so that it shows the pbf as it was saved.
+ */
+@Log4j
+public class PbfSummaryRepository implements VersionedRepository<PBF> {
+    private final JacksonDBCollection<PbfSummary, String> summaryCollection;
+    private final JacksonDBCollection<PBF, String> pbfCollection;
+    private final PbfArchive archive;
+
+    public PbfSummaryRepository(DB db) {
+        this.summaryCollection = JacksonDBCollection.wrap(db.getCollection(PbfSummary.COL_NAME), PbfSummary.class, String.class);
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
+        this.archive = new PbfArchive(db);
+    }
+
+    /**
+     * All the summaries, finished games first and then the oldest games first
+     */
+    public List<PbfSummary> findAll() {
+        return summaryCollection.find()
+                .sort(new BasicDBObject(PbfSummary.ACTIVE, 1).append(PbfSummary.CREATED, 1))
+                .toArray();
+    }
+
+    /**
+     * Updates the summary of the pbf
+     */
+    public void save(PBF pbf) {
+        Optional<UnitOfWork> unitOfWork = UnitOfWork.current();
+        if (unitOfWork.isPresent()) {
+            unitOfWork.get().register(key(pbf.getId()), pbf);
+            unitOfWork.get().markDirty(key(pbf.getId()), this);
+            return;
+        }
+        write(pbf);
+    }
+
+    /**
+     * The summary is made from the pbf, so it can't be in conflict with anything and is just replaced
+     */
+    @Override
+    public void write(PBF pbf) {
+        summaryCollection.update(DBQuery.is("_id", pbf.getId()), new PbfSummary(pbf), true, false);
+    }
+
+    public void delete(String pbfId) {
+        summaryCollection.removeById(pbfId);
+    }
+
+    public boolean isEmpty() {
+        return summaryCollection.count() == 0;
+    }
+
+    /**
+     * Makes the summaries of all the games again, archived ones included, and removes the summaries of games that no longer exist
+     *
+     * @return the number of summaries
+     */
+    public int rebuild() {
+        BasicDBObject summaryFields = new BasicDBObject(PBF.NAME, 1)
+                .append("type", 1)
+                .append(PbfSummary.CREATED, 1)
+                .append("numOfPlayers", 1)
+                .append(PbfSummary.ACTIVE, 1)
+                .append("players.playerId", 1)
+                .append("players.username", 1)
+                .append("players.yourTurn", 1);
+
+        List<String> pbfIds = new ArrayList<>();
+        try (DBCursor<PBF> pbfs = pbfCollection.find(new BasicDBObject(), summaryFields)) {
+            for (PBF pbf : pbfs) {
+                write(pbf);
+                pbfIds.add(pbf.getId());
+            }
+        }
+        archive.forEachArchived(pbf -> {
+            write(pbf);
+            pbfIds.add(pbf.getId());
+        });
+        summaryCollection.remove(DBQuery.notIn("_id", pbfIds.toArray()));
+        log.info("Rebuilt the summaries of " + pbfIds.size() + " games");
+        return pbfIds.size();
+    }
+
+    private static String key(String pbfId) {
+        return PbfSummary.COL_NAME + ":" + pbfId;
+    }
+}
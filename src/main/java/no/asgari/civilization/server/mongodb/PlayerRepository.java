@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.Player;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.List;
+
+/**
+ * Keeps the games of every player in {@link Player#getGameIds()}.
+ * <p>
+ * The game ids are added and pulled one at a time, so the rest of the player document is never rewritten,
+ * and the players of a game are found through the index on gameIds.
+ */
+@Log4j
+public class PlayerRepository {
+    private static final String GAME_IDS = "gameIds";
+
+    private final DBCollection playerDbCollection;
+    private final JacksonDBCollection<Player, String> playerCollection;
+
+    public PlayerRepository(DB db) {
+        this.playerDbCollection = db.getCollection(Player.COL_NAME);
+        this.playerCollection = JacksonDBCollection.wrap(playerDbCollection, Player.class, String.class);
+    }
+
+    public void addGame(String playerId, String pbfId) {
+        playerDbCollection.update(byId(playerId), new BasicDBObject("$addToSet", new BasicDBObject(GAME_IDS, pbfId)));
+    }
+
+    public void removeGame(String playerId, String pbfId) {
+        playerDbCollection.update(byId(playerId), new BasicDBObject("$pull", new BasicDBObject(GAME_IDS, pbfId)));
+    }
+
+    /**
+     * The players who have the game, with only what is needed to tell them about it
+     */
+    public List<Player> findByGame(String pbfId) {
+        return playerCollection.find(new BasicDBObject(GAME_IDS, pbfId),
+                new BasicDBObject(Player.USERNAME, 1).append(Player.EMAIL, 1).append("disableEmail", 1))
+                .toArray();
+    }
+
+    /**
+     * Pulls the game from every player who has it, in one update
+     *
+     * @return how many players had the game
+     */
+    public int removeGameFromAll(String pbfId) {
+        int removed = playerDbCollection.update(new BasicDBObject(GAME_IDS, pbfId),
+                new BasicDBObject("$pull", new BasicDBObject(GAME_IDS, pbfId)), false, true).getN();
+        log.info("Removed game " + pbfId + " from " + removed + " players");
+        return removed;
+    }
+
+    private static BasicDBObject byId(String playerId) {
+        return new BasicDBObject("_id", new ObjectId(playerId));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.DB;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The repositories of a database, made once and shared by every action instead of on every request.
+ * <p>
+ * The repositories don't keep anything between calls. What a request has read is kept by the {@link UnitOfWork} of its thread.
+ */
+@Getter
+public final class Repositories {
+    private static final Map<DB, Repositories> REPOSITORIES = new ConcurrentHashMap<>();
+
+    private final PBFRepository pbfRepository;
+    private final DeckRepository deckRepository;
+    private final PbfSummaryRepository pbfSummaryRepository;
+    private final StatsRepository statsRepository;
+    private final GameEventStream gameEventStream;
+
+    private Repositories(DB db) {
+        this.pbfRepository = new PBFRepository(db);
+        this.deckRepository = new DeckRepository(db);
+        this.pbfSummaryRepository = new PbfSummaryRepository(db);
+        this.statsRepository = new StatsRepository(db);
+        this.gameEventStream = new GameEventStream(db);
+    }
+
+    public static Repositories of(DB db) {
+        return REPOSITORIES.computeIfAbsent(db, Repositories::new);
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.misc.EloRating;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.Player;
+import no.asgari.civilization.server.model.Playerhand;
+import no.asgari.civilization.server.model.Stat;
+import org.bson.types.ObjectId;
+import org.mongojack.DBCursor;
+import org.mongojack.DBQuery;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Keeps the {@link Stat} of every player and civ up to date, so that the highscores are read instead of counted.
+ * <p>
+ * A game is counted when it is saved with a winner, once the {@link UnitOfWork} has written the pbf, so a game that fails to save
+ * is not counted and a failed count doesn't fail the save. Mongo has no transactions across documents,
+ * so the GAME stat of the game is inserted first with every update of the count pending in it, and each update is taken off when it is done.
+ * A game that already has a GAME stat is not counted again, and the updates still pending after a crash are done at the next startup.
+ * Only an update done right before a crash can be done twice.
+ */
+@Log4j
+public class StatsRepository {
+    //The update operators of a pending update, without the $ which mongo doesn't allow in the names of stored fields
+    private static final String INC = "inc";
+    private static final String SET = "set";
+    private static final String SET_ON_INSERT = "setOnInsert";
+    //The civ of a player in the rebuild pipeline
+    private static final String CIV = "civ";
+
+    private final JacksonDBCollection<Stat, String> statsCollection;
+    private final DBCollection statsDbCollection;
+    private final DBCollection pbfDbCollection;
+    private final JacksonDBCollection<Player, String> playerCollection;
+    private final PbfArchive archive;
+
+    public StatsRepository(DB db) {
+        this.statsCollection = JacksonDBCollection.wrap(db.getCollection(Stat.COL_NAME), Stat.class, String.class);
+        this.statsDbCollection = statsCollection.getDbCollection();
+        this.pbfDbCollection = db.getCollection(PBF.COL_NAME);
+        this.playerCollection = JacksonDBCollection.wrap(db.getCollection(Player.COL_NAME), Player.class, String.class);
+        this.archive = new PbfArchive(db);
+    }
+
+    /**
+     * Every player, the ones with most wins first
+     */
+    public List<Stat> findPlayers() {
+        return find(Stat.Kind.PLAYER);
+    }
+
+    /**
+     * The civs that have been played
+     */
+    public List<Stat> findCivs() {
+        return find(Stat.Kind.CIV);
+    }
+
+    private List<Stat> find(Stat.Kind kind) {
+        return statsCollection.find(DBQuery.is(Stat.KIND, kind))
+                .sort(new BasicDBObject(Stat.WINS, -1))
+                .toArray();
+    }
+
+    /**
+     * New players are on the highscore before they have finished a game
+     */
+    public void addPlayer(String username) {
+        statsDbCollection.update(byId(Stat.Kind.PLAYER, username),
+                new BasicDBObject("$setOnInsert", newStat(Stat.Kind.PLAYER, username).append(Stat.RATING, EloRating.INITIAL)),
+                true, false);
+    }
+
+    /**
+     * Counts the game if it has a winner, when the changes of the {@link UnitOfWork} are written
+     */
+    public void save(PBF pbf) {
+        UnitOfWork.afterCommit(() -> {
+            try {
+                count(pbf);
+            } catch (RuntimeException e) {
+                log.error("Couldn't count the game " + pbf.getId() + ". What is pending is counted at the next startup", e);
+            }
+        });
+    }
+
+    /**
+     * Does the updates left pending by a count that didn't finish
+     *
+     * @return the number of games finished
+     */
+    public int finishPending() {
+        List<DBObject> games = statsDbCollection.find(new BasicDBObject(Stat.KIND, Stat.Kind.GAME.name())
+                .append(Stat.PENDING + ".0", new BasicDBObject("$exists", true))).toArray();
+        for (DBObject game : games) {
+            log.warn("Finishing the count of game " + game.get(Stat.NAME));
+            apply(game.get("_id"), pending(game));
+        }
+        return games.size();
+    }
+
+    /**
+     * Counts all the finished games again, archived ones included.
+     * Oldest first so that the ratings come out the same as when they were played.
+     * <p>
+     * The games are streamed one player at a time by an aggregation pipeline, which only reads the winner, usernames and civs,
+     * and merged by id with the archived games. Only the stats are held in memory, and each is written once at the end
+     *
+     * @return the number of games counted
+     */
+    public int rebuild() {
+        statsDbCollection.remove(new BasicDBObject());
+        Rebuild rebuild = new Rebuild();
+        try (Cursor rows = pbfDbCollection.aggregate(finishedPlayers(), AggregationOptions.builder()
+                .outputMode(AggregationOptions.OutputMode.CURSOR)
+                .allowDiskUse(true)
+                .build())) {
+            PeekingIterator<DBObject> players = Iterators.peekingIterator(rows);
+            archive.forEachArchived(pbf -> {
+                if (!Strings.isNullOrEmpty(pbf.getWinner())) {
+                    countBefore(players, new ObjectId(pbf.getId()), rebuild);
+                    Map<String, String> civs = new LinkedHashMap<>();
+                    pbf.getPlayers().forEach(p -> civs.put(p.getUsername(), p.getCivilization() != null ? p.getCivilization().getName() : null));
+                    rebuild.count(pbf.getId(), pbf.getWinner(), civs);
+                }
+            });
+            countBefore(players, null, rebuild);
+        }
+
+        rebuild.players.values().forEach(statsCollection::insert);
+        rebuild.civs.values().forEach(statsCollection::insert);
+        rebuild.flushGames();
+        try (DBCursor<Player> players = playerCollection.find(new BasicDBObject(), new BasicDBObject(Player.USERNAME, 1))) {
+            for (Player player : players) {
+                if (player.getUsername() != null) {
+                    addPlayer(player.getUsername());
+                }
+            }
+        }
+        log.info("Counted " + rebuild.counted + " finished games");
+        return rebuild.counted;
+    }
+
+    /**
+     * Every player of the finished games, oldest game first, with the winner of the game and the civ they played
+     */
+    private static List<DBObject> finishedPlayers() {
+        //Depending on which type info Jackson used for the civ, the name is on the civilization or inside a "civ" wrapper
+        BasicDBObject civName = new BasicDBObject("$ifNull", Arrays.asList("$players.civilization.name", "$players.civilization.civ.name"));
+        return Arrays.asList(
+                new BasicDBObject("$match", new BasicDBObject(PBF.ACTIVE, false)
+                        .append(PBF.WINNER, new BasicDBObject("$nin", Arrays.asList(null, "")))),
+                new BasicDBObject("$sort", new BasicDBObject("_id", 1)),
+                new BasicDBObject("$project", new BasicDBObject(PBF.WINNER, 1)
+                        .append("players.username", 1)
+                        .append("players.civilization.name", 1)
+                        .append("players.civilization.civ.name", 1)),
+                new BasicDBObject("$unwind", "$players"),
+                new BasicDBObject("$project", new BasicDBObject(PBF.WINNER, 1)
+                        .append(Player.USERNAME, "$players.username")
+                        .append(CIV, civName)));
+    }
+
+    /**
+     * Counts the games of the players which were created before the game, or all of them if there is none
+     */
+    private static void countBefore(PeekingIterator<DBObject> players, ObjectId before, Rebuild rebuild) {
+        while (players.hasNext() && (before == null || ((ObjectId) players.peek().get("_id")).compareTo(before) < 0)) {
+            Object pbfId = players.peek().get("_id");
+            String winner = (String) players.peek().get(PBF.WINNER);
+            Map<String, String> civs = new LinkedHashMap<>();
+            while (players.hasNext() && pbfId.equals(players.peek().get("_id"))) {
+                DBObject player = players.next();
+                civs.put((String) player.get(Player.USERNAME), (String) player.get(CIV));
+            }
+            rebuild.count(pbfId.toString(), winner, civs);
+        }
+    }
+
+    private void count(PBF pbf) {
+        if (Strings.isNullOrEmpty(pbf.getWinner())) {
+            return;
+        }
+
+        List<DBObject> updates = updates(pbf);
+        String gameId = Stat.createId(Stat.Kind.GAME, pbf.getId());
+        try {
+            statsDbCollection.insert(newStat(Stat.Kind.GAME, pbf.getId()).append("_id", gameId).append(Stat.PENDING, updates));
+        } catch (DuplicateKeyException e) {
+            log.warn("The game " + pbf.getId() + " has already been counted");
+            return;
+        }
+        apply(gameId, updates);
+    }
+
+    /**
+     * Every update of the players and civs that counting the game makes, with the ratings read now
+     */
+    private List<DBObject> updates(PBF pbf) {
+        List<String> usernames = pbf.getPlayers().stream()
+                .map(Playerhand::getUsername)
+                .collect(toList());
+
+        Map<String, Double> ratings = new HashMap<>();
+        usernames.forEach(username -> ratings.put(username, EloRating.INITIAL));
+        List<String> ids = usernames.stream().map(username -> Stat.createId(Stat.Kind.PLAYER, username)).collect(toList());
+        for (DBObject stat : statsDbCollection.find(new BasicDBObject("_id", new BasicDBObject("$in", ids))).toArray()) {
+            Object rating = stat.get(Stat.RATING);
+            if (rating instanceof Number) {
+                ratings.put((String) stat.get(Stat.NAME), ((Number) rating).doubleValue());
+            }
+        }
+        Map<String, Double> changes = EloRating.changes(ratings, pbf.getWinner());
+
+        List<DBObject> updates = new ArrayList<>();
+        for (Playerhand player : pbf.getPlayers()) {
+            String username = player.getUsername();
+            int won = username.equals(pbf.getWinner()) ? 1 : 0;
+            updates.add(byId(Stat.Kind.PLAYER, username)
+                    .append(INC, new BasicDBObject(Stat.ATTEMPTS, 1).append(Stat.WINS, won))
+                    .append(SET, new BasicDBObject(Stat.KIND, Stat.Kind.PLAYER.name())
+                            .append(Stat.NAME, username)
+                            .append(Stat.RATING, ratings.get(username) + changes.get(username))));
+
+            if (player.getCivilization() != null) {
+                String civ = player.getCivilization().getName();
+                updates.add(byId(Stat.Kind.CIV, civ)
+                        .append(INC, new BasicDBObject(Stat.ATTEMPTS, 1).append(Stat.WINS, won))
+                        .append(SET_ON_INSERT, new BasicDBObject(Stat.KIND, Stat.Kind.CIV.name()).append(Stat.NAME, civ)));
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * Does each update, and takes it off the pending updates of the game when it is done
+     */
+    private void apply(Object gameId, List<DBObject> updates) {
+        for (DBObject update : updates) {
+            BasicDBObject operators = new BasicDBObject();
+            for (String operator : Arrays.asList(INC, SET, SET_ON_INSERT)) {
+                if (update.containsField(operator)) {
+                    operators.append("$" + operator, update.get(operator));
+                }
+            }
+            statsDbCollection.update(new BasicDBObject("_id", update.get("_id")), operators, true, false);
+            statsDbCollection.update(new BasicDBObject("_id", gameId),
+                    new BasicDBObject("$pull", new BasicDBObject(Stat.PENDING, new BasicDBObject("_id", update.get("_id")))));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DBObject> pending(DBObject game) {
+        return (List<DBObject>) game.get(Stat.PENDING);
+    }
+
+    /**
+     * The stats counted so far by {@link #rebuild()}
+     */
+    private final class Rebuild {
+        private static final int GAME_BATCH_SIZE = 1000;
+
+        private final Map<String, Stat> players = new HashMap<>();
+        private final Map<String, Stat> civs = new HashMap<>();
+        private final List<DBObject> games = new ArrayList<>();
+        private int counted;
+
+        /**
+         * @param civs - The civ of every player in the game, keyed by username. The civ is null if the player didn't pick one
+         */
+        private void count(String pbfId, String winner, Map<String, String> civs) {
+            Map<String, Double> ratings = new HashMap<>();
+            civs.keySet().forEach(username -> ratings.put(username, stat(players, Stat.Kind.PLAYER, username).getRating()));
+            Map<String, Double> changes = EloRating.changes(ratings, winner);
+
+            civs.forEach((username, civ) -> {
+                int won = username.equals(winner) ? 1 : 0;
+                Stat player = stat(players, Stat.Kind.PLAYER, username);
+                player.setWins(player.getWins() + won);
+                player.setAttempts(player.getAttempts() + 1);
+                player.setRating(player.getRating() + changes.get(username));
+                if (civ != null) {
+                    Stat civStat = stat(this.civs, Stat.Kind.CIV, civ);
+                    civStat.setWins(civStat.getWins() + won);
+                    civStat.setAttempts(civStat.getAttempts() + 1);
+                }
+            });
+
+            games.add(newStat(Stat.Kind.GAME, pbfId).append("_id", Stat.createId(Stat.Kind.GAME, pbfId)));
+            if (games.size() == GAME_BATCH_SIZE) {
+                flushGames();
+            }
+            counted++;
+        }
+
+        private void flushGames() {
+            if (!games.isEmpty()) {
+                statsDbCollection.insert(games);
+                games.clear();
+            }
+        }
+
+        private Stat stat(Map<String, Stat> stats, Stat.Kind kind, String name) {
+            return stats.computeIfAbsent(name, n -> {
+                Stat stat = new Stat();
+                stat.setId(Stat.createId(kind, n));
+                stat.setKind(kind);
+                stat.setName(n);
+                if (kind == Stat.Kind.PLAYER) {
+                    stat.setRating(EloRating.INITIAL);
+                }
+                return stat;
+            });
+        }
+    }
+
+    private static BasicDBObject byId(Stat.Kind kind, String name) {
+        return new BasicDBObject("_id", Stat.createId(kind, name));
+    }
+
+    private static BasicDBObject newStat(Stat.Kind kind, String name) {
+        return new BasicDBObject(Stat.KIND, kind.name())
+                .append(Stat.NAME, name)
+                .append(Stat.WINS, 0L)
+                .append(Stat.ATTEMPTS, 0L);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PlayerTurn;
+import org.bson.types.ObjectId;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the turns of games played before the turns got their own collection out of the PBFs.
+ * <p>
+ * The PBF kept a private copy of each turn in the hand of its player, and a public copy in publicTurns once an order was written.
+ * The private copy is written by every order and by locking the turn, so it is the one which is kept.
+ * A turn which is already in the turn collection is left alone, so a game can be migrated again if the migration stops halfway.
+ * Looking for those games reads the whole pbf collection, so once every game is migrated it is not done again, see {@link Migrations}.
+ * Games restored from the archive are migrated one by one with {@link #migrate(DBObject)}.
+ */
+@Log4j
+public class TurnMigration {
+    static final String ID = "pbf-turns";
+    private static final String PUBLIC_TURNS = "publicTurns";
+    private static final String PLAYER_TURNS = "playerTurns";
+    private static final List<String> HANDS = Arrays.asList("players", "withdrawnPlayers");
+
+    private final DBCollection pbfDbCollection;
+    private final DBCollection turnDbCollection;
+    private final JacksonDBCollection<PlayerTurn, String> turnCollection;
+    private final Migrations migrations;
+
+    public TurnMigration(DB db) {
+        this.pbfDbCollection = db.getCollection(PBF.COL_NAME);
+        this.turnDbCollection = db.getCollection(PlayerTurn.COL_NAME);
+        this.turnCollection = JacksonDBCollection.wrap(turnDbCollection, PlayerTurn.class, String.class);
+        this.migrations = new Migrations(db);
+    }
+
+    /**
+     * @return the number of games that were migrated
+     */
+    public int migrate() {
+        if (migrations.isDone(ID)) {
+            return 0;
+        }
+
+        BasicDBList hasTurns = new BasicDBList();
+        BasicDBObject fields = new BasicDBObject(PUBLIC_TURNS, 1);
+        hasTurns.add(new BasicDBObject(PUBLIC_TURNS, new BasicDBObject("$exists", true)));
+        HANDS.forEach(hands -> {
+            hasTurns.add(new BasicDBObject(hands + "." + PLAYER_TURNS, new BasicDBObject("$exists", true)));
+            fields.append(hands + ".username", 1).append(hands + "." + PLAYER_TURNS, 1);
+        });
+
+        int migrated = 0;
+        try (DBCursor cursor = pbfDbCollection.find(new BasicDBObject("$or", hasTurns), fields)) {
+            for (DBObject stored : cursor) {
+                migrate(stored);
+                migrated++;
+            }
+        }
+        migrations.done(ID);
+        log.info("Moved the turns of " + migrated + " games to the " + PlayerTurn.COL_NAME + " collection");
+        return migrated;
+    }
+
+    /**
+     * Moves the turns of one stored PBF, which must have its publicTurns and the username and playerTurns of its hands
+     */
+    public void migrate(DBObject stored) {
+        String pbfId = stored.get("_id").toString();
+        Map<String, PlayerTurn> turns = turns(stored);
+        turns.values().forEach(turn -> insertIfAbsent(pbfId, turn));
+
+        BasicDBObject unset = new BasicDBObject(PUBLIC_TURNS, "");
+        HANDS.forEach(hands -> {
+            List<?> playerhands = (List<?>) stored.get(hands);
+            for (int i = 0; playerhands != null && i < playerhands.size(); i++) {
+                unset.append(hands + "." + i + "." + PLAYER_TURNS, "");
+            }
+        });
+        pbfDbCollection.update(new BasicDBObject("_id", new ObjectId(pbfId)), new BasicDBObject("$unset", unset));
+        log.debug("Moved " + turns.size() + " turns out of pbf " + pbfId);
+    }
+
+    /**
+     * The turns of the PBF by turn number and the username they were written with.
+     * The private turns get the username of the hand they are in, since a seat that was taken over kept the turns of the player before
+     */
+    Map<String, PlayerTurn> turns(DBObject stored) {
+        Map<String, PlayerTurn> turns = new LinkedHashMap<>();
+        DBObject publicTurns = (DBObject) stored.get(PUBLIC_TURNS);
+        if (publicTurns != null) {
+            for (String key : publicTurns.keySet()) {
+                PlayerTurn turn = turnCollection.convertFromDbObject((DBObject) publicTurns.get(key));
+                turn.setPublished(true);
+                turns.put(key(turn), turn);
+            }
+        }
+
+        for (String hands : HANDS) {
+            for (Object playerhand : list(stored.get(hands))) {
+                String username = (String) ((DBObject) playerhand).get("username");
+                for (Object playerTurn : list(((DBObject) playerhand).get(PLAYER_TURNS))) {
+                    PlayerTurn turn = turnCollection.convertFromDbObject((DBObject) playerTurn);
+                    String key = key(turn);
+                    turn.setPublished(turns.containsKey(key));
+                    turn.setUsername(username);
+                    turns.put(key, turn);
+                }
+            }
+        }
+        return turns;
+    }
+
+    private void insertIfAbsent(String pbfId, PlayerTurn turn) {
+        DBObject document = turnCollection.convertToDbObject(turn);
+        BasicDBObject byTurn = TurnRepository.byTurn(pbfId, turn.getUsername(), turn.getTurnNumber());
+        byTurn.keySet().forEach(document::removeField);
+        document.removeField("_id");
+        turnDbCollection.update(byTurn, new BasicDBObject("$setOnInsert", document), true, false);
+    }
+
+    private static String key(PlayerTurn turn) {
+        return turn.getTurnNumber() + turn.getUsername();
+    }
+
+    private static List<?> list(Object field) {
+        return field instanceof List ? (List<?>) field : new BasicDBList();
+    }
+}
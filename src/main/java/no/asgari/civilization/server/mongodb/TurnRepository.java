@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DuplicateKeyException;
+import lombok.extern.log4j.Log4j;
+import no.asgari.civilization.server.model.PlayerTurn;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.List;
+
+/**
+ * Keeps the {@link PlayerTurn}s of the games in their own collection, one document for each pbfId, username and turnNumber.
+ * <p>
+ * An order is written with one upsert of the turn it belongs to, so the PBF and the other turns are never rewritten.
+ * The turns of a player and the public turns of a game are found through the indexes on pbfId.
+ */
+@Log4j
+public class TurnRepository {
+    private final DBCollection turnDbCollection;
+    private final JacksonDBCollection<PlayerTurn, String> turnCollection;
+
+    public TurnRepository(DB db) {
+        this.turnDbCollection = db.getCollection(PlayerTurn.COL_NAME);
+        this.turnCollection = JacksonDBCollection.wrap(turnDbCollection, PlayerTurn.class, String.class);
+    }
+
+    /**
+     * Sets the order of the phase, adds it to the history of the phase and makes the turn public.
+     * The turn is created if the player hasn't got it yet
+     *
+     * @param phase - The field of the phase, ie {@link PlayerTurn#SOT}
+     */
+    public void writeOrder(String pbfId, String username, int turnNumber, String phase, String order) {
+        upsert(pbfId, username, turnNumber, new BasicDBObject("$set", new BasicDBObject(phase, order).append(PlayerTurn.PUBLISHED, true))
+                .append("$addToSet", new BasicDBObject(PlayerTurn.history(phase), order)));
+    }
+
+    /**
+     * Makes the turn public without writing any order, as when the phase is unknown
+     */
+    public void publish(String pbfId, String username, int turnNumber) {
+        upsert(pbfId, username, turnNumber, new BasicDBObject("$set", new BasicDBObject(PlayerTurn.PUBLISHED, true)));
+    }
+
+    /**
+     * Creates the turn if the player hasn't got it yet, and leaves it alone if it is there
+     */
+    public void add(String pbfId, String username, int turnNumber) {
+        upsert(pbfId, username, turnNumber, new BasicDBObject("$setOnInsert", new BasicDBObject(PlayerTurn.PUBLISHED, false)));
+    }
+
+    /**
+     * @return false if the player hasn't got the turn
+     */
+    public boolean setDisabled(String pbfId, String username, int turnNumber, boolean disabled) {
+        return turnDbCollection.update(byTurn(pbfId, username, turnNumber),
+                new BasicDBObject("$set", new BasicDBObject(PlayerTurn.DISABLED, disabled))).getN() > 0;
+    }
+
+    /**
+     * The turns of the player, in the order of the turn number
+     */
+    public List<PlayerTurn> findByPlayer(String pbfId, String username) {
+        return turnCollection.find(new BasicDBObject(PlayerTurn.PBFID, pbfId).append(PlayerTurn.USERNAME, username))
+                .sort(new BasicDBObject(PlayerTurn.TURN_NUMBER, 1))
+                .toArray();
+    }
+
+    /**
+     * Every turn of the game which has an order
+     */
+    public List<PlayerTurn> findPublic(String pbfId) {
+        return turnCollection.find(new BasicDBObject(PlayerTurn.PBFID, pbfId).append(PlayerTurn.PUBLISHED, true)).toArray();
+    }
+
+    /**
+     * Gives the turns of a seat to the player who took it over, in one update
+     *
+     * @return how many turns were moved
+     */
+    public int rename(String pbfId, String oldUsername, String newUsername) {
+        int renamed = turnDbCollection.update(new BasicDBObject(PlayerTurn.PBFID, pbfId).append(PlayerTurn.USERNAME, oldUsername),
+                new BasicDBObject("$set", new BasicDBObject(PlayerTurn.USERNAME, newUsername)), false, true).getN();
+        log.info("Moved " + renamed + " turns of " + oldUsername + " to " + newUsername + " in pbf " + pbfId);
+        return renamed;
+    }
+
+    public void deleteAll(String pbfId) {
+        turnDbCollection.remove(new BasicDBObject(PlayerTurn.PBFID, pbfId));
+    }
+
+    /**
+     * Two upserts of a new turn at the same time can both try to insert it, and the one which loses the unique index
+     * is written again as an update of the turn the other one inserted
+     */
+    private void upsert(String pbfId, String username, int turnNumber, BasicDBObject update) {
+        BasicDBObject byTurn = byTurn(pbfId, username, turnNumber);
+        try {
+            turnDbCollection.update(byTurn, update, true, false);
+        } catch (DuplicateKeyException e) {
+            log.debug("Turn " + turnNumber + " of " + username + " in pbf " + pbfId + " was inserted by someone else");
+            turnDbCollection.update(byTurn, update, true, false);
+        }
+    }
+
+    static BasicDBObject byTurn(String pbfId, String username, int turnNumber) {
+        return new BasicDBObject(PlayerTurn.PBFID, pbfId)
+                .append(PlayerTurn.USERNAME, username)
+                .append(PlayerTurn.TURN_NUMBER, turnNumber);
+    }
+}
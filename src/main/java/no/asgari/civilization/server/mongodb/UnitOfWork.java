@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import no.asgari.civilization.server.model.GameEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the PBFs and decks read during a unit of work, so that every action gets the same instance,
+ * and writes each changed document once when the unit of work is flushed.
+ * <p>
+ * A unit of work is bound to the thread running it, and is only used by one thread at a time.
+ * Writes outside the documents, like logs and emails, are held with {@link #afterCommit(Runnable)} until the documents are written,
+ * so nothing is left behind when the work fails or someone else wrote the game in the meantime.
+ */
+public class UnitOfWork {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Object> documents = new HashMap<>();
+    //The repository that loaded the document is the one that writes it
+    private final Map<String, VersionedRepository<?>> dirty = new LinkedHashMap<>();
+    //What happened to each game since its pbf was last written, given to the event of the write
+    private final Map<String, Set<GameEvent.Type>> events = new HashMap<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+
+    public static Optional<UnitOfWork> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Runs the work in a new unit of work and writes its changes, or as part of the unit of work already bound to the thread.
+     * The actions held with {@link #afterCommit(Runnable)} are run when the changes are written, and dropped if the work fails
+     */
+    public static <T> T run(Supplier<T> work) {
+        if (current().isPresent()) {
+            return work.get();
+        }
+
+        UnitOfWork unitOfWork = new UnitOfWork();
+        unitOfWork.bind();
+        T result;
+        try {
+            result = work.get();
+            unitOfWork.flush();
+        } finally {
+            unitOfWork.unbind();
+        }
+        unitOfWork.afterCommit.forEach(Runnable::run);
+        return result;
+    }
+
+    /**
+     * Runs the action when the changes of the current unit of work are written, or right away if there is none
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork unitOfWork = CURRENT.get();
+        if (unitOfWork != null) {
+            unitOfWork.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    public void unbind() {
+        CURRENT.remove();
+    }
+
+    public boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Writes every changed document. The decks are written first, and put back if the rest can't be written,
+     * in the order of {@link DeckRepository}. The others are written in the order they were first changed
+     *
+     * @throws no.asgari.civilization.server.exception.PBFConflictException - if someone else wrote one of them in the meantime.
+     *                                                                      The documents which are not written are forgotten
+     */
+    public void flush() {
+        Deque<Runnable> reverts = new ArrayDeque<>();
+        try {
+            Map<String, VersionedRepository<?>> rest = new LinkedHashMap<>();
+            dirty.forEach((key, repository) -> {
+                Optional<Runnable> revert = writeRevertible(repository, documents.get(key));
+                if (revert.isPresent()) {
+                    reverts.push(revert.get());
+                } else {
+                    rest.put(key, repository);
+                }
+            });
+            rest.forEach((key, repository) -> write(repository, documents.get(key)));
+        } catch (RuntimeException e) {
+            reverts.forEach(revert -> revert(revert, e));
+            dirty.keySet().forEach(documents::remove);
+            events.clear();
+            throw e;
+        } finally {
+            dirty.clear();
+        }
+    }
+
+    <T> Optional<T> find(String key, Class<T> type) {
+        return Optional.ofNullable(documents.get(key)).map(type::cast);
+    }
+
+    void register(String key, Object document) {
+        documents.put(key, document);
+    }
+
+    boolean isRegistered(String key, Object document) {
+        return documents.get(key) == document;
+    }
+
+    void markDirty(String key, VersionedRepository<?> repository) {
+        dirty.put(key, repository);
+    }
+
+    void describe(String pbfId, GameEvent.Type type) {
+        events.computeIfAbsent(pbfId, id -> EnumSet.noneOf(GameEvent.Type.class)).add(type);
+    }
+
+    /**
+     * What happened to the game since the last time, and forgets it
+     */
+    Set<GameEvent.Type> takeEvents(String pbfId) {
+        Set<GameEvent.Type> types = events.remove(pbfId);
+        return types != null ? types : EnumSet.noneOf(GameEvent.Type.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void write(VersionedRepository<T> repository, Object document) {
+        repository.write((T) document);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Optional<Runnable> writeRevertible(VersionedRepository<T> repository, Object document) {
+        return repository.writeRevertible((T) document);
+    }
+
+    private static void revert(Runnable revert, RuntimeException cause) {
+        try {
+            revert.run();
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import java.util.Optional;
+
+/**
+ * A repository whose documents can be kept in a {@link UnitOfWork} and written when it is flushed
+ *
+ * @param <T> - The document
+ */
+interface VersionedRepository<T> {
+    /**
+     * Writes the document if nobody else has written it since it was read
+     *
+     * @throws no.asgari.civilization.server.exception.PBFConflictException - if it was changed by someone else
+     */
+    void write(T document);
+
+    /**
+     * Writes the document like {@link #write(Object)}, and gives back what puts the stored document back as it was read.
+     * A {@link UnitOfWork} writes these documents before the others, and puts them back if one of the others is in conflict
+     *
+     * @return empty, without writing anything, if the documents of this repository can't be put back
+     */
+    default Optional<Runnable> writeRevertible(T document) {
+        return Optional.empty();
+    }
+}
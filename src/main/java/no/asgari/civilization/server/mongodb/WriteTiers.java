@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableSet;
+import com.mongodb.DB;
+import com.mongodb.WriteConcern;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import lombok.extern.log4j.Log4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Every collection is written with the write concern of its tier, so the game can't be lost on a failover,
+ * while the logs and chats don't wait for the other members.
+ * <p>
+ * The latency of the writes is timed per tier by listening to the commands of the driver.
+ * Writes which are not bound to a collection, like the email timestamps of a player, are run with {@link #write(String, Function)}
+ * which gives them the write concern of their tier and times them.
+ */
+@Log4j
+public class WriteTiers implements CommandListener {
+    private static final Set<String> WRITE_COMMANDS = ImmutableSet.of("insert", "update", "delete", "findandmodify");
+
+    private final Map<String, WriteConcern> writeConcerns;
+    private final Map<String, String> collections;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Meter> failures = new ConcurrentHashMap<>();
+    private final Map<Integer, String> running = new ConcurrentHashMap<>();
+    private final MetricRegistry metrics;
+
+    /**
+     * @param writeConcerns - Key is the tier
+     * @param collections   - Key is the collection and value is the tier
+     */
+    public WriteTiers(Map<String, WriteConcern> writeConcerns, Map<String, String> collections, MetricRegistry metrics) {
+        collections.forEach((collection, tier) -> {
+            if (!writeConcerns.containsKey(tier)) {
+                throw new IllegalArgumentException("The collection " + collection + " has the unknown write tier " + tier);
+            }
+        });
+        this.writeConcerns = writeConcerns;
+        this.collections = collections;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the write concern of every collection which has a tier
+     */
+    public void apply(DB db) {
+        collections.forEach((collection, tier) -> {
+            db.getCollection(collection).setWriteConcern(writeConcerns.get(tier));
+            log.info("Writing " + collection + " with the " + tier + " write concern " + writeConcerns.get(tier));
+        });
+    }
+
+    public WriteConcern writeConcern(String tier) {
+        WriteConcern writeConcern = writeConcerns.get(tier);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Unknown write tier " + tier);
+        }
+        return writeConcern;
+    }
+
+    /**
+     * Runs the write with the write concern of the tier, and times it as a write of the tier
+     */
+    public <T> T write(String tier, Function<WriteConcern, T> write) {
+        WriteConcern writeConcern = writeConcern(tier);
+        Timer.Context time = timer(tier).time();
+        try {
+            return write.apply(writeConcern);
+        } finally {
+            time.stop();
+        }
+    }
+
+    private Timer timer(String tier) {
+        return timers.computeIfAbsent(tier, t -> metrics.timer(MetricRegistry.name(WriteTiers.class, t)));
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!WRITE_COMMANDS.contains(event.getCommandName().toLowerCase())) {
+            return;
+        }
+        String tier = collections.get(collectionOf(event.getCommand()));
+        if (tier != null) {
+            running.put(event.getRequestId(), tier);
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String tier = running.remove(event.getRequestId());
+        if (tier != null) {
+            timer(tier).update(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String tier = running.remove(event.getRequestId());
+        if (tier != null) {
+            timer(tier).update(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+            failures.computeIfAbsent(tier, t -> metrics.meter(MetricRegistry.name(WriteTiers.class, t, "failed"))).mark();
+        }
+    }
+
+    //The collection is the value of the first key, which is the name of the command
+    private static String collectionOf(BsonDocument command) {
+        if (command.isEmpty()) {
+            return null;
+        }
+        BsonValue collection = command.get(command.keySet().iterator().next());
+        return collection.isString() ? collection.asString().getValue() : null;
+    }
+}
@@ -18,6 +18,8 @@ import com.mongodb.DB;
 import io.dropwizard.auth.Auth;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.action.GameAction;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.application.GameExecutor;
 import no.asgari.civilization.server.model.Player;
 
 import javax.ws.rs.Consumes;
@@ -40,6 +42,7 @@ import javax.ws.rs.core.Response;
 public class AdminResource {
 
     private final GameAction gameAction;
+    private final GameExecutor gameExecutor = CivSingleton.instance().gameExecutor();
 
     public AdminResource(DB db) {
         gameAction = new GameAction(db);
@@ -62,7 +65,7 @@ public class AdminResource {
             return Response.status(Response.Status.FORBIDDEN).build();
         }
 */
-        gameAction.changeUserFromExistingGame(gameid, fromUsername, toUsername);
+        gameExecutor.execute(gameid, () -> gameAction.changeUserFromExistingGame(gameid, fromUsername, toUsername));
 
         return Response.ok().build();
     }
@@ -80,12 +83,25 @@ public class AdminResource {
             return Response.status(Response.Status.FORBIDDEN).build();
         }
 
-        boolean deleted = gameAction.deleteGame(gameid);
+        boolean deleted = gameExecutor.execute(gameid, () -> gameAction.deleteGame(gameid));
         if (deleted) return Response.ok().build();
 
         return Response.status(Response.Status.NOT_MODIFIED).build();
     }
 
+    /**
+     * Shows the game as it was at the version
+     */
+    @Path("/replay")
+    @GET
+    public Response replay(@Auth Player admin, @QueryParam("gameid") String gameid, @QueryParam("version") long version) {
+        if (!"admin".equals(admin.getUsername())) {
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+
+        return Response.ok().entity(gameAction.replay(gameid, version)).build();
+    }
+
     @Path("/email/notification/{playerId}/stop")
     @GET
     @Produces(MediaType.TEXT_HTML)
@@ -21,6 +21,8 @@ import io.dropwizard.auth.Auth;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.SheetName;
 import no.asgari.civilization.server.action.DrawAction;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.application.GameExecutor;
 import no.asgari.civilization.server.dto.MessageDTO;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.Item;
@@ -50,6 +52,7 @@ import java.util.Optional;
 public class DrawResource {
 
     private final DB db;
+    private final GameExecutor gameExecutor = CivSingleton.instance().gameExecutor();
     @Context
     private UriInfo uriInfo;
 
@@ -77,11 +80,11 @@ public class DrawResource {
                     .entity(new MessageDTO("Could not find item " + sheetName))
                     .build();
         } else if (!sheetNameOptional.isPresent() && sheetName.equals("Culture Card")) {
-            Item item = drawAction.loot(pbfId, SheetName.CULTURE_CARD, targetPlayerId, player.getId());
+            Item item = gameExecutor.execute(pbfId, () -> drawAction.loot(pbfId, SheetName.CULTURE_CARD, targetPlayerId, player.getId()));
             return Response.ok().entity(item).build();
 
         } else {
-            Item item = drawAction.loot(pbfId, EnumSet.of(sheetNameOptional.get()), targetPlayerId, player.getId());
+            Item item = gameExecutor.execute(pbfId, () -> drawAction.loot(pbfId, EnumSet.of(sheetNameOptional.get()), targetPlayerId, player.getId()));
             return Response.ok().entity(item).build();
         }
     }
@@ -91,7 +94,7 @@ public class DrawResource {
     @Path("/battlehand/reveal")
     public Response revealAndDiscardBattlehand(@PathParam("pbfId") String pbfId, @Auth Player player) {
         DrawAction drawAction = new DrawAction(db);
-        drawAction.revealAndDiscardBattlehand(pbfId, player.getId());
+        gameExecutor.execute(pbfId, () -> drawAction.revealAndDiscardBattlehand(pbfId, player.getId()));
         return Response.ok().build();
     }
 
@@ -106,7 +109,7 @@ public class DrawResource {
             return Response.status(Response.Status.NOT_FOUND).build();
         }
 
-        Optional<GameLog> gameLogOptional = drawAction.draw(pbfId, player.getId(), sheetNameOptional.get());
+        Optional<GameLog> gameLogOptional = gameExecutor.execute(pbfId, () -> drawAction.draw(pbfId, player.getId(), sheetNameOptional.get()));
         if (gameLogOptional.isPresent())
             return Response.ok().build();
 
@@ -126,7 +129,7 @@ public class DrawResource {
     @Timed
     public Response drawUnits(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId, @NotEmpty @QueryParam("numOfUnits") int numberOfunits) {
         DrawAction drawAction = new DrawAction(db);
-        List<Unit> units = drawAction.drawUnitsFromBattlehandForBattle(pbfId, player.getId(), numberOfunits);
+        List<Unit> units = gameExecutor.execute(pbfId, () -> drawAction.drawUnitsFromBattlehandForBattle(pbfId, player.getId(), numberOfunits));
         return Response.ok().entity(units).build();
     }
 
@@ -142,7 +145,7 @@ public class DrawResource {
     @Timed
     public Response drawBarbarians(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId) {
         DrawAction drawAction = new DrawAction(db);
-        List<Unit> units = drawAction.drawBarbarians(pbfId, player.getId());
+        List<Unit> units = gameExecutor.execute(pbfId, () -> drawAction.drawBarbarians(pbfId, player.getId()));
         return Response.ok().entity(units).build();
     }
 
@@ -158,7 +161,7 @@ public class DrawResource {
     @Timed
     public Response discardBarbarians(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId) {
         DrawAction drawAction = new DrawAction(db);
-        drawAction.discardBarbarians(pbfId, player.getId());
+        gameExecutor.execute(pbfId, () -> drawAction.discardBarbarians(pbfId, player.getId()));
         return Response.noContent().build();
     }
 
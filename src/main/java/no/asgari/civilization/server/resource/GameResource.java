@@ -22,6 +22,7 @@ import com.google.common.html.HtmlEscapers;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.jersey.caching.CacheControl;
 import lombok.Cleanup;
 import lombok.extern.log4j.Log4j;
 import no.asgari.civilization.server.action.GameAction;
@@ -29,6 +30,9 @@ import no.asgari.civilization.server.action.GameLogAction;
 import no.asgari.civilization.server.action.PlayerAction;
 import no.asgari.civilization.server.action.TurnAction;
 import no.asgari.civilization.server.action.UndoAction;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.application.GameExecutor;
+import no.asgari.civilization.server.application.ReadExecutor;
 import no.asgari.civilization.server.dto.ChatDTO;
 import no.asgari.civilization.server.dto.CheckNameDTO;
 import no.asgari.civilization.server.dto.CivHighscoreDTO;
@@ -40,11 +44,11 @@ import no.asgari.civilization.server.dto.MessageDTO;
 import no.asgari.civilization.server.dto.PbfDTO;
 import no.asgari.civilization.server.dto.PlayerDTO;
 import no.asgari.civilization.server.dto.WinnerDTO;
+import no.asgari.civilization.server.model.CatalogText;
 import no.asgari.civilization.server.model.Chat;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.Player;
-import no.asgari.civilization.server.model.PlayerTurn;
 import no.asgari.civilization.server.model.Tech;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.mongojack.DBCursor;
@@ -54,6 +58,7 @@ import org.mongojack.JacksonDBCollection;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -62,6 +67,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -71,6 +78,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.stream.Collectors.toList;
 
@@ -80,6 +88,8 @@ import static java.util.stream.Collectors.toList;
 @Log4j
 public class GameResource {
     private final DB db;
+    private final GameExecutor gameExecutor = CivSingleton.instance().gameExecutor();
+    private final ReadExecutor readExecutor = CivSingleton.instance().readExecutor();
     @Context
     private UriInfo uriInfo;
 
@@ -87,7 +97,7 @@ public class GameResource {
 
     public GameResource(DB db) {
         this.db = db;
-        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
+        this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class, CatalogText.Stored.class);
     }
 
     /**
@@ -108,25 +118,25 @@ public class GameResource {
     }
 
     /**
-     * Returns a specific game
-     *
-     * @return
+     * Returns a specific game. The game is read by the {@link ReadExecutor}
      */
     @Path("/{pbfId}")
     @GET
-    @Timed
-    public Response getGame(@Auth(required = false) Player player, @PathParam("pbfId") String pbfId) {
+    public void getGame(@Auth(required = false) Player player, @PathParam("pbfId") String pbfId, @Suspended AsyncResponse response) {
         if (Strings.isNullOrEmpty(pbfId)) {
             log.error("pbfId is missing");
-            return Response.status(Response.Status.NOT_FOUND).build();
+            response.resume(Response.status(Response.Status.NOT_FOUND).build());
+            return;
         }
-        GameAction gameAction = new GameAction(db);
-        PBF pbf = gameAction.findPBFById(pbfId);
-        GameDTO gameDTO = gameAction.mapGameDTO(pbf, player);
+        readExecutor.resume(response, () -> {
+            GameAction gameAction = new GameAction(db);
+            PBF pbf = gameAction.findPBFById(pbfId);
+            GameDTO gameDTO = gameAction.mapGameDTO(pbf, player);
 
-        return Response.ok()
-                .entity(gameDTO)
-                .build();
+            return Response.ok()
+                    .entity(gameDTO)
+                    .build();
+        });
     }
 
     /**
@@ -197,7 +207,7 @@ public class GameResource {
 
         log.info("Ending game with id " + pbfId);
         GameAction gameAction = new GameAction(db);
-        gameAction.endGame(pbfId, player, winner);
+        gameExecutor.execute(pbfId, () -> gameAction.endGame(pbfId, player, winner));
     }
 
     @POST
@@ -208,7 +218,7 @@ public class GameResource {
         Preconditions.checkNotNull(player);
 
         GameAction gameAction = new GameAction(db);
-        gameAction.joinGame(pbfId, player, Optional.empty());
+        gameExecutor.execute(pbfId, () -> gameAction.joinGame(pbfId, player, Optional.empty()));
         return Response.noContent().build();
     }
 
@@ -224,7 +234,7 @@ public class GameResource {
         Preconditions.checkNotNull(player);
 
         GameAction gameAction = new GameAction(db);
-        boolean ok = gameAction.withdrawFromGame(pbfId, player.getId());
+        boolean ok = gameExecutor.execute(pbfId, () -> gameAction.withdrawFromGame(pbfId, player.getId()));
         if (ok) {
             return Response.noContent().build();
         }
@@ -247,9 +257,12 @@ public class GameResource {
     }
 
     @GET
-    @Timed
     @Path("/{pbfId}/publiclog")
-    public List<GameLogDTO> getPublicLog(@NotEmpty @PathParam("pbfId") String pbfId) {
+    public void getPublicLog(@NotEmpty @PathParam("pbfId") String pbfId, @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> publicLog(pbfId));
+    }
+
+    private List<GameLogDTO> publicLog(String pbfId) {
         GameLogAction gameLogAction = new GameLogAction(db);
         List<GameLog> allPublicLogs = gameLogAction.getGameLogs(pbfId);
         List<GameLogDTO> gameLogDTOs = new ArrayList<>();
@@ -263,9 +276,12 @@ public class GameResource {
     }
 
     @GET
-    @Timed
     @Path("/{pbfId}/privatelog")
-    public List<GameLogDTO> getPrivateLog(@NotEmpty @PathParam("pbfId") String pbfId, @Auth Player player) {
+    public void getPrivateLog(@NotEmpty @PathParam("pbfId") String pbfId, @Auth Player player, @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> privateLog(pbfId, player));
+    }
+
+    private List<GameLogDTO> privateLog(String pbfId, Player player) {
         GameLogAction gameLogAction = new GameLogAction(db);
 
         List<GameLog> allPrivateLogs = gameLogAction.getGameLogsBelongingToPlayer(pbfId, player.getUsername());
@@ -279,6 +295,38 @@ public class GameResource {
         return gameLogDTOs;
     }
 
+    /**
+     * A page of public logs, oldest first. Without a cursor the newest page is returned
+     *
+     * @param cursor    - The older or newer cursor of a page already returned
+     * @param direction - older or newer than the cursor
+     */
+    @GET
+    @Path("/{pbfId}/publiclog/page")
+    public void getPublicLogPage(@NotEmpty @PathParam("pbfId") String pbfId,
+                                 @QueryParam("cursor") String cursor,
+                                 @DefaultValue("50") @QueryParam("size") int size,
+                                 @DefaultValue("older") @QueryParam("direction") GameLogAction.Direction direction,
+                                 @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> new GameLogAction(db).getPublicLogPage(pbfId, cursor, size, direction));
+    }
+
+    /**
+     * A page of the private logs of the logged in player, oldest first. Without a cursor the newest page is returned
+     *
+     * @param cursor    - The older or newer cursor of a page already returned
+     * @param direction - older or newer than the cursor
+     */
+    @GET
+    @Path("/{pbfId}/privatelog/page")
+    public void getPrivateLogPage(@NotEmpty @PathParam("pbfId") String pbfId, @Auth Player player,
+                                  @QueryParam("cursor") String cursor,
+                                  @DefaultValue("50") @QueryParam("size") int size,
+                                  @DefaultValue("older") @QueryParam("direction") GameLogAction.Direction direction,
+                                  @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> new GameLogAction(db).getPrivateLogPage(pbfId, player.getUsername(), cursor, size, direction));
+    }
+
     /**
      * Returns a list of all undoes that are currently initiated and still not finished
      *
@@ -326,7 +374,7 @@ public class GameResource {
         GameLogAction gameLogAction = new GameLogAction(db);
         GameLog gameLog = gameLogAction.findGameLogById(gameLogId);
         UndoAction undoAction = new UndoAction(db);
-        undoAction.initiateUndo(gameLog, player.getId());
+        gameExecutor.execute(pbfId, () -> undoAction.initiateUndo(gameLog, player.getId()));
         return Response.ok().build();
     }
 
@@ -352,7 +400,7 @@ public class GameResource {
                     .build();
         }
         UndoAction undoAction = new UndoAction(db);
-        undoAction.vote(gameLog, player.getId(), true);
+        gameExecutor.execute(pbfId, () -> undoAction.vote(gameLog, player.getId(), true));
         return Response.ok().build();
     }
 
@@ -378,7 +426,7 @@ public class GameResource {
                     .build();
         }
         UndoAction undoAction = new UndoAction(db);
-        undoAction.vote(gameLog, player.getId(), false);
+        gameExecutor.execute(pbfId, () -> undoAction.vote(gameLog, player.getId(), false));
         return Response.ok().build();
     }
 
@@ -391,7 +439,7 @@ public class GameResource {
         Preconditions.checkNotNull(message);
 
         GameAction gameAction = new GameAction(db);
-        Chat chat = gameAction.chat(pbfId, message, player.getUsername());
+        Chat chat = gameExecutor.execute(pbfId, () -> gameAction.chat(pbfId, message, player.getUsername()));
         return Response.created(URI.create(chat.getId())).entity(gameAction.getChat(pbfId)).build();
     }
 
@@ -409,26 +457,28 @@ public class GameResource {
     }
 
     @GET
-    @Timed
     @Path("/{pbfId}/chat")
     @Produces(value = MediaType.APPLICATION_JSON)
-    public Response getChatList(@PathParam("pbfId") String pbfId) {
-        GameAction gameAction = new GameAction(db);
-        List<ChatDTO> chats = gameAction.getChat(pbfId);
-        return Response.ok().entity(chats).build();
+    public void getChatList(@PathParam("pbfId") String pbfId, @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> {
+            GameAction gameAction = new GameAction(db);
+            List<ChatDTO> chats = gameAction.getChat(pbfId);
+            return Response.ok().entity(chats).build();
+        });
     }
 
     /**
      * Gets public chat which is 1 week old and maximum 50 entries, sorted on created
      */
     @GET
-    @Timed
     @Path("/publicchat")
     @Produces(value = MediaType.APPLICATION_JSON)
-    public Response getPublicChatList() {
-        GameAction gameAction = new GameAction(db);
-        List<ChatDTO> chats = gameAction.getPublicChat();
-        return Response.ok().entity(chats).build();
+    public void getPublicChatList(@Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> {
+            GameAction gameAction = new GameAction(db);
+            List<ChatDTO> chats = gameAction.getPublicChat();
+            return Response.ok().entity(chats).build();
+        });
     }
 
     @POST
@@ -440,7 +490,7 @@ public class GameResource {
         Preconditions.checkNotNull(link);
 
         GameAction gameAction = new GameAction(db);
-        String linkId = gameAction.addMapLink(pbfId, link, player.getId());
+        String linkId = gameExecutor.execute(pbfId, () -> gameAction.addMapLink(pbfId, link, player.getId()));
         return Response.ok().entity(new MessageDTO(linkId)).build();
     }
 
@@ -453,13 +503,14 @@ public class GameResource {
         Preconditions.checkNotNull(link);
 
         GameAction gameAction = new GameAction(db);
-        String linkId = gameAction.addAssetLink(pbfId, link, player.getId());
+        String linkId = gameExecutor.execute(pbfId, () -> gameAction.addAssetLink(pbfId, link, player.getId()));
         return Response.ok().entity(new MessageDTO(linkId)).build();
     }
 
     @GET
     @Path("winners")
     @Produces(value = MediaType.APPLICATION_JSON)
+    @CacheControl(maxAge = 5, maxAgeUnit = TimeUnit.MINUTES)
     public List<WinnerDTO> getWinners() {
         GameAction gameAction = new GameAction(db);
         return gameAction.getWinners();
@@ -468,6 +519,7 @@ public class GameResource {
     @GET
     @Path("civhighscore")
     @Produces(value = MediaType.APPLICATION_JSON)
+    @CacheControl(maxAge = 5, maxAgeUnit = TimeUnit.MINUTES)
     public List<CivHighscoreDTO> getCivHighscore() {
         GameAction gameAction = new GameAction(db);
         return gameAction.getCivHighscore();
@@ -476,8 +528,10 @@ public class GameResource {
     @GET
     @Path("/{pbfId}/turns")
     @Produces(value = MediaType.APPLICATION_JSON)
-    public List<PlayerTurn> getAllPublicTurns(@PathParam("pbfId") String pbfId) {
-        TurnAction turnAction = new TurnAction(db);
-        return turnAction.getAllPublicTurns(pbfId);
+    public void getAllPublicTurns(@PathParam("pbfId") String pbfId, @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> {
+            TurnAction turnAction = new TurnAction(db);
+            return turnAction.getAllPublicTurns(pbfId);
+        });
     }
 }
@@ -25,6 +25,9 @@ import no.asgari.civilization.server.action.GameLogAction;
 import no.asgari.civilization.server.action.PlayerAction;
 import no.asgari.civilization.server.action.TurnAction;
 import no.asgari.civilization.server.action.UndoAction;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.application.GameExecutor;
+import no.asgari.civilization.server.application.ReadExecutor;
 import no.asgari.civilization.server.dto.AllTechsDTO;
 import no.asgari.civilization.server.dto.ItemDTO;
 import no.asgari.civilization.server.dto.MessageDTO;
@@ -46,6 +49,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -64,6 +69,8 @@ public class PlayerResource {
     private final DB db;
     private final PlayerAction playerAction;
     private final UndoAction undoAction;
+    private final GameExecutor gameExecutor = CivSingleton.instance().gameExecutor();
+    private final ReadExecutor readExecutor = CivSingleton.instance().readExecutor();
 
     @Context
     private UriInfo uriInfo;
@@ -88,7 +95,7 @@ public class PlayerResource {
     @Path("/tech/choose")
     @Timed
     public Response chooseTech(@Auth Player player, @PathParam("pbfId") String pbfId, @NotEmpty @QueryParam("name") String techName) {
-        playerAction.chooseTech(pbfId, techName, player.getId());
+        gameExecutor.execute(pbfId, () -> playerAction.chooseTech(pbfId, techName, player.getId()));
         return Response.noContent().build();
     }
 
@@ -106,7 +113,7 @@ public class PlayerResource {
     @Path("/socialpolicy/choose")
     @Timed
     public Response chooseSocialPolicy(@Auth Player player, @PathParam("pbfId") String pbfId, @NotEmpty @QueryParam("name") String socialpolicy) {
-        playerAction.chooseSocialPolicy(pbfId, socialpolicy, player.getId());
+        gameExecutor.execute(pbfId, () -> playerAction.chooseSocialPolicy(pbfId, socialpolicy, player.getId()));
         return Response.noContent().build();
     }
 
@@ -122,7 +129,7 @@ public class PlayerResource {
     @Path("/tech/remove")
     @Timed
     public Response removeTech(@Auth Player player, @PathParam("pbfId") String pbfId, @NotEmpty @QueryParam("name") String techName) {
-        boolean removedTech = !Strings.isNullOrEmpty(techName) && playerAction.removeTech(pbfId, techName, player.getId());
+        boolean removedTech = !Strings.isNullOrEmpty(techName) && gameExecutor.execute(pbfId, () -> playerAction.removeTech(pbfId, techName, player.getId()));
         if (removedTech)
             return Response.ok().build();
 
@@ -172,7 +179,7 @@ public class PlayerResource {
     @Path("/endturn")
     @Timed
     public Response endTurn(@Auth Player player, @PathParam("pbfId") String pbfId) {
-        boolean success = playerAction.endTurn(pbfId, player);
+        boolean success = gameExecutor.execute(pbfId, () -> playerAction.endTurn(pbfId, player));
 
         if (success) return Response.noContent().build();
 
@@ -180,24 +187,22 @@ public class PlayerResource {
     }
 
     /**
-     * This method checks whether it is the players turn
+     * This method checks whether it is the players turn. The clients poll it, so it is read by the {@link ReadExecutor}
      *
      * @param player
      * @param pbfId
-     * @return
      */
     @GET
     @Path("/yourturn")
-    @Timed
-    public boolean isYourTurn(@Auth Player player, @PathParam("pbfId") String pbfId) {
-        return playerAction.isYourTurn(pbfId, player.getId());
+    public void isYourTurn(@Auth Player player, @PathParam("pbfId") String pbfId, @Suspended AsyncResponse response) {
+        readExecutor.resume(response, () -> playerAction.isYourTurn(pbfId, player.getId()));
     }
 
     @PUT
     @Path("/item/reveal")
     @Timed
     public Response revealItem(@Auth Player player, @PathParam("pbfId") String pbfId, @Valid ItemDTO item) {
-        playerAction.revealItem(pbfId, player.getId(), item);
+        gameExecutor.execute(pbfId, () -> playerAction.revealItem(pbfId, player.getId(), item));
         return Response.ok().build();
     }
 
@@ -217,7 +222,7 @@ public class PlayerResource {
     public Response revealTech(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId, @NotEmpty @PathParam("gameLogId") String gameLogId) {
         GameLogAction gameLogAction = new GameLogAction(db);
         GameLog gameLog = gameLogAction.findGameLogById(gameLogId);
-        playerAction.revealTech(gameLog, pbfId, player.getId());
+        gameExecutor.execute(pbfId, () -> playerAction.revealTech(gameLog, pbfId, player.getId()));
         return Response.ok().build();
     }
 
@@ -226,7 +231,7 @@ public class PlayerResource {
     @Path("/item/discard")
     @Timed
     public Response discardItem(@Auth Player player, @PathParam("pbfId") String pbfId, @Valid ItemDTO item) {
-        playerAction.discardItem(pbfId, player.getId(), item);
+        gameExecutor.execute(pbfId, () -> playerAction.discardItem(pbfId, player.getId(), item));
         return Response.ok().build();
     }
 
@@ -234,7 +239,7 @@ public class PlayerResource {
     @Path("/item/backtodeck")
     @Timed
     public Response itemBackToDeck(@Auth Player player, @PathParam("pbfId") String pbfId, @Valid ItemDTO item) {
-        undoAction.playerPutsItemBackInDeck(pbfId, player.getId(), item);
+        gameExecutor.execute(pbfId, () -> undoAction.playerPutsItemBackInDeck(pbfId, player.getId(), item));
         return Response.ok().build();
     }
 
@@ -246,7 +251,7 @@ public class PlayerResource {
             log.error("You cannot trade with your self");
             return Response.status(Response.Status.FORBIDDEN).build();
         }
-        boolean result = playerAction.tradeToPlayer(item, player.getId());
+        boolean result = gameExecutor.execute(pbfId, () -> playerAction.tradeToPlayer(item, player.getId()));
         if (result) {
             return Response.ok().build();
         }
@@ -270,7 +275,7 @@ public class PlayerResource {
     public Response endBattle(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId, @NotEmpty @QueryParam("numOfUnits") int numberOfunits) {
         DrawAction drawAction = new DrawAction(db);
 
-        drawAction.endBattle(pbfId, player.getId());
+        gameExecutor.execute(pbfId, () -> drawAction.endBattle(pbfId, player.getId()));
         return Response.ok().build();
     }
 
@@ -296,7 +301,8 @@ public class PlayerResource {
     @Path("turn")
     public Set<PlayerTurn> getPlayersturns(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId) {
         TurnAction turnAction = new TurnAction(db);
-        return turnAction.getPlayersTurns(pbfId, player.getId());
+        //Creates the first turn if the player has none
+        return gameExecutor.execute(pbfId, () -> turnAction.getPlayersTurns(pbfId, player.getId()));
     }
 
     @PUT
@@ -305,17 +311,19 @@ public class PlayerResource {
                               @Valid TurnDTO turn) {
 
         TurnAction turnAction = new TurnAction(db);
-        if("SOT".equalsIgnoreCase(turn.getPhase())) {
-            turnAction.updateSOT(pbfId, player.getId(), turn);
-        } else if("Trade".equalsIgnoreCase(turn.getPhase())) {
-            turnAction.updateTrade(pbfId, player.getId(), turn);
-        } else if("CM".equalsIgnoreCase(turn.getPhase())) {
-            turnAction.updateCM(pbfId, player.getId(), turn);
-        } else if("Movement".equalsIgnoreCase(turn.getPhase())) {
-            turnAction.updateMovement(pbfId, player.getId(), turn);
-        } else if("Research".equalsIgnoreCase(turn.getPhase())) {
-            turnAction.updateResearch(pbfId, player.getId(), turn);
-        }
+        gameExecutor.execute(pbfId, () -> {
+            if("SOT".equalsIgnoreCase(turn.getPhase())) {
+                turnAction.updateSOT(pbfId, player.getId(), turn);
+            } else if("Trade".equalsIgnoreCase(turn.getPhase())) {
+                turnAction.updateTrade(pbfId, player.getId(), turn);
+            } else if("CM".equalsIgnoreCase(turn.getPhase())) {
+                turnAction.updateCM(pbfId, player.getId(), turn);
+            } else if("Movement".equalsIgnoreCase(turn.getPhase())) {
+                turnAction.updateMovement(pbfId, player.getId(), turn);
+            } else if("Research".equalsIgnoreCase(turn.getPhase())) {
+                turnAction.updateResearch(pbfId, player.getId(), turn);
+            }
+        });
 
         return Response.noContent().build();
     }
@@ -326,7 +334,7 @@ public class PlayerResource {
                                @Valid TurnDTO turn) {
 
         TurnAction turnAction = new TurnAction(db);
-        turnAction.lockOrUnlockTurn(pbfId, player.getId(), turn);
+        gameExecutor.execute(pbfId, () -> turnAction.lockOrUnlockTurn(pbfId, player.getId(), turn));
 
         return Response.noContent().build();
     }
@@ -341,7 +349,7 @@ public class PlayerResource {
     @PUT
     @Path("/note/save")
     public Response saveNote(@Auth Player player, @NotEmpty @PathParam("pbfId") String pbfId, MessageDTO messageDTO) {
-        playerAction.saveNote(pbfId, player.getId(), messageDTO);
+        gameExecutor.execute(pbfId, () -> playerAction.saveNote(pbfId, player.getId(), messageDTO));
         return Response.ok().build();
     }
 
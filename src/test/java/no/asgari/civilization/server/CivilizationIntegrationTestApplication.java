@@ -24,10 +24,20 @@ import no.asgari.civilization.server.application.CivAuthenticator;
 import no.asgari.civilization.server.application.CivSingleton;
 import no.asgari.civilization.server.application.MongoManaged;
 import no.asgari.civilization.server.model.Chat;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.GameEvent;
 import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PbfSnapshot;
+import no.asgari.civilization.server.model.PbfSummary;
+import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.Player;
 import no.asgari.civilization.server.model.Playerhand;
+import no.asgari.civilization.server.model.Stat;
+import no.asgari.civilization.server.mongodb.DeckRepository;
+import no.asgari.civilization.server.mongodb.IndexManager;
+import no.asgari.civilization.server.mongodb.PbfSummaryRepository;
+import no.asgari.civilization.server.mongodb.StatsRepository;
 import no.asgari.civilization.server.resource.AdminResource;
 import no.asgari.civilization.server.resource.AuthResource;
 import no.asgari.civilization.server.resource.DrawResource;
@@ -39,6 +49,8 @@ import org.mongojack.JacksonDBCollection;
 import org.mongojack.WriteResult;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 @Log4j
@@ -50,6 +62,7 @@ public class CivilizationIntegrationTestApplication extends Application<Civiliza
     public JacksonDBCollection<GameLog, String> gameLogCollection;
     public JacksonDBCollection<Player, String> playerCollection;
     public JacksonDBCollection<Chat, String> chatCollection;
+    public JacksonDBCollection<Deck, String> deckCollection;
     public String pbfId;
     public String playerId;
     public String pbfId_2;
@@ -74,15 +87,22 @@ public class CivilizationIntegrationTestApplication extends Application<Civiliza
         this.pbfCollection = JacksonDBCollection.wrap(db.getCollection(PBF.COL_NAME), PBF.class, String.class);
         this.gameLogCollection = JacksonDBCollection.wrap(db.getCollection(GameLog.COL_NAME), GameLog.class, String.class);
         this.chatCollection = JacksonDBCollection.wrap(db.getCollection(Chat.COL_NAME), Chat.class, String.class);
+        this.deckCollection = JacksonDBCollection.wrap(db.getCollection(Deck.COL_NAME), Deck.class, String.class);
 
         playerCollection.drop();
         pbfCollection.drop();
         gameLogCollection.drop();
         chatCollection.drop();
+        deckCollection.drop();
+        db.getCollection(PbfSummary.COL_NAME).drop();
+        db.getCollection(Stat.COL_NAME).drop();
+        db.getCollection(GameEvent.COL_NAME).drop();
+        db.getCollection(PbfSnapshot.COL_NAME).drop();
 
         createIndexForPlayer(playerCollection);
         createUsernameCache(playerCollection);
         createIndexForPBF(pbfCollection);
+        new IndexManager(db).reconcile();
 //        createItemCache();
 
         //Resources
@@ -111,6 +131,8 @@ public class CivilizationIntegrationTestApplication extends Application<Civiliza
         createNewPBFGame();
         createAnotherPBF();
         createEmptyPBF();
+        new PbfSummaryRepository(db).rebuild();
+        new StatsRepository(db).rebuild();
 
         playerId = playerCollection.find().toArray().stream()
                 .filter(p -> p.getUsername().equals("cash1981"))
@@ -165,6 +187,7 @@ public class CivilizationIntegrationTestApplication extends Application<Civiliza
         PBF pbf = pbfTestAction.createNewGame("First civ game");
         WriteResult<PBF, String> writeResult = pbfCollection.insert(pbf);
         pbfId = writeResult.getSavedId();
+        new DeckRepository(db).create(pbfId, pbfTestAction.createDeck());
 
         PBF oneById = pbfCollection.findOneById(pbfId);
         Playerhand cash1981 = createPlayerhand(createPlayer("cash1981", pbfId));
@@ -182,6 +205,7 @@ public class CivilizationIntegrationTestApplication extends Application<Civiliza
         PBF pbf = pbfTestAction.createNewGame("Second civ game");
         WriteResult<PBF, String> writeResult = pbfCollection.insert(pbf);
         pbfId_2 = writeResult.getSavedId();
+        new DeckRepository(db).create(pbfId_2, pbfTestAction.createDeck());
 
         PBF oneById = pbfCollection.findOneById(pbfId_2);
         Playerhand morthai = createPlayerhand(createPlayer("Morthai", pbfId_2));
@@ -200,6 +224,22 @@ public class CivilizationIntegrationTestApplication extends Application<Civiliza
         PBF pbf = pbfTestAction.createNewGame("Third civ game");
         WriteResult<PBF, String> writeResult = pbfCollection.insert(pbf);
         pbfId_3 = writeResult.getSavedId();
+        new DeckRepository(db).create(pbfId_3, pbfTestAction.createDeck());
+    }
+
+    /**
+     * All the items in the decks of the game which can be drawn
+     */
+    public List<Item> deckItems(String pbfId) {
+        return deckItems(pbfId, SheetName.SHEETS);
+    }
+
+    public List<Item> deckItems(String pbfId, Set<SheetName> sheetNames) {
+        return new DeckRepository(db).findItems(pbfId, sheetNames);
+    }
+
+    public List<Item> discardedItems(String pbfId) {
+        return new DeckRepository(db).findDiscarded(pbfId);
     }
 
     private Playerhand createPlayerhand(Player player) {
@@ -48,20 +48,20 @@ public class DrawActionTest extends AbstractCivilizationTest {
 
         PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
         assertThat(pbf).isNotNull();
-        assertThat(pbf.getItems()).doesNotContain(gameLog.getDraw().getItem());
+        assertThat(getApp().deckItems(getApp().pbfId)).doesNotContain(gameLog.getDraw().getItem());
     }
 
     @Test
     public void drawAircraftAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.AIRCRAFT)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.AIRCRAFT);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.AIRCRAFT)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Aircraft.class);
@@ -71,13 +71,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawArtilleryAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.ARTILLERY)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.ARTILLERY);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.ARTILLERY)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Artillery.class);
@@ -91,13 +91,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawCitystateAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CITY_STATES)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.CITY_STATES);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CITY_STATES)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Citystate.class);
@@ -107,13 +107,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawCulture1AndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CULTURE_1)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.CULTURE_1);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CULTURE_1)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(CultureI.class);
@@ -123,13 +123,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawCulture2AndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CULTURE_2)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.CULTURE_2);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CULTURE_2)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(CultureII.class);
@@ -139,13 +139,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawCulture3AndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CULTURE_3)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.CULTURE_3);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.CULTURE_3)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(CultureIII.class);
@@ -155,13 +155,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawGPAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.GREAT_PERSON)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.GREAT_PERSON);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.GREAT_PERSON)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(GreatPerson.class);
@@ -171,13 +171,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawHutAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long hut = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long hut = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.HUTS)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.HUTS);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(hut - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(hut - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.HUTS)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Hut.class);
@@ -187,13 +187,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawInfantryAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long infantries = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long infantries = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.INFANTRY)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.INFANTRY);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(infantries - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(infantries - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.INFANTRY)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Infantry.class);
@@ -203,13 +203,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawMountedAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.MOUNTED)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.MOUNTED);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.MOUNTED)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Mounted.class);
@@ -219,13 +219,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawTileAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.TILES)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.TILES);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.TILES)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Tile.class);
@@ -235,13 +235,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawVillageAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.VILLAGES)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.VILLAGES);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.VILLAGES)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Village.class);
@@ -251,13 +251,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawAncientWonderAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.ANCIENT_WONDERS)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.ANCIENT_WONDERS);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.ANCIENT_WONDERS)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Wonder.class);
@@ -267,13 +267,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawMedievalWonderAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.MEDIEVAL_WONDERS)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.MEDIEVAL_WONDERS);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.MEDIEVAL_WONDERS)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Wonder.class);
@@ -283,13 +283,13 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void drawModernWonderAndMakeSureItsNoLongerInPBFCollection() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.MODERN_WONDERS)
                 .count();
 
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.MODERN_WONDERS);
         assertTrue(gameLogOptional.isPresent());
-        assertEquals(aircrafts - 1, getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        assertEquals(aircrafts - 1, getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.MODERN_WONDERS)
                 .count());
         assertThat(gameLogOptional.get().getDraw().getItem()).isExactlyInstanceOf(Wonder.class);
@@ -307,7 +307,7 @@ public class DrawActionTest extends AbstractCivilizationTest {
     public void makeSureSystemCorrectlyThrowsExceptionWhenNothingToShuffle() throws Exception {
         DrawAction drawAction = new DrawAction(getApp().db);
         //Before draw
-        long aircrafts = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long aircrafts = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.AIRCRAFT)
                 .count();
 
@@ -316,7 +316,7 @@ public class DrawActionTest extends AbstractCivilizationTest {
             assertThat(draw.isPresent());
         }
 
-        long newCount = getApp().pbfCollection.findOneById(getApp().pbfId).getItems().parallelStream()
+        long newCount = getApp().deckItems(getApp().pbfId).parallelStream()
                 .filter(p -> p.getSheetName() == SheetName.AIRCRAFT)
                 .count();
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.action;
+
+import no.asgari.civilization.server.model.GameLog;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SuppressWarnings("unchecked")
+public class GameLogBatchTest {
+    private final JacksonDBCollection<GameLog, String> collection = mock(JacksonDBCollection.class);
+
+    @After
+    public void closeLeftOverBatch() {
+        GameLogBatch.current().ifPresent(GameLogBatch::close);
+    }
+
+    @Test
+    public void logsAreInsertedOnceWhenClosed() {
+        GameLog first = log("first");
+        try (GameLogBatch batch = GameLogBatch.open(collection)) {
+            batch.add(first);
+            batch.add(log("second"));
+            batch.add(log("third"));
+            verify(collection, never()).insert(anyListOf(GameLog.class));
+            assertThat(first.getId()).isNull();
+        }
+
+        ArgumentCaptor<List> inserted = ArgumentCaptor.forClass(List.class);
+        verify(collection, times(1)).insert(inserted.capture());
+        assertThat(inserted.getValue()).hasSize(3);
+        assertThat(((GameLog) inserted.getValue().get(0)).getId()).isEqualTo(first.getId()).isNotNull();
+        assertThat(GameLogBatch.current().isPresent()).isFalse();
+    }
+
+    @Test
+    public void nestedBatchJoinsTheOuter() {
+        try (GameLogBatch outer = GameLogBatch.open(collection)) {
+            outer.add(log("outer"));
+            try (GameLogBatch inner = GameLogBatch.open(collection)) {
+                assertThat(inner).isSameAs(outer);
+                inner.add(log("inner"));
+            }
+            verify(collection, never()).insert(anyListOf(GameLog.class));
+        }
+
+        ArgumentCaptor<List> inserted = ArgumentCaptor.forClass(List.class);
+        verify(collection, times(1)).insert(inserted.capture());
+        assertThat(inserted.getValue()).hasSize(2);
+    }
+
+    @Test
+    public void emptyBatchWritesNothing() {
+        try (GameLogBatch ignored = GameLogBatch.open(collection)) {
+            assertThat(GameLogBatch.current().isPresent()).isTrue();
+        }
+        verify(collection, never()).insert(anyListOf(GameLog.class));
+    }
+
+    private static GameLog log(String message) {
+        GameLog gameLog = new GameLog();
+        gameLog.setPbfId("pbf");
+        gameLog.setUsername("cash1981");
+        gameLog.setPublicLog(message);
+        return gameLog;
+    }
+}
@@ -2,14 +2,17 @@ package no.asgari.civilization.server.action;
 
 import no.asgari.civilization.server.excel.ItemReader;
 import no.asgari.civilization.server.model.GameType;
+import no.asgari.civilization.server.model.Item;
 import no.asgari.civilization.server.model.PBF;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PBFTestAction {
 
     /**
-     * Will create a new game and read the content from the Excel sheet, and shuffle the content
+     * Will create a new game. The items of the game are created with {@link #createDeck()}
      *
      * @return - A newly created PBF
      * @throws IOException
@@ -19,32 +22,41 @@ public class PBFTestAction {
         pbf.setNumOfPlayers(4);
         pbf.setName(name);
         pbf.setType(GameType.WAW);
+        return pbf;
+    }
 
+    /**
+     * Will read the content from the Excel sheet, and shuffle the content
+     *
+     * @return - All the items of a new game
+     */
+    public List<Item> createDeck() {
         ItemReader items = new ItemReader();
         try {
             items.readItemsFromExcel(GameType.WAW);
         } catch (IOException e) {
         }
 
-        pbf.getItems().addAll(items.mountedList);
-        pbf.getItems().addAll(items.aircraftList);
-        pbf.getItems().addAll(items.artilleryList);
-        pbf.getItems().addAll(items.infantryList);
+        List<Item> deck = new ArrayList<>();
+        deck.addAll(items.mountedList);
+        deck.addAll(items.aircraftList);
+        deck.addAll(items.artilleryList);
+        deck.addAll(items.infantryList);
 
-        pbf.getItems().addAll(items.shuffledCivs);
-        pbf.getItems().addAll(items.shuffledCultureI);
-        pbf.getItems().addAll(items.shuffledCultureII);
-        pbf.getItems().addAll(items.shuffledCultureIII);
-        pbf.getItems().addAll(items.shuffledGPs);
-        pbf.getItems().addAll(items.shuffledHuts);
-        pbf.getItems().addAll(items.shuffledVillages);
-        pbf.getItems().addAll(items.shuffledTiles);
-        pbf.getItems().addAll(items.shuffledCityStates);
-        pbf.getItems().addAll(items.ancientWonders);
-        pbf.getItems().addAll(items.medievalWonders);
-        pbf.getItems().addAll(items.modernWonders);
-        pbf.getTechs().addAll(items.allTechs);
-        pbf.getSocialPolicies().addAll(items.socialPolicies);
-        return pbf;
+        deck.addAll(items.shuffledCivs);
+        deck.addAll(items.shuffledCultureI);
+        deck.addAll(items.shuffledCultureII);
+        deck.addAll(items.shuffledCultureIII);
+        deck.addAll(items.shuffledGPs);
+        deck.addAll(items.shuffledHuts);
+        deck.addAll(items.shuffledVillages);
+        deck.addAll(items.shuffledTiles);
+        deck.addAll(items.shuffledCityStates);
+        deck.addAll(items.ancientWonders);
+        deck.addAll(items.medievalWonders);
+        deck.addAll(items.modernWonders);
+        deck.addAll(items.allTechs);
+        deck.addAll(items.socialPolicies);
+        return deck;
     }
 }
@@ -1,9 +1,7 @@
 package no.asgari.civilization.server.action;
 
 import no.asgari.civilization.server.dto.TurnDTO;
-import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.PlayerTurn;
-import no.asgari.civilization.server.model.Playerhand;
 import no.asgari.civilization.server.mongodb.AbstractCivilizationTest;
 import org.junit.Test;
 
@@ -27,11 +25,8 @@ public class TurnActionTest extends AbstractCivilizationTest {
         TurnAction turnAction = new TurnAction(getApp().db);
         turnAction.updateSOT(getApp().pbfId, getApp().playerId, dto);
 
-        PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-        assertFalse(pbf.getPublicTurns().isEmpty());
-
-        Playerhand playerhand = pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(getApp().playerId)).findFirst().get();
-        assertEquals(dto.getOrder(), playerhand.getPlayerTurns().iterator().next().getSot());
+        assertFalse(turnAction.getAllPublicTurns(getApp().pbfId).isEmpty());
+        assertEquals(dto.getOrder(), turnAction.getPlayersTurns(getApp().pbfId, getApp().playerId).iterator().next().getSot());
     }
 
     @Test
@@ -45,10 +40,7 @@ public class TurnActionTest extends AbstractCivilizationTest {
         TurnAction turnAction = new TurnAction(getApp().db);
         turnAction.updateTrade(getApp().pbfId, getApp().playerId, dto);
 
-        PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-
-        Playerhand playerhand = pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(getApp().playerId)).findFirst().get();
-        assertEquals(dto.getOrder(), playerhand.getPlayerTurns().iterator().next().getTrade());
+        assertEquals(dto.getOrder(), turnAction.getPlayersTurns(getApp().pbfId, getApp().playerId).iterator().next().getTrade());
     }
 
     @Test
@@ -62,10 +54,7 @@ public class TurnActionTest extends AbstractCivilizationTest {
         TurnAction turnAction = new TurnAction(getApp().db);
         turnAction.updateCM(getApp().pbfId, getApp().playerId, dto);
 
-        PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-
-        Playerhand playerhand = pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(getApp().playerId)).findFirst().get();
-        assertEquals(dto.getOrder(), playerhand.getPlayerTurns().iterator().next().getCm());
+        assertEquals(dto.getOrder(), turnAction.getPlayersTurns(getApp().pbfId, getApp().playerId).iterator().next().getCm());
     }
 
     @Test
@@ -79,10 +68,7 @@ public class TurnActionTest extends AbstractCivilizationTest {
         TurnAction turnAction = new TurnAction(getApp().db);
         turnAction.updateMovement(getApp().pbfId, getApp().playerId, dto);
 
-        PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-
-        Playerhand playerhand = pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(getApp().playerId)).findFirst().get();
-        assertEquals(dto.getOrder(), playerhand.getPlayerTurns().iterator().next().getMovement());
+        assertEquals(dto.getOrder(), turnAction.getPlayersTurns(getApp().pbfId, getApp().playerId).iterator().next().getMovement());
     }
 
     @Test
@@ -96,10 +82,7 @@ public class TurnActionTest extends AbstractCivilizationTest {
         TurnAction turnAction = new TurnAction(getApp().db);
         turnAction.updateResearch(getApp().pbfId, getApp().playerId, dto);
 
-        PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-
-        Playerhand playerhand = pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(getApp().playerId)).findFirst().get();
-        assertEquals(dto.getOrder(), playerhand.getPlayerTurns().iterator().next().getResearch());
+        assertEquals(dto.getOrder(), turnAction.getPlayersTurns(getApp().pbfId, getApp().playerId).iterator().next().getResearch());
     }
 
 }
@@ -39,7 +39,7 @@ public class UndoActionTest extends AbstractCivilizationTest {
         //Pick one item
         PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
         assertThat(pbf).isNotNull();
-        assertThat(pbf.getItems()).isNotEmpty();
+        assertThat(getApp().deckItems(getApp().pbfId)).isNotEmpty();
 
         DrawAction drawAction = new DrawAction(getApp().db);
         Optional<GameLog> gameLogOptional = drawAction.draw(getApp().pbfId, getApp().playerId, SheetName.CIV);
@@ -87,7 +87,7 @@ public class UndoActionTest extends AbstractCivilizationTest {
         }
 
         PBF pbf = getApp().pbfCollection.findOneById(gameLog.getPbfId());
-        assertFalse(pbf.getItems().contains(gameLog.getDraw().getItem()));
+        assertFalse(getApp().deckItems(gameLog.getPbfId()).contains(gameLog.getDraw().getItem()));
         pbf = getApp().pbfCollection.findOneById(gameLog.getPbfId());
 
         List<Item> items = pbf.getPlayers().stream().filter(p -> p.getPlayerId().equals(getApp().playerId)).findFirst().get().getItems();
@@ -106,8 +106,8 @@ public class UndoActionTest extends AbstractCivilizationTest {
         final Spreadsheet item = gameLog.getDraw().getItem();
         assertThat(item).isInstanceOf(Civ.class);
 
-        //check that its in the pbf
-        assertTrue(getApp().pbfCollection.findOneById(gameLog.getPbfId()).getItems().contains(item));
+        //check that its in the deck
+        assertTrue(getApp().deckItems(gameLog.getPbfId()).contains(item));
     }
 
     @Test
@@ -115,7 +115,7 @@ public class UndoActionTest extends AbstractCivilizationTest {
         //Pick one item
         PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
         assertThat(pbf).isNotNull();
-        assertThat(pbf.getItems()).isNotEmpty();
+        assertThat(getApp().deckItems(getApp().pbfId)).isNotEmpty();
 
         PlayerAction playerAction = new PlayerAction(getApp().db);
         GameLog gameLog = playerAction.chooseTech(getApp().pbfId, "Navy", getApp().playerId);
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.MetricRegistry;
+import no.asgari.civilization.server.mongodb.UnitOfWork;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class GameExecutorTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final GameExecutor gameExecutor = new GameExecutor(4, metrics);
+
+    @After
+    public void stop() throws Exception {
+        gameExecutor.stop();
+    }
+
+    @Test
+    public void commandsForSameGameNeverRunAtTheSameTime() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Void>> futures = IntStream.range(0, 50)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> gameExecutor.execute("game", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(1);
+                    running.decrementAndGet();
+                })))
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get(10, TimeUnit.SECONDS);
+
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(metrics.timer("no.asgari.civilization.server.application.GameExecutor.game.service-time").getCount()).isEqualTo(50);
+    }
+
+    @Test
+    public void commandsCanCallOtherCommandsForSameGame() throws Exception {
+        String result = gameExecutor.execute("game", () -> gameExecutor.execute("game", () -> "nested"));
+        assertThat(result).isEqualTo("nested");
+    }
+
+    @Test
+    public void commandsForOtherGamesRunInTheirOwnMailbox() throws Exception {
+        boolean otherThread = gameExecutor.execute("first", () -> Thread.currentThread() != gameExecutor.execute("second", Thread::currentThread));
+        assertThat(otherThread).isTrue();
+    }
+
+    @Test
+    public void afterCommitActionsOnlyRunWhenTheCommandSucceeds() throws Exception {
+        AtomicInteger actions = new AtomicInteger();
+        try {
+            gameExecutor.execute("game", () -> {
+                UnitOfWork.afterCommit(actions::incrementAndGet);
+                throw new WebApplicationException(Response.Status.CONFLICT);
+            });
+            fail("Should have thrown");
+        } catch (WebApplicationException e) {
+            assertThat(actions.get()).isEqualTo(0);
+        }
+
+        gameExecutor.execute("game", () -> UnitOfWork.afterCommit(actions::incrementAndGet));
+        assertThat(actions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void exceptionIsThrownToCallerAndOtherCommandsStillRun() throws Exception {
+        try {
+            gameExecutor.execute("game", () -> {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            });
+            fail("Should have thrown");
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(Response.Status.FORBIDDEN.getStatusCode());
+        }
+
+        assertThat(gameExecutor.execute("game", () -> 42)).isEqualTo(42);
+    }
+
+    @Test
+    public void gamesRunInParallel() throws Exception {
+        CountDownLatch firstIsRunning = new CountDownLatch(1);
+        CountDownLatch secondHasRun = new CountDownLatch(1);
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> gameExecutor.execute("first", () -> {
+            firstIsRunning.countDown();
+            return await(secondHasRun);
+        }));
+
+        assertThat(firstIsRunning.await(5, TimeUnit.SECONDS)).isTrue();
+        gameExecutor.execute("second", secondHasRun::countDown);
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.management.ConnectionPoolStatisticsMBean;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MongoPoolMetricsTest {
+    private final MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void gaugesAreSummedOverThePools() throws Exception {
+        register("host1", new Pool(100, 100, 7));
+        register("host2", new Pool(100, 20, 0));
+        new MongoPoolMetrics(mBeanServer).register(metrics);
+
+        assertThat(gauge("checked-out")).isEqualTo(120);
+        assertThat(gauge("wait-queue-size")).isEqualTo(7);
+        assertThat(gauge("max-size")).isEqualTo(200);
+        assertThat(gauge("utilization")).isEqualTo(0.6);
+    }
+
+    @Test
+    public void noPoolsIsZero() {
+        new MongoPoolMetrics(mBeanServer).register(metrics);
+
+        assertThat(gauge("checked-out")).isEqualTo(0);
+    }
+
+    private void register(String host, Pool pool) throws Exception {
+        mBeanServer.registerMBean(new StandardMBean(pool, ConnectionPoolStatisticsMBean.class),
+                new ObjectName("org.mongodb.driver:type=ConnectionPool,clusterId=1,host=" + host + ",port=27017"));
+    }
+
+    private Object gauge(String name) {
+        Gauge<?> gauge = metrics.getGauges().get(MetricRegistry.name(MongoPoolMetrics.class, name));
+        return gauge.getValue();
+    }
+
+    private static final class Pool implements ConnectionPoolStatisticsMBean {
+        private final int maxSize;
+        private final int checkedOut;
+        private final int waitQueueSize;
+
+        private Pool(int maxSize, int checkedOut, int waitQueueSize) {
+            this.maxSize = maxSize;
+            this.checkedOut = checkedOut;
+            this.waitQueueSize = waitQueueSize;
+        }
+
+        @Override
+        public String getHost() {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort() {
+            return 27017;
+        }
+
+        @Override
+        public int getMinSize() {
+            return 0;
+        }
+
+        @Override
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        @Override
+        public int getSize() {
+            return checkedOut;
+        }
+
+        @Override
+        public int getCheckedOutCount() {
+            return checkedOut;
+        }
+
+        @Override
+        public int getWaitQueueSize() {
+            return waitQueueSize;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.application;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class ReadExecutorTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private ReadExecutor readExecutor;
+
+    @After
+    public void stop() throws Exception {
+        readExecutor.stop();
+    }
+
+    @Test
+    public void resumesWithTheResultOfTheRead() throws Exception {
+        readExecutor = new ReadExecutor(new ReadExecutorConfiguration(), metrics);
+        AsyncResponse response = mock(AsyncResponse.class);
+
+        readExecutor.resume(response, () -> "game");
+
+        verify(response, timeout(5000)).resume("game");
+    }
+
+    @Test
+    public void resumesWithTheExceptionOfTheRead() throws Exception {
+        readExecutor = new ReadExecutor(new ReadExecutorConfiguration(), metrics);
+        AsyncResponse response = mock(AsyncResponse.class);
+        IllegalStateException exception = new IllegalStateException();
+
+        readExecutor.resume(response, () -> {
+            throw exception;
+        });
+
+        verify(response, timeout(5000)).resume(exception);
+    }
+
+    @Test
+    public void rejectsReadsWhenTheQueueIsFull() throws Exception {
+        ReadExecutorConfiguration configuration = new ReadExecutorConfiguration();
+        configuration.threads = 1;
+        configuration.queueCapacity = 1;
+        readExecutor = new ReadExecutor(configuration, metrics);
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        readExecutor.resume(mock(AsyncResponse.class), () -> await(blocked));
+        readExecutor.resume(mock(AsyncResponse.class), () -> await(blocked));
+        //The first read may still be in the queue, so one more is needed to be sure it is full
+        readExecutor.resume(mock(AsyncResponse.class), () -> await(blocked));
+        AsyncResponse rejected = mock(AsyncResponse.class);
+        readExecutor.resume(rejected, () -> "never");
+        blocked.countDown();
+
+        ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(rejected).resume(captor.capture());
+        assertThat(captor.getValue().getStatus()).isEqualTo(503);
+        assertThat(metrics.meter("no.asgari.civilization.server.application.ReadExecutor.rejected").getCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
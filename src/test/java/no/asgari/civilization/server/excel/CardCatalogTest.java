@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.excel;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import no.asgari.civilization.server.SheetName;
+import no.asgari.civilization.server.model.CatalogText;
+import no.asgari.civilization.server.model.Civ;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.GameType;
+import no.asgari.civilization.server.model.Item;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.Playerhand;
+import no.asgari.civilization.server.model.SocialPolicy;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.mongojack.JacksonDBCollection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class CardCatalogTest {
+
+    @Test
+    public void storedPbfHasNoCatalogText() throws IOException {
+        DBObject stored = collection(PBF.class).convertToDbObject(pbf());
+
+        DBObject player = (DBObject) ((List<?>) stored.get("players")).get(0);
+        assertThat(((DBObject) player.get("civilization")).keySet()).doesNotContain("description", "type", "image");
+        for (Object wrapper : (List<?>) player.get("items")) {
+            DBObject item = (DBObject) ((DBObject) wrapper).get(((DBObject) wrapper).keySet().iterator().next());
+            assertThat(item.keySet()).contains("name", "sheetName", "itemNumber").doesNotContain("description", "image");
+        }
+        DBObject policy = (DBObject) ((DBObject) ((List<?>) player.get("socialPolicies")).get(0)).get("socialpolicy");
+        assertThat(policy.keySet()).doesNotContain("description", "flipside");
+    }
+
+    @Test
+    public void readPbfHasTheTextFromTheCatalog() throws IOException {
+        JacksonDBCollection<PBF, String> collection = collection(PBF.class);
+        PBF pbf = pbf();
+
+        Playerhand read = collection.convertFromDbObject(collection.convertToDbObject(pbf)).getPlayers().get(0);
+        Playerhand written = pbf.getPlayers().get(0);
+
+        assertThat(read.getCivilization().getDescription()).isNotEmpty().isEqualTo(written.getCivilization().getDescription());
+        assertThat(read.getCivilization()).isEqualTo(written.getCivilization());
+        assertThat(descriptions(read.getItems())).isEqualTo(descriptions(written.getItems()));
+        assertThat(read.getItems()).isEqualTo(written.getItems());
+        assertThat(descriptions(read.getTechsChosen())).isEqualTo(descriptions(written.getTechsChosen()));
+        assertThat(read.getSocialPolicies().get(0).getFlipside()).isEqualTo(written.getSocialPolicies().get(0).getFlipside());
+    }
+
+    @Test
+    public void readDeckHasTheTextFromTheCatalog() throws IOException {
+        JacksonDBCollection<Deck, String> collection = collection(Deck.class);
+        ItemReader itemReader = itemReader();
+        Deck deck = new Deck(new ObjectId().toString(), SheetName.GREAT_PERSON);
+        deck.getItems().addAll(itemReader.shuffledGPs);
+        deck.getDiscarded().add(itemReader.shuffledHuts.get(0));
+
+        Deck read = collection.convertFromDbObject(collection.convertToDbObject(deck));
+
+        assertThat(descriptions(read.getItems())).isEqualTo(descriptions(deck.getItems()));
+        assertThat(read.getItems().get(0).getType()).isEqualTo(deck.getItems().get(0).getType());
+        assertThat(descriptions(read.getDiscarded())).isEqualTo(descriptions(deck.getDiscarded()));
+    }
+
+    @Test
+    public void cardsWhichAreNotInTheCatalogAreLeftAsTheyAre() {
+        Civ civ = new Civ("Atlantis");
+        civ.setDescription("Sunk");
+
+        assertThat(CardCatalog.fill(civ).getDescription()).isEqualTo("Sunk");
+        assertThat(CardCatalog.of(GameType.BASE).size()).isZero();
+        assertThat(CardCatalog.of(GameType.WAW).size()).isPositive();
+    }
+
+    private static <T> JacksonDBCollection<T, String> collection(Class<T> type) {
+        return JacksonDBCollection.wrap(mock(DBCollection.class), type, String.class, CatalogText.Stored.class);
+    }
+
+    private static List<String> descriptions(Iterable<? extends Item> items) {
+        List<String> descriptions = new ArrayList<>();
+        items.forEach(item -> descriptions.add(item.getDescription()));
+        return descriptions;
+    }
+
+    private static ItemReader itemReader() throws IOException {
+        ItemReader itemReader = new ItemReader();
+        itemReader.readItemsFromExcel(GameType.WAW);
+        return itemReader;
+    }
+
+    private static PBF pbf() throws IOException {
+        ItemReader itemReader = itemReader();
+        Playerhand playerhand = new Playerhand();
+        playerhand.setUsername("player");
+        playerhand.setPlayerId(new ObjectId().toString());
+        playerhand.setCivilization(itemReader.shuffledCivs.get(0));
+        playerhand.getItems().addAll(itemReader.shuffledCultureI.subList(0, 3));
+        playerhand.getItems().addAll(itemReader.shuffledGPs.subList(0, 3));
+        playerhand.getItems().add(itemReader.shuffledCityStates.get(0));
+        playerhand.getItems().add(itemReader.ancientWonders.get(0));
+        playerhand.getItems().add(itemReader.infantryList.get(0));
+        playerhand.getTechsChosen().addAll(itemReader.allTechs.subList(0, 5));
+        SocialPolicy socialPolicy = itemReader.socialPolicies.get(0);
+        playerhand.getSocialPolicies().add(socialPolicy);
+
+        PBF pbf = new PBF();
+        pbf.setId(new ObjectId().toString());
+        pbf.setType(GameType.WAW);
+        pbf.getPlayers().add(playerhand);
+        return pbf;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.misc;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class EloRatingTest {
+
+    @Test
+    public void equalPlayersInADuel() {
+        Map<String, Double> ratings = new HashMap<>();
+        ratings.put("winner", EloRating.INITIAL);
+        ratings.put("loser", EloRating.INITIAL);
+
+        Map<String, Double> changes = EloRating.changes(ratings, "winner");
+
+        assertThat(changes.get("winner")).isEqualTo(16.0, within(0.0001));
+        assertThat(changes.get("loser")).isEqualTo(-16.0, within(0.0001));
+    }
+
+    @Test
+    public void ratingIsNeitherMadeNorLost() {
+        Map<String, Double> ratings = new HashMap<>();
+        ratings.put("a", 1500.0);
+        ratings.put("b", 1620.0);
+        ratings.put("c", 1410.0);
+        ratings.put("d", 1700.0);
+
+        Map<String, Double> changes = EloRating.changes(ratings, "c");
+
+        assertThat(changes.values().stream().mapToDouble(Double::doubleValue).sum()).isEqualTo(0.0, within(0.0001));
+        assertThat(changes.get("c")).isPositive();
+        assertThat(changes.get("d")).isLessThan(changes.get("a"));
+    }
+
+    @Test
+    public void upsetGivesMorePoints() {
+        Map<String, Double> favourite = new HashMap<>();
+        favourite.put("strong", 1800.0);
+        favourite.put("weak", 1400.0);
+
+        double expectedWin = EloRating.changes(favourite, "strong").get("strong");
+        double upset = EloRating.changes(favourite, "weak").get("weak");
+
+        assertThat(upset).isGreaterThan(expectedWin);
+    }
+
+    @Test
+    public void noChangesWithoutAWinnerInTheGame() {
+        Map<String, Double> ratings = new HashMap<>();
+        ratings.put("a", 1500.0);
+        ratings.put("b", 1500.0);
+
+        assertThat(EloRating.changes(ratings, "someone else").values()).containsOnly(0.0);
+    }
+}
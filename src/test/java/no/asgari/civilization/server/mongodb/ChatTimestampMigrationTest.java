@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import no.asgari.civilization.server.application.CivSingleton;
+import no.asgari.civilization.server.model.Chat;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChatTimestampMigrationTest {
+
+    private final DB db = mock(DB.class);
+    private final DBCollection migrationCollection = mock(DBCollection.class);
+    private final DBCollection chatCollection = mock(DBCollection.class);
+
+    @Before
+    public void setUp() {
+        when(db.getCollection(Migrations.COL_NAME)).thenReturn(migrationCollection);
+        when(db.getCollection(Chat.COL_NAME)).thenReturn(chatCollection);
+        when(migrationCollection.findOne(new BasicDBObject("_id", ChatTimestampMigration.ID)))
+                .thenReturn(new BasicDBObject("_id", ChatTimestampMigration.ID));
+    }
+
+    @After
+    public void tearDown() {
+        CivSingleton.instance().setPublicChatRetentionDays(0);
+    }
+
+    @Test
+    public void chatIsNotReadAgainOnceMigrated() {
+        when(migrationCollection.findOne(new BasicDBObject("_id", ChatTimestampMigration.EXPIRE_AT_ID).append("setting", 0)))
+                .thenReturn(new BasicDBObject("_id", ChatTimestampMigration.EXPIRE_AT_ID));
+
+        assertThat(new ChatTimestampMigration(db).migrate()).isZero();
+
+        verify(chatCollection, never()).find(any(DBObject.class));
+        verify(chatCollection, never()).find(any(DBObject.class), any(DBObject.class));
+        verify(chatCollection, never()).update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void publicChatGetsAnExpireAtWhenTheRetentionChanges() {
+        CivSingleton.instance().setPublicChatRetentionDays(30);
+        ObjectId id = new ObjectId();
+        DBCursor chats = mock(DBCursor.class);
+        when(chats.iterator()).thenReturn(Collections.<DBObject>singletonList(new BasicDBObject("_id", id).append(Chat.TIMESTAMP, new Date(0))).iterator());
+        when(chatCollection.find(any(DBObject.class), any(DBObject.class))).thenReturn(chats);
+
+        new ChatTimestampMigration(db).migrate();
+
+        verify(chatCollection).update(new BasicDBObject("_id", id),
+                new BasicDBObject("$set", new BasicDBObject(Chat.EXPIRE_AT, new Date(TimeUnit.DAYS.toMillis(30)))));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import no.asgari.civilization.server.model.Deck;
+import no.asgari.civilization.server.model.PBF;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeckMigrationTest {
+
+    @Test
+    public void pbfsAreNotReadAgainOnceMigrated() {
+        DB db = mock(DB.class);
+        DBCollection migrationCollection = mock(DBCollection.class);
+        DBCollection pbfCollection = mock(DBCollection.class);
+        when(db.getCollection(Migrations.COL_NAME)).thenReturn(migrationCollection);
+        when(db.getCollection(PBF.COL_NAME)).thenReturn(pbfCollection);
+        when(db.getCollection(Deck.COL_NAME)).thenReturn(mock(DBCollection.class));
+        when(migrationCollection.findOne(new BasicDBObject("_id", DeckMigration.ID)))
+                .thenReturn(new BasicDBObject("_id", DeckMigration.ID));
+
+        assertThat(new DeckMigration(db).migrate()).isZero();
+
+        verify(pbfCollection, never()).find(any(DBObject.class));
+        verify(pbfCollection, never()).find(any(DBObject.class), any(DBObject.class));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiffWriterTest {
+
+    @Test
+    public void appendedItemIsPushed() {
+        DBObject stored = pbf(7, list(item(1), item(2)));
+        DBObject current = pbf(8, list(item(1), item(2), item(3)));
+
+        DBObject update = diff(stored, current);
+
+        assertThat(update.keySet()).containsOnly("$set", "$push");
+        assertThat(((DBObject) update.get("$set")).toMap()).containsOnlyKeys("version");
+        DBObject push = (DBObject) ((DBObject) update.get("$push")).get("players.0.items");
+        assertThat((BasicDBList) push.get("$each")).containsExactly(item(3));
+    }
+
+    @Test
+    public void oneRemovedItemIsPulled() {
+        DBObject stored = pbf(7, list(item(1), item(2), item(3)));
+        DBObject current = pbf(8, list(item(1), item(3)));
+
+        DBObject update = diff(stored, current);
+
+        assertThat(((DBObject) update.get("$pull")).get("players.0.items")).isEqualTo(item(2));
+    }
+
+    @Test
+    public void duplicateRemovedItemIsSetAsAWhole() {
+        DBObject stored = pbf(7, list(item(1), item(1)));
+        DBObject current = pbf(8, list(item(1)));
+
+        DBObject update = diff(stored, current);
+
+        assertThat(update.keySet()).containsOnly("$set");
+        assertThat(((DBObject) update.get("$set")).get("players.0.items")).isEqualTo(list(item(1)));
+    }
+
+    @Test
+    public void changedFieldIsSetAndRemovedFieldIsUnset() {
+        DBObject stored = pbf(7, list(item(1)));
+        ((DBObject) ((BasicDBList) stored.get("players")).get(0)).put("yourTurn", true);
+        stored.put("winner", "cash1981");
+        DBObject current = pbf(8, list(item(1)));
+        ((DBObject) ((BasicDBList) current.get("players")).get(0)).put("yourTurn", false);
+
+        DBObject update = diff(stored, current);
+
+        assertThat(((DBObject) update.get("$set")).toMap()).containsOnlyKeys("version", "players.0.yourTurn");
+        assertThat(((DBObject) update.get("$unset")).toMap()).containsOnlyKeys("winner");
+    }
+
+    @Test
+    public void intAndLongWithSameValueAreTheSame() {
+        assertThat(DiffWriter.same(1, 1L)).isTrue();
+        assertThat(DiffWriter.same(new BasicDBObject("a", 1), new BasicDBObject("a", 1L))).isTrue();
+    }
+
+    @Test
+    public void documentWithDottedKeysIsSetAsAWhole() {
+        DBObject stored = pbf(7, list());
+        stored.put("publicTurns", new BasicDBObject("cash.1", "a"));
+        DBObject current = pbf(7, list());
+        current.put("publicTurns", new BasicDBObject("cash.1", "b"));
+
+        DBObject update = diff(stored, current);
+
+        assertThat(((DBObject) update.get("$set")).toMap()).containsOnlyKeys("publicTurns");
+    }
+
+    private static DBObject diff(DBObject stored, DBObject current) {
+        DiffWriter.Update update = new DiffWriter.Update();
+        DiffWriter.diff("", stored, current, update);
+        return update.toDBObject();
+    }
+
+    private static DBObject pbf(long version, BasicDBList items) {
+        BasicDBList players = new BasicDBList();
+        players.add(new BasicDBObject("username", "cash1981").append("items", items));
+        return new BasicDBObject("_id", "pbf").append("version", version).append("players", players);
+    }
+
+    private static BasicDBList list(DBObject... items) {
+        BasicDBList list = new BasicDBList();
+        for (DBObject item : items) {
+            list.add(item);
+        }
+        return list;
+    }
+
+    private static DBObject item(int itemNumber) {
+        return new BasicDBObject("infantry", new BasicDBObject("itemNumber", itemNumber).append("hidden", true));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.util.JSON;
+import no.asgari.civilization.server.model.GameEvent;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GameEventStreamTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void eventThatCantBeAppendedAfterThePbfIsWrittenIsLeftAsAGap() {
+        JacksonDBCollection<GameEvent, String> events = mock(JacksonDBCollection.class);
+        when(events.insert(any(GameEvent.class))).thenThrow(new MongoException("not master"));
+        MetricRegistry metrics = new MetricRegistry();
+        GameEventStream eventStream = new GameEventStream(events, mock(JacksonDBCollection.class), metrics);
+        DBObject pbf = pbf(new ObjectId(), 2, list(item(1)), "cash");
+        List<String> written = new ArrayList<>();
+
+        String result = UnitOfWork.run(() -> {
+            UnitOfWork.current().get().register("pbf", pbf);
+            UnitOfWork.current().get().markDirty("pbf", new VersionedRepository<DBObject>() {
+                @Override
+                public void write(DBObject document) {
+                    written.add("pbf");
+                    eventStream.appendAfterCommit("pbf", 2, document, () -> document);
+                }
+            });
+            UnitOfWork.afterCommit(() -> written.add("log"));
+            return "drew";
+        });
+
+        assertThat(result).isEqualTo("drew");
+        assertThat(written).containsExactly("pbf", "log");
+        assertThat(metrics.meter("no.asgari.civilization.server.mongodb.GameEventStream.failed").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void replayingTheDiffGivesTheWrittenDocument() {
+        ObjectId id = new ObjectId();
+        DBObject stored = pbf(id, 7, list(item(1), item(2), item(3)), "cash");
+        DBObject current = pbf(id, 8, list(item(1), item(3), item(4)), "cash");
+        ((DBObject) current.get("player")).put("yourTurn", true);
+        ((DBObject) current.get("player")).removeField("note");
+
+        DBObject replayed = replay(stored, diff(stored, current));
+
+        assertThat(DiffWriter.same(replayed, current)).isTrue();
+    }
+
+    @Test
+    public void pushedItemIsAppended() {
+        ObjectId id = new ObjectId();
+        DBObject stored = pbf(id, 1, list(item(1)), "cash");
+        DBObject current = pbf(id, 2, list(item(1), item(2), item(3)), "cash");
+
+        DBObject replayed = replay(stored, diff(stored, current));
+
+        assertThat(DiffWriter.same(replayed, current)).isTrue();
+    }
+
+    @Test
+    public void drawIncrementsTheVersion() {
+        ObjectId id = new ObjectId();
+        DBObject stored = pbf(id, 3, list(item(1)), "cash");
+        DBObject draw = new BasicDBObject("$push", new BasicDBObject("player.items", item(2)))
+                .append("$inc", new BasicDBObject("version", 1));
+
+        DBObject replayed = replay(stored, draw);
+
+        assertThat(((Number) replayed.get("version")).longValue()).isEqualTo(4);
+        assertThat(DiffWriter.same(((DBObject) replayed.get("player")).get("items"), list(item(1), item(2)))).isTrue();
+    }
+
+    @Test
+    public void changeWithoutOperatorsReplacesTheDocument() {
+        ObjectId id = new ObjectId();
+        DBObject stored = pbf(id, 3, list(item(1)), "cash");
+        DBObject replacement = new BasicDBObject("_id", id).append("version", 4L).append("name", "new");
+
+        DBObject replayed = replay(stored, replacement);
+
+        assertThat(replayed.keySet()).containsOnly("_id", "version", "name");
+        assertThat(replayed.get("_id")).isEqualTo(id);
+    }
+
+    /**
+     * The events are stored as json, so the change is replayed on a parsed copy just like when read back
+     */
+    static DBObject replay(DBObject stored, DBObject change) {
+        DBObject document = (DBObject) JSON.parse(JSON.serialize(stored));
+        GameEventStream.apply(document, (DBObject) JSON.parse(JSON.serialize(change)));
+        return document;
+    }
+
+    static DBObject diff(DBObject stored, DBObject current) {
+        DiffWriter.Update update = new DiffWriter.Update();
+        DiffWriter.diff("", stored, current, update);
+        return update.toDBObject();
+    }
+
+    static DBObject pbf(ObjectId id, long version, BasicDBList items, String username) {
+        return new BasicDBObject("_id", id)
+                .append("version", version)
+                .append("player", new BasicDBObject("username", username)
+                        .append("yourTurn", false)
+                        .append("note", "remember the hut")
+                        .append("items", items));
+    }
+
+    static BasicDBList list(DBObject... items) {
+        BasicDBList list = new BasicDBList();
+        for (DBObject item : items) {
+            list.add(item);
+        }
+        return list;
+    }
+
+    static DBObject item(int itemNumber) {
+        return new BasicDBObject("name", "Infantry").append("itemNumber", itemNumber).append("hidden", true);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.MongoException;
+import no.asgari.civilization.server.model.GameLog;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mongojack.JacksonDBCollection;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+public class GameLogWriterTest {
+    private final JacksonDBCollection<GameLog, String> collection = mock(JacksonDBCollection.class);
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void logsAreWrittenInBatches() throws Exception {
+        GameLogWriter writer = new GameLogWriter(collection, 2, 50, 100, metrics);
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.write(log(i));
+        }
+        writer.stop();
+
+        ArgumentCaptor<List> inserted = ArgumentCaptor.forClass(List.class);
+        verify(collection, atLeastOnce()).insert(inserted.capture());
+        assertThat(inserted.getAllValues().stream().mapToInt(List::size).sum()).isEqualTo(5);
+        assertThat(inserted.getAllValues().stream().allMatch(batch -> batch.size() <= 2)).isTrue();
+        assertThat(metrics.meter("GameLogWriter.written").getCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void stopWritesWhatIsLeftInTheQueue() throws Exception {
+        GameLogWriter writer = new GameLogWriter(collection, 10, 10_000, 100, metrics);
+        writer.start();
+        writer.write(log(1));
+        writer.write(log(2));
+        writer.stop();
+
+        ArgumentCaptor<List> inserted = ArgumentCaptor.forClass(List.class);
+        verify(collection, atLeastOnce()).insert(inserted.capture());
+        assertThat(inserted.getAllValues().stream().mapToInt(List::size).sum()).isEqualTo(2);
+    }
+
+    @Test
+    public void logIsWrittenRightAwayWhenNotRunning() throws Exception {
+        //Not started, so nothing takes from the queue
+        GameLogWriter writer = new GameLogWriter(collection, 10, 10, 1, metrics);
+        writer.write(log(1));
+        verify(collection, times(1)).insert(anyListOf(GameLog.class));
+        assertThat(metrics.meter("GameLogWriter.queue-full").getCount()).isZero();
+    }
+
+    @Test
+    public void idIsMadeWhenTheLogIsWritten() throws Exception {
+        GameLogWriter writer = new GameLogWriter(collection, 10, 10_000, 100, metrics);
+        writer.start();
+        GameLog gameLog = log(1);
+        writer.write(gameLog);
+
+        assertThat(gameLog.getId()).isNull();
+        verify(collection, never()).insert(anyListOf(GameLog.class));
+        writer.stop();
+        assertThat(gameLog.getId()).isNotNull();
+    }
+
+    @Test
+    public void logsOfAFailedBatchAreWrittenOneByOne() throws Exception {
+        when(collection.insert(anyListOf(GameLog.class))).thenThrow(new MongoException("Not master"));
+        GameLogWriter writer = new GameLogWriter(collection, 10, 10_000, 100, metrics);
+        writer.start();
+        writer.write(log(1));
+        writer.write(log(2));
+        writer.stop();
+
+        verify(collection, times(2)).insert(any(GameLog.class));
+        assertThat(metrics.meter("GameLogWriter.written").getCount()).isEqualTo(2);
+        assertThat(metrics.meter("GameLogWriter.lost").getCount()).isZero();
+    }
+
+    private static GameLog log(int i) {
+        GameLog gameLog = new GameLog();
+        gameLog.setPbfId("pbf");
+        gameLog.setUsername("cash1981");
+        gameLog.setPublicLog("log " + i);
+        return gameLog;
+    }
+}
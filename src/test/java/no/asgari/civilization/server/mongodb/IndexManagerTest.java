@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import no.asgari.civilization.server.model.Chat;
+import no.asgari.civilization.server.model.Player;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexManagerTest {
+
+    @Test
+    public void declaredIndexesAreNamedLikeMongoWould() {
+        List<IndexManager.IndexSpec> indexes = IndexManager.declared(Player.class);
+
+        assertThat(indexes).extracting(IndexManager.IndexSpec::toString)
+                .containsExactly("player.username_1", "player.email_1", "player.gameIds_1");
+        assertThat(indexes.get(0).unique).isTrue();
+        assertThat(indexes.get(2).unique).isFalse();
+    }
+
+    @Test
+    public void descendingFieldsAndOrderAreKept() {
+        IndexManager.IndexSpec index = IndexManager.declared(Descending.class).get(0);
+
+        assertThat(index.name).isEqualTo("pbfId_1_created_-1");
+        assertThat(index.matches(info(new BasicDBObject("pbfId", 1).append("created", -1), false))).isTrue();
+        assertThat(index.matches(info(new BasicDBObject("created", -1).append("pbfId", 1), false))).isFalse();
+        assertThat(index.matches(info(new BasicDBObject("pbfId", 1).append("created", 1), false))).isFalse();
+    }
+
+    @Test
+    public void directionStoredAsDoubleMatches() {
+        IndexManager.IndexSpec index = IndexManager.declared(Descending.class).get(0);
+
+        assertThat(index.matches(info(new BasicDBObject("pbfId", 1.0).append("created", -1.0), false))).isTrue();
+    }
+
+    @Test
+    public void changedUniquenessDoesNotMatch() {
+        IndexManager.IndexSpec username = IndexManager.declared(Player.class).get(0);
+
+        assertThat(username.matches(info(new BasicDBObject("username", 1), true))).isTrue();
+        assertThat(username.matches(info(new BasicDBObject("username", 1), false))).isFalse();
+    }
+
+    @Test
+    public void expiryMustMatch() {
+        IndexManager.IndexSpec expireAt = IndexManager.declared(Chat.class).get(1);
+
+        assertThat(expireAt.matches(info(new BasicDBObject("expireAt", 1), false).append("expireAfterSeconds", 0))).isTrue();
+        assertThat(expireAt.matches(info(new BasicDBObject("expireAt", 1), false).append("expireAfterSeconds", 3600))).isFalse();
+        assertThat(expireAt.matches(info(new BasicDBObject("expireAt", 1), false))).isFalse();
+    }
+
+    @Test
+    public void classWithoutIndexesHasNone() {
+        assertThat(IndexManager.declared(String.class)).isEmpty();
+    }
+
+    private static BasicDBObject info(BasicDBObject key, boolean unique) {
+        BasicDBObject info = new BasicDBObject("v", 1).append("key", key).append("name", "whatever");
+        if (unique) {
+            info.append("unique", true);
+        }
+        return info;
+    }
+
+    @MongoIndex({"pbfId", "-created"})
+    private static class Descending {
+        public static final String COL_NAME = "descending";
+    }
+}
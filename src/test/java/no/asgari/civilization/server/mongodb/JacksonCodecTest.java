@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import no.asgari.civilization.server.excel.ItemReader;
+import no.asgari.civilization.server.model.GameType;
+import no.asgari.civilization.server.model.Item;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.Playerhand;
+import no.asgari.civilization.server.model.Tech;
+import org.bson.BasicBSONEncoder;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.mongojack.JacksonDBCollection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class JacksonCodecTest {
+
+    @Test
+    public void decodesTheSamePbfAsTheDBObject() throws IOException {
+        JacksonDBCollection<PBF, String> collection = collection();
+        DBObject stored = collection.convertToDbObject(pbf(4, 10));
+        byte[] bson = new BasicBSONEncoder().encode(stored);
+
+        AtomicReference<byte[]> decodedFrom = new AtomicReference<>();
+        PBF decoded = new RawBsonDocument(bson).decode(new JacksonCodec<>(collection, PBF.class, (pbf, bytes) -> decodedFrom.set(bytes)));
+        PBF converted = collection.convertFromDbObject(stored);
+
+        assertThat(decoded).isEqualTo(converted);
+        assertThat(classes(decoded.getPlayers().get(0).getItems())).isEqualTo(classes(converted.getPlayers().get(0).getItems()));
+        assertThat(decodedFrom.get()).isEqualTo(bson);
+    }
+
+    private static List<Class<?>> classes(List<Item> items) {
+        return items.stream().map(Object::getClass).collect(toList());
+    }
+
+    static JacksonDBCollection<PBF, String> collection() {
+        return JacksonDBCollection.wrap(mock(DBCollection.class), PBF.class, String.class);
+    }
+
+    /**
+     * A game with the items and techs of a game some turns in
+     */
+    static PBF pbf(int players, int itemsPerPlayer) throws IOException {
+        ItemReader itemReader = new ItemReader();
+        itemReader.readItemsFromExcel(GameType.WAW);
+        List<Item> items = new ArrayList<>();
+        items.addAll(itemReader.shuffledCultureI);
+        items.addAll(itemReader.shuffledGPs);
+        items.addAll(itemReader.shuffledHuts);
+        items.addAll(itemReader.infantryList);
+        items.addAll(itemReader.mountedList);
+        items.addAll(itemReader.artilleryList);
+
+        PBF pbf = new PBF();
+        pbf.setId(new ObjectId().toString());
+        pbf.setName("Benchmark game");
+        pbf.setType(GameType.WAW);
+        pbf.setNumOfPlayers(players);
+        for (int i = 0; i < players; i++) {
+            Playerhand playerhand = new Playerhand();
+            playerhand.setUsername("player" + i);
+            playerhand.setPlayerId(new ObjectId().toString());
+            playerhand.setCivilization(itemReader.shuffledCivs.get(i));
+            playerhand.setYourTurn(i == 0);
+            for (int j = 0; j < itemsPerPlayer; j++) {
+                Item item = items.get((i * itemsPerPlayer + j) % items.size());
+                item.setOwnerId(playerhand.getPlayerId());
+                playerhand.getItems().add(item);
+            }
+            for (Tech tech : itemReader.allTechs.subList(0, Math.min(itemsPerPlayer, itemReader.allTechs.size()))) {
+                playerhand.getTechsChosen().add(tech);
+            }
+            pbf.getPlayers().add(playerhand);
+        }
+        return pbf;
+    }
+}
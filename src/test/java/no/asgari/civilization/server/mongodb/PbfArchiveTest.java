@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PbfArchiveTest {
+
+    @Test
+    public void idsAndDatesSurviveTheArchive() {
+        ObjectId id = new ObjectId();
+        Date ended = new Date(1444000000000L);
+        DBObject pbf = new BasicDBObject("_id", id)
+                .append("name", "Æsir game")
+                .append("ended", ended)
+                .append("version", 12L);
+
+        DBObject restored = PbfArchive.decompress(PbfArchive.compress(pbf));
+
+        assertThat(restored.get("_id")).isEqualTo(id);
+        assertThat(restored.get("ended")).isEqualTo(ended);
+        assertThat(restored.get("name")).isEqualTo("Æsir game");
+        assertThat(((Number) restored.get("version")).longValue()).isEqualTo(12L);
+    }
+
+    @Test
+    public void repeatedGamesCompressWell() {
+        BasicDBList items = new BasicDBList();
+        for (int i = 0; i < 500; i++) {
+            items.add(new BasicDBObject("name", "Infantry").append("sheetName", "INFANTRY").append("itemNumber", i));
+        }
+        DBObject deck = new BasicDBObject("_id", "pbf:INFANTRY").append("items", items);
+
+        byte[] blob = PbfArchive.compress(deck);
+
+        assertThat(blob.length).isLessThan(deck.toString().length() / 4);
+        assertThat(PbfArchive.decompress(blob)).isEqualTo(deck);
+    }
+}
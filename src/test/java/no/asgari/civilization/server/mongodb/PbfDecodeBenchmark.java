@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DefaultDBDecoder;
+import no.asgari.civilization.server.model.PBF;
+import org.bson.BasicBSONEncoder;
+import org.mongojack.JacksonDBCollection;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+
+/**
+ * Compares decoding a pbf through a DBObject, which is what reading with the driver and converting does,
+ * with decoding it straight from bson with the {@link JacksonCodec}. Prints the time and the bytes allocated per pbf.
+ * Not run with the tests, run the main method on the test classpath.
+ */
+public class PbfDecodeBenchmark {
+    private static final int WARMUP_ROUNDS = 5_000;
+    private static final int ROUNDS = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        JacksonDBCollection<PBF, String> collection = JacksonCodecTest.collection();
+        JacksonCodec<PBF> codec = new JacksonCodec<>(collection, PBF.class, (pbf, bson) -> {
+        });
+        byte[] bson = new BasicBSONEncoder().encode(collection.convertToDbObject(JacksonCodecTest.pbf(4, 40)));
+        System.out.println("The pbf is " + bson.length + " bytes");
+
+        measure("dbobject", bson, bytes -> collection.convertFromDbObject(new DefaultDBDecoder().decode(bytes, (DBCollection) null)));
+        measure("bson", bson, codec::decode);
+    }
+
+    private static void measure(String name, byte[] bson, Function<byte[], PBF> decode) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        run(bson, decode, WARMUP_ROUNDS);
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int players = run(bson, decode, ROUNDS);
+        long micros = (System.nanoTime() - start) / 1000 / ROUNDS;
+        long allocated = (threads.getThreadAllocatedBytes(thread) - allocatedBefore) / ROUNDS;
+        System.out.println(name + ": " + micros + " microseconds and " + allocated + " bytes allocated per pbf (" + players + ")");
+    }
+
+    private static int run(byte[] bson, Function<byte[], PBF> decode, int rounds) {
+        int players = 0;
+        for (int i = 0; i < rounds; i++) {
+            players += decode.apply(bson).getPlayers().size();
+        }
+        return players;
+    }
+}
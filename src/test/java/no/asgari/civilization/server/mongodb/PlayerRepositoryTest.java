@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import no.asgari.civilization.server.model.Player;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PlayerRepositoryTest {
+    private static final String PLAYER_ID = new ObjectId().toHexString();
+
+    private final DBCollection playerCollection = mock(DBCollection.class);
+    private final PlayerRepository playerRepository = new PlayerRepository(db(playerCollection));
+
+    @Test
+    public void gamesAreAddedAndPulledWithoutRewritingThePlayer() {
+        playerRepository.addGame(PLAYER_ID, "pbf");
+        playerRepository.removeGame(PLAYER_ID, "pbf");
+
+        BasicDBObject byId = new BasicDBObject("_id", new ObjectId(PLAYER_ID));
+        verify(playerCollection).update(byId, new BasicDBObject("$addToSet", new BasicDBObject("gameIds", "pbf")));
+        verify(playerCollection).update(byId, new BasicDBObject("$pull", new BasicDBObject("gameIds", "pbf")));
+    }
+
+    @Test
+    public void deletedGameIsPulledFromEveryPlayerInOneUpdate() {
+        WriteResult writeResult = mock(WriteResult.class);
+        when(writeResult.getN()).thenReturn(3);
+        when(playerCollection.update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean())).thenReturn(writeResult);
+
+        int removed = playerRepository.removeGameFromAll("pbf");
+
+        assertThat(removed).isEqualTo(3);
+        verify(playerCollection).update(new BasicDBObject("gameIds", "pbf"),
+                new BasicDBObject("$pull", new BasicDBObject("gameIds", "pbf")), false, true);
+    }
+
+    private static DB db(DBCollection playerCollection) {
+        DB db = mock(DB.class);
+        when(db.getCollection(Player.COL_NAME)).thenReturn(playerCollection);
+        return db;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static no.asgari.civilization.server.mongodb.GameEventStreamTest.diff;
+import static no.asgari.civilization.server.mongodb.GameEventStreamTest.item;
+import static no.asgari.civilization.server.mongodb.GameEventStreamTest.list;
+import static no.asgari.civilization.server.mongodb.GameEventStreamTest.pbf;
+
+/**
+ * Measures how long it takes to replay a game from a snapshot, the way {@link GameEventStream#replay(String, long)} does
+ * after the events are read. Not run with the tests, run the main method on the test classpath.
+ * <p>
+ * Every event draws an item and changes the turn, which is what most writes of a game look like.
+ */
+public class ReplayBenchmark {
+    private static final int[] EVENTS = {10, 50, 200};
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int ROUNDS = 5_000;
+
+    public static void main(String[] args) {
+        for (int events : EVENTS) {
+            String snapshot = JSON.serialize(pbf(new ObjectId(), 0, list(item(0)), "cash"));
+            List<String> tail = events(snapshot, events);
+
+            run(snapshot, tail, WARMUP_ROUNDS);
+            long start = System.nanoTime();
+            run(snapshot, tail, ROUNDS);
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / ROUNDS;
+            System.out.println("Replayed " + events + " events in " + micros + " microseconds");
+        }
+    }
+
+    private static List<String> events(String snapshot, int count) {
+        DBObject stored = (DBObject) JSON.parse(snapshot);
+        List<String> events = new ArrayList<>();
+        for (int version = 1; version <= count; version++) {
+            DBObject current = (DBObject) JSON.parse(JSON.serialize(stored));
+            current.put("version", (long) version);
+            DBObject player = (DBObject) current.get("player");
+            ((BasicDBList) player.get("items")).add(item(version));
+            player.put("yourTurn", version % 2 == 0);
+
+            events.add(JSON.serialize(diff(stored, current)));
+            stored = current;
+        }
+        return events;
+    }
+
+    private static long run(String snapshot, List<String> tail, int rounds) {
+        long versions = 0;
+        for (int i = 0; i < rounds; i++) {
+            DBObject pbf = (DBObject) JSON.parse(snapshot);
+            for (String event : tail) {
+                GameEventStream.apply(pbf, (DBObject) JSON.parse(event));
+            }
+            versions += ((Number) pbf.get("version")).longValue();
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import no.asgari.civilization.server.model.PBF;
+import no.asgari.civilization.server.model.PlayerTurn;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TurnMigrationTest {
+
+    @Test
+    public void pbfsAreNotReadAgainOnceMigrated() {
+        DB db = mock(DB.class);
+        DBCollection migrationCollection = mock(DBCollection.class);
+        DBCollection pbfCollection = mock(DBCollection.class);
+        when(db.getCollection(Migrations.COL_NAME)).thenReturn(migrationCollection);
+        when(db.getCollection(PBF.COL_NAME)).thenReturn(pbfCollection);
+        when(db.getCollection(PlayerTurn.COL_NAME)).thenReturn(mock(DBCollection.class));
+        when(migrationCollection.findOne(new BasicDBObject("_id", TurnMigration.ID)))
+                .thenReturn(new BasicDBObject("_id", TurnMigration.ID));
+
+        assertThat(new TurnMigration(db).migrate()).isZero();
+
+        verify(pbfCollection, never()).find(any(DBObject.class), any(DBObject.class));
+    }
+
+    @Test
+    public void privateTurnsAreKeptAndPublishedIfTheyHaveAPublicCopy() {
+        DB db = mock(DB.class);
+        when(db.getCollection(PBF.COL_NAME)).thenReturn(mock(DBCollection.class));
+        when(db.getCollection(PlayerTurn.COL_NAME)).thenReturn(mock(DBCollection.class));
+
+        DBObject stored = new BasicDBObject("publicTurns", new BasicDBObject("1Leonidas", turn(1, "Leonidas", false, "SOT: old")))
+                .append("players", list(new BasicDBObject("username", "Leonidas")
+                        .append("playerTurns", list(turn(1, "Leonidas", true, "SOT: new"), turn(2, "Leonidas", false, "")))))
+                .append("withdrawnPlayers", list(new BasicDBObject("username", "Xerxes")
+                        .append("playerTurns", list(turn(1, "Darius", false, "")))));
+
+        Map<String, PlayerTurn> turns = new TurnMigration(db).turns(stored);
+
+        assertThat(turns).containsOnlyKeys("1Leonidas", "2Leonidas", "1Darius");
+        PlayerTurn first = turns.get("1Leonidas");
+        assertThat(first.isPublished()).isTrue();
+        assertThat(first.isDisabled()).isTrue();
+        assertThat(first.getSot()).isEqualTo("SOT: new");
+        assertThat(turns.get("2Leonidas").isPublished()).isFalse();
+        assertThat(turns.get("1Darius").getUsername()).isEqualTo("Xerxes");
+    }
+
+    private static DBObject turn(int turnNumber, String username, boolean disabled, String sot) {
+        return new BasicDBObject("turnNumber", turnNumber).append("username", username).append("disabled", disabled).append("sot", sot);
+    }
+
+    private static BasicDBList list(Object... values) {
+        BasicDBList list = new BasicDBList();
+        for (Object value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
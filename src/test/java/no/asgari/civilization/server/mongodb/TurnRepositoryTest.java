@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.WriteResult;
+import no.asgari.civilization.server.model.PlayerTurn;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TurnRepositoryTest {
+    private final DBCollection turnCollection = mock(DBCollection.class);
+    private final TurnRepository turnRepository = new TurnRepository(db(turnCollection));
+
+    @Test
+    public void orderIsWrittenWithOneUpsertOfTheTurn() {
+        turnRepository.writeOrder("pbf", "Leonidas", 3, PlayerTurn.TRADE, "Trade: 6 total");
+
+        verify(turnCollection).update(turn(3), new BasicDBObject("$set", new BasicDBObject("trade", "Trade: 6 total").append("published", true))
+                .append("$addToSet", new BasicDBObject("tradeHistory", "Trade: 6 total")), true, false);
+    }
+
+    @Test
+    public void turnInsertedBySomeoneElseIsUpdatedInstead() {
+        when(turnCollection.update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean()))
+                .thenThrow(mock(DuplicateKeyException.class))
+                .thenReturn(mock(WriteResult.class));
+
+        turnRepository.add("pbf", "Leonidas", 1);
+
+        verify(turnCollection, times(2)).update(turn(1), new BasicDBObject("$setOnInsert", new BasicDBObject("published", false)), true, false);
+    }
+
+    @Test
+    public void takenOverSeatGetsTheTurnsInOneUpdate() {
+        WriteResult writeResult = mock(WriteResult.class);
+        when(writeResult.getN()).thenReturn(4);
+        when(turnCollection.update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean())).thenReturn(writeResult);
+
+        assertThat(turnRepository.rename("pbf", "Leonidas", "Xerxes")).isEqualTo(4);
+        verify(turnCollection).update(new BasicDBObject("pbfId", "pbf").append("username", "Leonidas"),
+                new BasicDBObject("$set", new BasicDBObject("username", "Xerxes")), false, true);
+    }
+
+    private static BasicDBObject turn(int turnNumber) {
+        return new BasicDBObject("pbfId", "pbf").append("username", "Leonidas").append("turnNumber", turnNumber);
+    }
+
+    private static DB db(DBCollection turnCollection) {
+        DB db = mock(DB.class);
+        when(db.getCollection(PlayerTurn.COL_NAME)).thenReturn(turnCollection);
+        return db;
+    }
+}
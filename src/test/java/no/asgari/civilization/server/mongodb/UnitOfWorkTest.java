@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import no.asgari.civilization.server.exception.PBFConflictException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class UnitOfWorkTest {
+    private final List<String> written = new ArrayList<>();
+
+    @Test
+    public void decksAreWrittenBeforeThePbf() {
+        UnitOfWork unitOfWork = new UnitOfWork();
+        register(unitOfWork, "pbf", new Pbfs());
+        register(unitOfWork, "deck", new Decks());
+
+        unitOfWork.flush();
+
+        assertThat(written).containsExactly("deck", "pbf");
+    }
+
+    @Test
+    public void decksArePutBackWhenThePbfIsInConflict() {
+        UnitOfWork unitOfWork = new UnitOfWork();
+        register(unitOfWork, "pbf", new ConflictingPbfs());
+        register(unitOfWork, "deck", new Decks());
+
+        try {
+            unitOfWork.flush();
+            fail("Should have thrown");
+        } catch (PBFConflictException e) {
+            assertThat(written).containsExactly("deck", "put back deck");
+        }
+    }
+
+    private static void register(UnitOfWork unitOfWork, String document, VersionedRepository<String> repository) {
+        unitOfWork.register(document, document);
+        unitOfWork.markDirty(document, repository);
+    }
+
+    private class Pbfs implements VersionedRepository<String> {
+        @Override
+        public void write(String document) {
+            written.add(document);
+        }
+    }
+
+    private class ConflictingPbfs implements VersionedRepository<String> {
+        @Override
+        public void write(String document) {
+            throw new PBFConflictException(document);
+        }
+    }
+
+    private class Decks implements VersionedRepository<String> {
+        @Override
+        public void write(String document) {
+            written.add(document);
+        }
+
+        @Override
+        public Optional<Runnable> writeRevertible(String document) {
+            write(document);
+            return Optional.of(() -> written.add("put back " + document));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015 Shervin Asgari
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package no.asgari.civilization.server.mongodb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.WriteConcern;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import no.asgari.civilization.server.application.WriteConcernConfiguration;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteTiersTest {
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final WriteConcernConfiguration configuration = new WriteConcernConfiguration();
+    private final WriteTiers writeTiers = new WriteTiers(configuration.writeConcerns(), configuration.collections, metrics);
+
+    @Test
+    public void defaultTiersKeepTheGameDurableAndTheLogsCheap() {
+        assertThat(writeTiers.writeConcern(WriteConcernConfiguration.GAME)).isEqualTo(new WriteConcern("majority", 5000, false, true));
+        assertThat(writeTiers.writeConcern(WriteConcernConfiguration.LOG)).isEqualTo(new WriteConcern(1));
+        assertThat(writeTiers.writeConcern(WriteConcernConfiguration.EMAIL).isAcknowledged()).isFalse();
+    }
+
+    @Test
+    public void collectionsAreGivenTheWriteConcernOfTheirTier() {
+        DB db = mock(DB.class);
+        DBCollection pbf = mock(DBCollection.class);
+        DBCollection gamelog = mock(DBCollection.class);
+        when(db.getCollection(anyString())).thenReturn(mock(DBCollection.class));
+        when(db.getCollection("pbf")).thenReturn(pbf);
+        when(db.getCollection("gamelog")).thenReturn(gamelog);
+
+        writeTiers.apply(db);
+
+        verify(pbf).setWriteConcern(writeTiers.writeConcern(WriteConcernConfiguration.GAME));
+        verify(gamelog).setWriteConcern(writeTiers.writeConcern(WriteConcernConfiguration.LOG));
+        verify(db, never()).getCollection("player");
+    }
+
+    @Test
+    public void writeCommandsAreTimedByTheTierOfTheirCollection() {
+        writeTiers.commandStarted(started(1, "update", "pbf"));
+        writeTiers.commandSucceeded(new CommandSucceededEvent(1, null, "update", new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(3)));
+        writeTiers.commandStarted(started(2, "insert", "gamelog"));
+        writeTiers.commandFailed(new CommandFailedEvent(2, null, "insert", TimeUnit.MILLISECONDS.toNanos(1), new RuntimeException()));
+        writeTiers.commandStarted(started(3, "find", "pbf"));
+        writeTiers.commandSucceeded(new CommandSucceededEvent(3, null, "find", new BsonDocument(), 1));
+        writeTiers.commandStarted(started(4, "update", "player"));
+        writeTiers.commandSucceeded(new CommandSucceededEvent(4, null, "update", new BsonDocument(), 1));
+
+        assertThat(metrics.timer(MetricRegistry.name(WriteTiers.class, "game")).getCount()).isEqualTo(1);
+        assertThat(metrics.timer(MetricRegistry.name(WriteTiers.class, "log")).getCount()).isEqualTo(1);
+        assertThat(metrics.meter(MetricRegistry.name(WriteTiers.class, "log", "failed")).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimers().keySet()).hasSize(2);
+    }
+
+    @Test
+    public void writesOutsideCollectionsAreTimedByTheirTier() {
+        WriteConcern used = writeTiers.write(WriteConcernConfiguration.EMAIL, writeConcern -> writeConcern);
+
+        assertThat(used).isEqualTo(writeTiers.writeConcern(WriteConcernConfiguration.EMAIL));
+        assertThat(metrics.timer(MetricRegistry.name(WriteTiers.class, "email")).getCount()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void collectionsMustHaveAKnownTier() {
+        new WriteTiers(configuration.writeConcerns(), Collections.singletonMap("pbf", "unknown"), metrics);
+    }
+
+    private static CommandStartedEvent started(int requestId, String commandName, String collection) {
+        return new CommandStartedEvent(requestId, null, "civilization", commandName, new BsonDocument(commandName, new BsonString(collection)));
+    }
+}
@@ -7,8 +7,10 @@ import no.asgari.civilization.server.action.GameAction;
 import no.asgari.civilization.server.dto.ChatDTO;
 import no.asgari.civilization.server.dto.CheckNameDTO;
 import no.asgari.civilization.server.dto.CreateNewGameDTO;
+import no.asgari.civilization.server.dto.GameLogPageDTO;
 import no.asgari.civilization.server.dto.MessageDTO;
 import no.asgari.civilization.server.model.Chat;
+import no.asgari.civilization.server.model.GameLog;
 import no.asgari.civilization.server.model.GameType;
 import no.asgari.civilization.server.model.PBF;
 import no.asgari.civilization.server.model.Playerhand;
@@ -27,6 +29,7 @@ import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -100,6 +103,11 @@ public class GameResourceTest extends AbstractCivilizationTest {
         assertThat(id.charAt(0)).isEqualTo('/');
 
         assertThat(getApp().pbfCollection.findOneById(id.substring(1)).getPlayers().size()).isEqualTo(1);
+
+        List<?> games = client().target(BASE_URL + "/game")
+                .request(MediaType.APPLICATION_JSON_TYPE)
+                .get(List.class);
+        assertThat(games.stream().anyMatch(g -> id.substring(1).equals(((Map) g).get("id")))).isTrue();
     }
 
     @Test
@@ -114,8 +122,7 @@ public class GameResourceTest extends AbstractCivilizationTest {
                 .get(ArrayList.class);
 
         assertThat(list).isNotEmpty();
-        PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-        assertThat(list.size()).isEqualTo(pbf.getTechs().size() - 1);
+        assertThat(list.size()).isEqualTo(getApp().deckItems(getApp().pbfId, SheetName.TECHS).size() - 1);
     }
 
     @Test
@@ -143,6 +150,48 @@ public class GameResourceTest extends AbstractCivilizationTest {
         assertThat(list).isNotEmpty();
     }
 
+    @Test
+    public void pageThroughPublicLogs() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            GameLog gameLog = new GameLog();
+            gameLog.setPbfId(getApp().pbfId);
+            gameLog.setUsername("cash1981");
+            gameLog.setPublicLog("public log " + i);
+            getApp().gameLogCollection.insert(gameLog);
+        }
+        long publicLogs = getApp().gameLogCollection.find().toArray().stream()
+                .filter(gl -> gl.getPbfId().equals(getApp().pbfId))
+                .filter(gl -> gl.getPublicLog() != null && !gl.getPublicLog().isEmpty())
+                .count();
+
+        GameLogPageDTO newest = client().target(UriBuilder.fromPath(String.format(BASE_URL + "/game/%s/publiclog/page", getApp().pbfId)).build())
+                .queryParam("size", 2)
+                .request(MediaType.APPLICATION_JSON)
+                .get(GameLogPageDTO.class);
+        assertThat(newest.getLogs()).hasSize(2);
+        assertThat(newest.getLogs().get(1).getLog()).isEqualTo("public log 4");
+
+        int seen = newest.getLogs().size();
+        String older = newest.getOlder();
+        while (older != null) {
+            GameLogPageDTO page = client().target(UriBuilder.fromPath(String.format(BASE_URL + "/game/%s/publiclog/page", getApp().pbfId)).build())
+                    .queryParam("size", 2)
+                    .queryParam("cursor", older)
+                    .request(MediaType.APPLICATION_JSON)
+                    .get(GameLogPageDTO.class);
+            seen += page.getLogs().size();
+            older = page.getOlder();
+        }
+        assertThat((long) seen).isEqualTo(publicLogs);
+
+        GameLogPageDTO newer = client().target(UriBuilder.fromPath(String.format(BASE_URL + "/game/%s/publiclog/page", getApp().pbfId)).build())
+                .queryParam("cursor", newest.getNewer())
+                .queryParam("direction", "newer")
+                .request(MediaType.APPLICATION_JSON)
+                .get(GameLogPageDTO.class);
+        assertThat(newer.getLogs()).isEmpty();
+    }
+
     private void chooseTechForPlayer() throws JsonProcessingException {
         URI uri = UriBuilder.fromPath(String.format(BASE_URL + "/player/%s/tech/choose", getApp().pbfId)).build();
         Response response = client().target(uri)
@@ -330,7 +330,7 @@ public class PlayerResourceTest extends AbstractCivilizationTest {
         testDrawVillage();
 
         PBF pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-        assertThat(pbf.getDiscardedItems()).isEmpty();
+        assertThat(getApp().discardedItems(getApp().pbfId)).isEmpty();
         Item village = getItemFromPlayerhand(pbf, SheetName.VILLAGES).get();
         assertNotNull(village);
 
@@ -343,8 +343,7 @@ public class PlayerResourceTest extends AbstractCivilizationTest {
                 .post(Entity.json(itemDTO), Response.class);
         assertEquals(HttpStatus.OK_200, response.getStatus());
 
-        pbf = getApp().pbfCollection.findOneById(getApp().pbfId);
-        assertThat(pbf.getDiscardedItems()).isNotEmpty();
+        assertThat(getApp().discardedItems(getApp().pbfId)).isNotEmpty();
     }
 
     @Test